@@ -1,50 +1,156 @@
+import java.awt.AlphaComposite;
 import java.awt.BorderLayout;
 import java.awt.CardLayout;
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Composite;
+import java.awt.Container;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridBagLayout;
 import java.awt.Image;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.HierarchyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
 import java.net.URI;
+import java.net.URL;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.management.NotificationEmitter;
+import javax.swing.AbstractListModel;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
+import javax.swing.DefaultListSelectionModel;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.ListCellRenderer;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
+import javax.swing.border.Border;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 
 /**
  * The main JFrame class for the Zero Gravity Lesson application.
- * Controls navigation and keeps shared resources (avatar, progress, score).
+ * Controls navigation and keeps shared resources (avatar, progress, quiz session).
  */
 
 public class ZeroGravityLessonApp extends JFrame {
@@ -52,33 +158,52 @@ public class ZeroGravityLessonApp extends JFrame {
     private final JPanel cards;
     // private final Avatar avatar;
     private final ProgressManager progressManager;
-    private final Cursor customCursor;
-    private int score = 0;
+    private Cursor customCursor = Cursor.getDefaultCursor();
+    // The quiz runs in a SessionEngine, with this learner's single session
+    private SessionEngine engine;
+    private long session;
 
-    /** Constructor sets up window, cursor, screens, and shows welcome. */
+    // Screens are built the first time they are shown; the splash covers the wait.
+    // -Dui.logStartup prints the startup times once the welcome screen is up.
+    private static final boolean LOG_STARTUP = Boolean.getBoolean("ui.logStartup");
+    private final ScreenRegistry screens;
+    private final long startNanos = System.nanoTime();
+    private long firstFrameMs = -1, interactiveMs = -1;
+
+    /** Constructor sets up window and splash, then builds the welcome screen in the background. */
 
     public ZeroGravityLessonApp() {
         super("Zero Gravity Lesson");
 
         progressManager = new ProgressManager("progress.txt");
 
-        // Create a custom image cursor for playful UI
-        Toolkit toolkit = Toolkit.getDefaultToolkit();
-        Image cursorImage = toolkit.getImage("final.png");
-        Image scaledCursor = cursorImage.getScaledInstance(40, 35, Image.SCALE_SMOOTH);
-        customCursor = toolkit.createCustomCursor(scaledCursor, new Point(0, 0), "kid");
-        setCursor(customCursor);
-
         // CardLayout to easily switch screens
         cardLayout = new CardLayout();
         cards = new JPanel(cardLayout);
-
-        // Add window panels
-        cards.add(new WelcomePanel(this, customCursor), ScreenNames.WELCOME);
-        cards.add(new LessonPanel(this), ScreenNames.LESSON);
-        cards.add(new QuizPanel(this), ScreenNames.QUIZ);
-        cards.add(new ResultPanel(this), ScreenNames.RESULT);
-        cards.add(new ChatPanel(this), ScreenNames.CHAT);
+        screens = new ScreenRegistry(cards, new SplashPanel(() -> firstFrameMs = sinceStartMs()));
+        // Each screen with the images it needs (width or height 0 keeps the aspect ratio)
+        screens.register(ScreenNames.WELCOME, List.of(new AssetCache.Key("final.png", 40, 35),
+                new AssetCache.Key("kid.png", 150, 220)), () -> {
+            // Custom image cursor for playful UI
+            Image scaledCursor = AssetCache.shared().get("final.png", 40, 35);
+            if (scaledCursor != null)
+                customCursor = Toolkit.getDefaultToolkit().createCustomCursor(scaledCursor, new Point(0, 0), "kid");
+            setCursor(customCursor);
+            return new WelcomePanel(this, customCursor);
+        });
+        screens.register(ScreenNames.LESSON, List.of(), () -> new LessonPanel(this));
+        screens.register(ScreenNames.QUIZ, List.of(new AssetCache.Key("solar.png", 350, 0)),
+                () -> new QuizPanel(this));
+        screens.register(ScreenNames.RESULT, List.of(new AssetCache.Key("gold.png", 130, 130),
+                new AssetCache.Key("silver.png", 130, 130), new AssetCache.Key("bronze.png", 130, 130),
+                new AssetCache.Key("fail.png", 130, 130)), () -> new ResultPanel(this));
+        screens.register(ScreenNames.CHAT, List.of(), () -> new ChatPanel(this));
+        screens.register(ScreenNames.SANDBOX, List.of(), () -> new SandboxPanel(this));
+        // What kids almost always open next, prebuilt while they read
+        screens.setLikelyNext(ScreenNames.WELCOME, ScreenNames.LESSON);
+        screens.setLikelyNext(ScreenNames.LESSON, ScreenNames.QUIZ);
+        screens.setLikelyNext(ScreenNames.QUIZ, ScreenNames.RESULT);
+        screens.setOnShown(this::screenShown);
 
         setContentPane(cards);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -89,26 +214,78 @@ public class ZeroGravityLessonApp extends JFrame {
         showScreen(ScreenNames.WELCOME);
     }
 
+    private void screenShown(String name) {
+        if (interactiveMs >= 0 || !name.equals(ScreenNames.WELCOME))
+            return;
+        // Welcome is up and painted: kids can start
+        getRootPane().paintImmediately(getRootPane().getBounds());
+        interactiveMs = sinceStartMs();
+        if (!LOG_STARTUP)
+            return;
+        Runtime rt = Runtime.getRuntime();
+        System.out.printf("Startup: first frame %d ms, interactive %d ms (from JVM start %d ms), heap %d MB%n",
+                firstFrameMs, interactiveMs,
+                System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime(),
+                (rt.totalMemory() - rt.freeMemory()) >> 20);
+    }
+
+    private long sinceStartMs() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /** @return {first frame, interactive} in ms since the window was created, -1 if not yet. */
+    public long[] getStartupTimes() {
+        return new long[] { firstFrameMs, interactiveMs };
+    }
+
+    /** @return The registry that builds, prebuilds and evicts the screens. */
+    public ScreenRegistry getScreens() {
+        return screens;
+    }
+
     /**
      * Switch to a new panel by its name (constant from ScreenNames).
+     * A screen is built the first time it is shown; until it is ready the
+     * splash shows.
      * 
      * @param name The logical name of the screen to display
      */
 
     public void showScreen(String name) {
-        cardLayout.show(cards, name);
+        screens.show(name);
     }
 
     
 
-    /** @param score Sets the latest quiz score (persisted between screens). */
-    public void setScore(int score) {
-        this.score = score;
+    /** @return The latest quiz score, or 0 before the first quiz is finished. */
+    public int getScore() {
+        SessionEngine.Outcome outcome = getSessionEngine().outcome(session);
+        return outcome == null ? 0 : outcome.score();
     }
 
-    /** @return The current stored quiz score. */
-    public int getScore() {
-        return score;
+    /** @return How many questions the scored quiz had. */
+    public int getTotal() {
+        SessionEngine.Outcome outcome = getSessionEngine().outcome(session);
+        return outcome == null ? 0 : outcome.total();
+    }
+
+    /**
+     * @return The engine running this learner's quizzes, kept for the whole
+     *         run so every quiz builds on the last; scores go to the progress file.
+     */
+    public SessionEngine getSessionEngine() {
+        if (engine == null) {
+            engine = new SessionEngine(QuestionBank.shared(), QuestionBank.DEFAULT_TOPIC, QuizPanel.LESSON_NAME,
+                    Integer.getInteger("quiz.length", 3), progressManager);
+            session = engine.open(System.getProperty("user.name", "learner"));
+        }
+        return engine;
+    }
+
+    /** @return The learner's session in the engine. */
+    public long getSession() {
+        getSessionEngine();
+        return session;
     }
 
     /** @return The ProgressManager for saving progress. */
@@ -128,190 +305,593 @@ class ScreenNames {
     static final String QUIZ = "quiz";
     static final String RESULT = "result";
     static final String CHAT = "chat"; // new
+    static final String SANDBOX = "sandbox";
+    static final String SPLASH = "splash";
 
 }
 
 /**
- * Utility to fetch Wikipedia summaries for user questions.
- * Fetches the first paragraph of a Wikipedia article using the REST API.
+ * Builds each screen through its factory the first time it is shown and
+ * keeps it as a card. The screen's images are decoded on background threads
+ * first while the splash shows. Once a screen is up and the EDT has had a
+ * moment to paint it, the screen kids usually open next is prebuilt. When
+ * the heap is still more than -Dui.evictHeapPercent (75) full right after a
+ * collection, every screen but the one showing is dropped (unless it is
+ * {@link InProgress}); it is built fresh on its next visit.
  * 
- * @param topic The search term or article name.
- * @return The summary, or a fallback message if not found.
+ * @param cards  Panel with a CardLayout; the splash is added to it as ScreenNames.SPLASH.
+ * @param splash Shown while a screen is being prepared.
  */
+class ScreenRegistry {
+    private static final int PREBUILD_DELAY_MS = Integer.getInteger("ui.prebuildDelayMs", 300);
+    private static final int EVICT_HEAP_PERCENT = Integer.getInteger("ui.evictHeapPercent", 75);
 
-class WikiFetcher {
-    public static String fetchSummary(String topic) {
-        try {
-            String apiUrl = "https://en.wikipedia.org/api/rest_v1/page/summary/" + URLEncoder.encode(topic, "UTF-8");
-            HttpURLConnection conn = (HttpURLConnection) URI.create(apiUrl).toURL().openConnection();
-            conn.setRequestProperty("User-Agent", "ZeroGravityLessonApp/1.0 (your@email.com)");
-            conn.connect();
+    private static final class Screen {
+        final List<AssetCache.Key> assets;
+        final Supplier<JPanel> factory;
+        CompletableFuture<Void> loaded; // first decode of the assets, once started
 
-            BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null)
-                sb.append(line);
-            br.close();
-
-            // Simple JSON parsing: extract the "extract":"..." field (for summary)
-            String json = sb.toString();
-            int idx = json.indexOf("\"extract\":\"");
-            if (idx != -1) {
-                int end = json.indexOf("\",", idx + 11);
-                String extract = json.substring(idx + 10, end != -1 ? end : json.length())
-                        .replace("\\n", "\n")
-                        .replace("\\\"", "\"");
-                return extract;
-            } else {
-                return "Sorry, I couldn't find info on that topic!";
+        Screen(List<AssetCache.Key> assets, Supplier<JPanel> factory) {
+            this.assets = assets;
+            this.factory = factory;
+        }
+    }
+
+    /** A screen holding work a rebuild would lose, such as a quiz half answered. */
+    interface InProgress {
+        /** @return Whether the screen must not be dropped now. Called on the EDT. */
+        boolean inProgress();
+    }
+
+    private final JPanel cards;
+    private final CardLayout layout;
+    private final SplashPanel splash;
+    private final Map<String, Screen> screens = new HashMap<>();
+    private final Map<String, String> likelyNext = new HashMap<>();
+    private final Map<String, JPanel> built = new HashMap<>();
+    private final ThreadPoolExecutor decoders;
+    private Consumer<String> onShown = name -> {
+    };
+    private String current; // showing
+    private String pending; // asked for, still being prepared
+    private int builds, prebuilds, evictions;
+
+    public ScreenRegistry(JPanel cards, SplashPanel splash) {
+        this.cards = cards;
+        this.layout = (CardLayout) cards.getLayout();
+        this.splash = splash;
+        cards.add(splash, ScreenNames.SPLASH);
+        int cores = Runtime.getRuntime().availableProcessors();
+        // One decoder per core; idle threads go away, so nothing lingers once every screen is built
+        decoders = new ThreadPoolExecutor(cores, cores, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "asset-decoder");
+            t.setDaemon(true);
+            return t;
+        });
+        decoders.allowCoreThreadTimeOut(true);
+        watchHeap();
+    }
+
+    /** @param assets Images the screen needs, decoded before the factory runs. */
+    public void register(String name, List<AssetCache.Key> assets, Supplier<JPanel> factory) {
+        screens.put(name, new Screen(assets, factory));
+    }
+
+    /** Prebuild next while from is showing. */
+    public void setLikelyNext(String from, String next) {
+        likelyNext.put(from, next);
+    }
+
+    /** @param onShown Called on the EDT each time a screen comes up. */
+    public void setOnShown(Consumer<String> onShown) {
+        this.onShown = onShown;
+    }
+
+    /** Shows the screen, building it first if needed. Call on the EDT. */
+    public void show(String name) {
+        Screen screen = screens.get(name);
+        if (screen == null)
+            throw new IllegalArgumentException("Unknown screen: " + name);
+        if (!built.containsKey(name)) {
+            CompletableFuture<Void> loaded = load(screen, true);
+            if (!loaded.isDone()) {
+                pending = name;
+                layout.show(cards, ScreenNames.SPLASH);
+                whenLoaded(loaded, () -> {
+                    if (name.equals(pending)) // not replaced by a later request
+                        show(name);
+                });
+                return;
             }
-        } catch (Exception ex) {
-            return "Sorry, I couldn't find info on that topic! (" + ex.getMessage() + ")";
+            build(name);
+        }
+        pending = null;
+        current = name;
+        layout.show(cards, name);
+        onShown.accept(name);
+        String next = likelyNext.get(name);
+        if (next != null && !built.containsKey(next)) {
+            Timer timer = new Timer(PREBUILD_DELAY_MS, e -> prebuild(next));
+            timer.setRepeats(false);
+            timer.start();
         }
     }
-}
 
-/**
- * Helper class for reusable Swing UI elements.
- * Creates a styled 'Back' button that navigates to a specific app screen.
- * 
- * @param app          The main app instance (to control navigation).
- * @param targetScreen The screen name to show on click.
- * @return The ready-to-use JButton.
- */
-class UIUtils {
-    public static JButton createBackButton(ZeroGravityLessonApp app, String targetScreen) {
-        JButton backBtn = new JButton("⬅ Back");
-        backBtn.setFont(new Font("Comic Sans MS", Font.BOLD, 18));
-        backBtn.setBackground(new Color(60, 60, 60));
-        backBtn.setForeground(Color.YELLOW);
-        backBtn.setFocusPainted(false);
-        backBtn.setBorder(BorderFactory.createEmptyBorder(8, 24, 8, 24));
-        backBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
-        backBtn.addActionListener(e -> app.showScreen(targetScreen));
-        return backBtn;
+    private void prebuild(String name) {
+        if (built.containsKey(name))
+            return;
+        whenLoaded(load(screens.get(name), false), () -> {
+            if (!built.containsKey(name)) {
+                build(name);
+                prebuilds++;
+            }
+        });
+    }
+
+    // Starts decoding the screen's images once; later calls share the same future
+    private CompletableFuture<Void> load(Screen screen, boolean showProgress) {
+        if (screen.loaded == null) {
+            AtomicInteger done = new AtomicInteger();
+            int total = screen.assets.size();
+            screen.loaded = AssetCache.shared().preload(screen.assets, decoders, () -> {
+                int n = done.incrementAndGet();
+                if (showProgress)
+                    SwingUtilities.invokeLater(() -> splash.setProgress(n, total));
+            });
+        }
+        return screen.loaded;
+    }
+
+    private static void whenLoaded(CompletableFuture<Void> loaded, Runnable onEdt) {
+        // Go ahead even if an image failed; the screen just goes without it
+        loaded.handle((v, err) -> null).thenRunAsync(onEdt, SwingUtilities::invokeLater);
+    }
+
+    private void build(String name) {
+        JPanel panel = screens.get(name).factory.get();
+        cards.add(panel, name);
+        built.put(name, panel);
+        builds++;
+    }
+
+    /**
+     * Drops every built screen except the one showing and any still
+     * {@link InProgress}. Their images stay in the AssetCache (softly), so a
+     * rebuild is mostly layout. Call on the EDT.
+     * 
+     * @return How many screens were dropped.
+     */
+    public int evictInactive() {
+        int dropped = 0;
+        for (Iterator<Map.Entry<String, JPanel>> it = built.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, JPanel> e = it.next();
+            if (e.getKey().equals(current) || e.getValue() instanceof InProgress screen && screen.inProgress())
+                continue;
+            cards.remove(e.getValue());
+            it.remove();
+            dropped++;
+        }
+        evictions += dropped;
+        return dropped;
+    }
+
+    // Asks the JVM to report when a heap pool is still nearly full after a collection
+    private void watchHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0)
+                pool.setCollectionUsageThreshold(max / 100 * EVICT_HEAP_PERCENT);
+        }
+        NotificationEmitter memory = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        memory.addNotificationListener((notification, handback) -> {
+            if (notification.getType().equals(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED))
+                SwingUtilities.invokeLater(this::evictInactive);
+        }, null, null);
+    }
+
+    /** @return Whether the screen currently exists. Call on the EDT. */
+    public boolean isBuilt(String name) {
+        return built.containsKey(name);
+    }
+
+    /** @return {builds, of which prebuilt, evictions}. Call on the EDT. */
+    public int[] getCounts() {
+        return new int[] { builds, prebuilds, evictions };
     }
 }
 
 /**
- * Chat panel lets users ask questions about zero gravity or science topics.
- * Displays avatar, conversation, and text field for input.
+ * Utility to fetch Wikipedia summaries for user questions.
+ * Fetches the first paragraph of a Wikipedia article using the REST API,
+ * through one shared HttpClient; identical questions asked at the same time
+ * share a single request. Connect and read timeouts default to 4s/8s and can be changed with
+ * -Dwiki.connectTimeoutMs / -Dwiki.readTimeoutMs or {@link #setTimeouts}.
+ * 
+ * @param topic The search term or article name.
+ * @return The summary, or a fallback message if not found.
  */
-class ChatPanel extends JPanel {
-    private final JTextArea chatArea;
-    private final JTextField inputField;
-    private final Map<String, String> knowledgeBase = new HashMap<>();
 
-    public ChatPanel(ZeroGravityLessonApp app) {
-        setLayout(new BorderLayout());
-        setBackground(Color.DARK_GRAY);
+class WikiFetcher {
+    private static volatile String baseUrl = System.getProperty("wiki.baseUrl",
+            "https://en.wikipedia.org/api/rest_v1/page/summary/");
+    private static volatile int connectTimeoutMs = Integer.getInteger("wiki.connectTimeoutMs", 4000);
+    private static volatile int readTimeoutMs = Integer.getInteger("wiki.readTimeoutMs", 8000);
+    private static final String NOT_FOUND = "Sorry, I couldn't find info on that topic!";
+    private static final String OFFLINE = "I can't reach the space library right now. Try asking again in a little while!";
 
-        // Build knowledge base
-        knowledgeBase.put("what is zero gravity",
-                "Zero gravity (microgravity) is when you and your ship fall around Earth at the same rate, so you feel weightless!");
-        knowledgeBase.put("why study zero gravity",
-                "Because it teaches us how fluids, fire, and even our bodies behave when weightless.");
-        knowledgeBase.put("how do astronauts eat",
-                "They squeeze food from packets or use magnets on utensils so everything stays put.");
+    /** Where to look first when a question has no curated answer. */
+    enum AnswerPolicy { NETWORK_FIRST, LOCAL_FIRST }
 
-        // TOP: back button and avatar side by side
-        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        topPanel.setOpaque(false);
-        topPanel.add(UIUtils.createBackButton(app, ScreenNames.LESSON));
-        add(topPanel, BorderLayout.NORTH);
+    private static volatile AnswerPolicy policy = AnswerPolicy.valueOf(
+            System.getProperty("chat.answerPolicy", AnswerPolicy.NETWORK_FIRST.name()));
 
-        // CENTER: chat area (with scroll)
-        chatArea = new JTextArea(10, 40);
-        chatArea.setEditable(false);
-        chatArea.setLineWrap(true);
-        chatArea.setWrapStyleWord(true);
-        chatArea.setBackground(new Color(30, 30, 30));
-        chatArea.setForeground(Color.WHITE);
-        chatArea.setFont(new Font("Comic Sans MS", Font.PLAIN, 18));
+    // Wikimedia asks REST clients to stay under 200 requests per second
+    private static final TokenBucket rateLimiter = new TokenBucket(
+            Double.parseDouble(System.getProperty("wiki.ratePerSecond", "200")),
+            Integer.getInteger("wiki.rateBurst", 50));
+    private static final CircuitBreaker breaker = new CircuitBreaker(
+            Integer.getInteger("wiki.breakerFailures", 5),
+            Long.getLong("wiki.breakerOpenMs", 30_000L));
+    private static final LatencyHistogram latency = new LatencyHistogram();
+    private static final boolean hedging = Boolean.getBoolean("wiki.hedge");
+    private static final AtomicLong hedgesFired = new AtomicLong();
+    private static final AtomicLong hedgesWon = new AtomicLong();
 
-        // SOUTH: input field
-        inputField = new JTextField();
-        inputField.setFont(new Font("Comic Sans MS", Font.PLAIN, 18));
-        inputField.setBackground(new Color(50, 50, 50));
-        inputField.setForeground(Color.GRAY);
-        inputField.setText("Write here...");
-        inputField.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
-        inputField.addFocusListener(new java.awt.event.FocusAdapter() {
-            public void focusGained(java.awt.event.FocusEvent evt) {
-                if (inputField.getText().equals("Write here...")) {
-                    inputField.setText("");
-                    inputField.setForeground(Color.WHITE);
+    // Keys warmed by typeahead and not asked for yet; the oldest fall out as wasted
+    private static final Map<String, Boolean> prefetched = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    if (size() <= 64)
+                        return false;
+                    prefetchesWasted.incrementAndGet();
+                    return true;
                 }
-            }
+            });
+    private static final AtomicLong prefetchesIssued = new AtomicLong();
+    private static final AtomicLong prefetchHits = new AtomicLong();
+    private static final AtomicLong prefetchesWasted = new AtomicLong();
 
-            public void focusLost(java.awt.event.FocusEvent evt) {
-                if (inputField.getText().isEmpty()) {
-                    inputField.setText("Write here...");
-                    inputField.setForeground(Color.GRAY);
-                }
-            }
-        });
-        inputField.addActionListener(e -> processUserInput());
+    // One pooled client for every lookup: keeps TLS connections alive and
+    // multiplexes over HTTP/2 when the server offers it
+    private static volatile HttpClient client = newClient();
 
-        // Layout: center everything in a panel (GridBagLayout for centering)
+    // Response bodies are read here, so a stalled one can be timed out and closed
+    private static final ExecutorService bodyReaders = Executors.newVirtualThreadPerTaskExecutor();
 
-        JPanel centerWrapper = new JPanel();
-        centerWrapper.setOpaque(false);
-        centerWrapper.setLayout(new GridBagLayout());
+    // Lookups currently on the wire, by cache key, so duplicates share one
+    private static final ConcurrentHashMap<String, CompletableFuture<WikiSummary>> inFlight = new ConcurrentHashMap<>();
 
-        JPanel chatBox = new JPanel(new BorderLayout());
-        chatBox.setPreferredSize(new Dimension(600, 350)); // width x height
-        chatBox.setBackground(new Color(30, 30, 30));
-        chatBox.setBorder(BorderFactory.createLineBorder(Color.WHITE, 1));
-        chatBox.add(new JScrollPane(chatArea), BorderLayout.CENTER);
-        chatBox.add(inputField, BorderLayout.SOUTH);
+    // Summaries rarely change, so keep them a day; misses only 10 minutes
+    private static final WikiCache cache = new WikiCache(
+            Path.of(System.getProperty("wiki.cacheDir", "wiki-cache")),
+            Integer.getInteger("wiki.cacheEntries", 500),
+            Long.getLong("wiki.cacheChars", 2_000_000L),
+            Long.getLong("wiki.cacheTtlMs", 24 * 60 * 60 * 1000L),
+            Long.getLong("wiki.cacheNegativeTtlMs", 10 * 60 * 1000L));
 
-        centerWrapper.add(chatBox); // This centers the chatBox panel
+    /** @param url Summary endpoint prefix (e.g. a mirror or a local stub server). */
+    public static void setBaseUrl(String url) {
+        baseUrl = url;
+    }
 
-        add(centerWrapper, BorderLayout.CENTER);
+    /**
+     * The connect timeout belongs to the client, so this swaps in a new one.
+     * The old client is closed in the background once its requests finish,
+     * with its pooled connections and its executor.
+     * 
+     * @param connectMs Max time to open the connection, in milliseconds.
+     * @param readMs    Max time to wait for the response headers, and again
+     *                  for the body, in milliseconds.
+     */
+    public static synchronized void setTimeouts(int connectMs, int readMs) {
+        connectTimeoutMs = connectMs;
+        readTimeoutMs = readMs;
+        HttpClient old = client;
+        client = newClient();
+        Thread.ofVirtual().start(() -> {
+            old.close(); // waits for requests already sent on it
+            old.executor().ifPresent(e -> ((ExecutorService) e).close());
+        });
+    }
+
+    /** A chat answer; thumbnailUrl is null when there is no picture. */
+    record Answer(String text, String thumbnailUrl) {
+    }
+
+    public static String fetchSummary(String topic) {
+        return fetchAnswer(topic).text();
+    }
+
+    /** @return The best answer for a question, with its article picture if any. */
+    public static Answer fetchAnswer(String topic) {
+        boolean localFirst = policy == AnswerPolicy.LOCAL_FIRST;
+        String local = localFirst ? localAnswer(topic) : null;
+        if (local != null)
+            return new Answer(local, null);
 
-        appendAvatarMessage("Hello! Ask me anything about zero gravity.");
+        WikiCache.Entry online = fetchOnline(topic);
+        if (online != null && online.found())
+            return new Answer(online.text(), online.thumbnailUrl());
+        if (!localFirst && (local = localAnswer(topic)) != null)
+            return new Answer(local, null);
+        return new Answer(online != null ? NOT_FOUND : OFFLINE, null);
     }
 
     /**
-     * Handles input, checks if user asked a local or Wikipedia question, and
-     * replies.
+     * @return The summary entry (text null if there is no such article), or
+     *         null if Wikipedia couldn't be reached and nothing was cached.
      */
+    private static WikiCache.Entry fetchOnline(String topic) {
+        String key = WikiCache.normalizeKey(topic);
+        if (prefetched.remove(key) != null)
+            prefetchHits.incrementAndGet();
+        WikiCache.Entry cached = cache.get(key);
+        if (cached != null)
+            return cached;
+        try {
+            // Every request has its own deadlines; this one also covers a hedge
+            WikiSummary summary = lookup(key, toTopic(topic))
+                    .get(connectTimeoutMs + 2L * readTimeoutMs, TimeUnit.MILLISECONDS);
+            return summary != null ? new WikiCache.Entry(summary.extract(), summary.thumbnailUrl(), 0)
+                    : new WikiCache.Entry(null, null, 0);
+        } catch (InterruptedException ex) {
+            // The asker gave up; the shared lookup still fills the cache
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException ex) {
+            // Network trouble is not cached; answer from an expired entry if
+            // we have one, and let the next ask try again
+            return cache.getStale(key);
+        }
+    }
 
-    private void processUserInput() {
-        String userText = inputField.getText().trim();
-        if (userText.isEmpty() || userText.equals("Write here..."))
+    /**
+     * Starts loading a summary into the cache without waiting for it, so a
+     * question the user is still typing is likely answered instantly.
+     */
+    public static void prefetch(String topic) {
+        String key = WikiCache.normalizeKey(topic);
+        if (key.isEmpty() || prefetched.containsKey(key) || inFlight.containsKey(key) || cache.contains(key))
             return;
-        appendUserMessage(userText);
-        inputField.setText("");
+        prefetched.put(key, Boolean.TRUE);
+        prefetchesIssued.incrementAndGet();
+        lookup(key, toTopic(topic));
+    }
 
-        String key = userText.toLowerCase();
+    /** @return Prefetches issued, later asked for (hits), and never asked for. */
+    public static long[] getPrefetchCounts() {
+        return new long[] { prefetchesIssued.get(), prefetchHits.get(), prefetchesWasted.get() };
+    }
 
-        // Rule-based answers for certain keywords
-        String response = null;
-        if (key.contains("zero gravity") || key.contains("microgravity")) {
-            response = "Zero gravity (microgravity) is the condition in which people or objects appear to be weightless. This occurs when everything is falling together around Earth, like astronauts and their spacecraft.";
-        } else if (key.contains("who are you")) {
-            response = "I'm your friendly astronaut avatar, here to help you explore space and science!";
-        } else if (key.contains("hello") || key.contains("hi")) {
-            response = "Hello! I'm your space guide. Ask me anything about zero gravity or space!";
-        } else {
-            // Default: fetch from Wikipedia
-            response = WikiFetcher.fetchSummary(userText);
+    private static String localAnswer(String topic) {
+        OfflineEncyclopedia encyclopedia = OfflineEncyclopedia.shared();
+        if (encyclopedia == null)
+            return null;
+        OfflineEncyclopedia.Hit hit = encyclopedia.bestAnswer(toTopic(topic));
+        return hit != null ? hit.summary() : null;
+    }
+
+    /** @param p Whether the offline encyclopedia or Wikipedia is asked first. */
+    public static void setAnswerPolicy(AnswerPolicy p) {
+        policy = p;
+    }
+
+    /** @return The shared summary cache (for hit/miss/eviction counters). */
+    public static WikiCache getCache() {
+        return cache;
+    }
+
+    /** @return Latency of completed upstream requests. */
+    public static LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public static CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    /** @return Hedged second attempts started, and how many answered first. */
+    public static long[] getHedgeCounts() {
+        return new long[] { hedgesFired.get(), hedgesWon.get() };
+    }
+
+    /**
+     * Joins the in-flight download for this key, or starts one. The cache is
+     * filled before the key leaves the in-flight map, so a caller arriving in
+     * between still finds the answer.
+     */
+    private static CompletableFuture<WikiSummary> lookup(String key, String query) {
+        CompletableFuture<WikiSummary> mine = new CompletableFuture<>();
+        CompletableFuture<WikiSummary> shared = inFlight.putIfAbsent(key, mine);
+        if (shared != null)
+            return shared;
+
+        WikiCache.Entry cached = cache.get(key); // it may have landed meanwhile
+        if (cached != null) {
+            inFlight.remove(key, mine);
+            mine.complete(cached.toSummary());
+            return mine;
+        }
+        CompletableFuture<WikiSummary> request;
+        try {
+            if (!breaker.allowRequest())
+                request = CompletableFuture.failedFuture(new IOException("Wikipedia is unhealthy, circuit open"));
+            else if (!rateLimiter.tryAcquire())
+                request = CompletableFuture.failedFuture(new IOException("Rate limit reached"));
+            else
+                request = hedging ? hedged(query) : attempt(query);
+        } catch (RuntimeException e) { // e.g. a malformed base URL
+            request = CompletableFuture.failedFuture(e);
+        }
+        // Every outcome takes the key out of the map, or later asks would wait on it forever
+        request.whenComplete((summary, err) -> {
+            try {
+                if (err == null)
+                    cache.put(key, summary);
+            } finally {
+                inFlight.remove(key, mine);
+                if (err == null)
+                    mine.complete(summary);
+                else
+                    mine.completeExceptionally(err instanceof CompletionException ? err.getCause() : err);
+            }
+        });
+        return mine;
+    }
+
+    /**
+     * Fires a second attempt if the first is still running once it passes
+     * the p95 latency seen so far, and takes whichever answers first. A
+     * first attempt that fails before then fails the lookup at once: the
+     * hedge is for slow answers, and an error is not one.
+     */
+    private static CompletableFuture<WikiSummary> hedged(String topic) {
+        CompletableFuture<WikiSummary> primary = attempt(topic);
+        if (latency.count() < 20)
+            return primary; // no reliable p95 yet
+        long budgetMs = Math.max(100, Math.round(latency.percentileMillis(95)));
+        CompletableFuture<WikiSummary> backup = new CompletableFuture<>();
+        AtomicBoolean hedgeDue = new AtomicBoolean(true); // cleared by the timer or the primary, whichever is first
+        CompletableFuture.delayedExecutor(budgetMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (!hedgeDue.compareAndSet(true, false) || !rateLimiter.tryAcquire()) {
+                backup.completeExceptionally(new CancellationException());
+                return;
+            }
+            hedgesFired.incrementAndGet();
+            attempt(topic).whenComplete((v, e) -> {
+                if (e != null) {
+                    backup.completeExceptionally(e);
+                    return;
+                }
+                if (!primary.isDone()) // counted first: completing wakes the caller
+                    hedgesWon.incrementAndGet();
+                backup.complete(v);
+            });
+        });
+
+        CompletableFuture<WikiSummary> first = new CompletableFuture<>();
+        primary.whenComplete((v, e) -> {
+            if (e == null) {
+                hedgeDue.set(false);
+                first.complete(v);
+            } else if (hedgeDue.compareAndSet(true, false)) {
+                first.completeExceptionally(e); // failed before the hedge was due
+            } else {
+                backup.whenComplete((v2, e2) -> {
+                    if (e2 == null)
+                        first.complete(v2);
+                    else
+                        first.completeExceptionally(e);
+                });
+            }
+        });
+        backup.thenAccept(first::complete);
+        return first;
+    }
+
+    // One timed request whose outcome feeds the breaker and the histogram
+    private static CompletableFuture<WikiSummary> attempt(String topic) {
+        long start = System.nanoTime();
+        return download(topic).whenComplete((summary, err) -> {
+            if (err == null) {
+                latency.recordNanos(System.nanoTime() - start);
+                breaker.recordSuccess();
+            } else {
+                breaker.recordFailure();
+            }
+        });
+    }
+
+    /**
+     * Completes with the summary, or null if Wikipedia has no such article.
+     * The request timeout only covers the wait for the headers, so reading
+     * the body gets its own deadline. When it passes, the body stream is
+     * closed, which also frees the reader stuck on a stalled server.
+     */
+    private static CompletableFuture<WikiSummary> download(String topic) {
+        String title = URLEncoder.encode(topic.replace(' ', '_'), StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + title))
+                .header("User-Agent", "ZeroGravityLessonApp/1.0 (your@email.com)")
+                .header("Accept-Encoding", "gzip")
+                .timeout(Duration.ofMillis(readTimeoutMs))
+                .build();
+        int bodyTimeoutMs = readTimeoutMs;
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenCompose(response -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return readSummary(response);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, bodyReaders).orTimeout(bodyTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((summary, err) -> {
+                    if (err != null)
+                        closeQuietly(response.body());
+                }));
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            // the request has already failed
+        }
+    }
+
+    private static WikiSummary readSummary(HttpResponse<InputStream> response) throws IOException {
+        try (InputStream raw = response.body()) {
+            if (response.statusCode() == 404)
+                return null;
+            if (response.statusCode() == 429 || response.statusCode() == 503) {
+                // Told to back off: honour Retry-After before sending more
+                long retrySeconds = response.headers().firstValue("Retry-After")
+                        .filter(v -> v.matches("\\d+")).map(Long::parseLong).orElse(5L);
+                rateLimiter.pauseFor(retrySeconds * 1000);
+            }
+            if (response.statusCode() != 200)
+                throw new IOException("HTTP " + response.statusCode());
+            boolean gzip = response.headers().firstValue("Content-Encoding").orElse("").equalsIgnoreCase("gzip");
+            InputStream body = gzip ? new GZIPInputStream(raw) : raw;
+            WikiSummary summary = WikiSummary.read(body);
+            if (summary.title() != null && summary.extract() != null)
+                TopicTrie.shared().add(summary.title(), 1);
+            // HTTP/1.1 can only reuse the connection once the body is consumed
+            if (response.version() == HttpClient.Version.HTTP_1_1)
+                raw.transferTo(OutputStream.nullOutputStream());
+            return summary.extract() != null ? summary : null;
         }
+    }
 
-        appendAvatarMessage(response);
+    /** @return The shared, pooled HTTP client (also used for thumbnails). */
+    static HttpClient httpClient() {
+        return client;
+    }
+
+    private static HttpClient newClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * @return The article topic of a question, case kept: single spaces, no
+     *         leading question words or article, no trailing punctuation.
+     */
+    static String toTopic(String question) {
+        String topic = smartenQuestion(question.trim().replaceAll("\\s+", " "));
+        return topic.replaceAll("^(?i)(a|an|the) ", "").replaceAll("[?!.]+$", "").trim();
     }
 
     /**
-     * Simple helper to clean up questions before sending to Wikipedia (not called
-     * currently).
+     * Simple helper to clean up questions before sending to Wikipedia.
      * 
      * @param userText The user's question or phrase.
      * @return Cleaned question text.
      */
-    private String smartenQuestion(String userText) {
+    static String smartenQuestion(String userText) {
         String lower = userText.toLowerCase();
         // Remove leading question words for better Wikipedia search
         if (lower.startsWith("what is "))
@@ -327,90 +907,3207 @@ class ChatPanel extends JPanel {
         // Otherwise, return as is
         return userText;
     }
+}
 
-    // Appends a user message in the chat area.
-    private void appendUserMessage(String msg) {
-        chatArea.append("You: " + msg + "\n");
-    }
+/**
+ * The fields of a Wikipedia REST summary that the app uses. Any of them may
+ * be null when the response doesn't have it.
+ */
+record WikiSummary(String title, String extract, String thumbnailUrl, String type) {
+    private static final String[] FIELDS = { "title", "extract", "thumbnail.source", "type" };
 
-    // Appends an avatar reply in the chat area
-    private void appendAvatarMessage(String msg) {
-        chatArea.append("Avatar: " + msg + "\n\n");
-        chatArea.setCaretPosition(chatArea.getDocument().getLength());
+    /** Reads a summary straight off the response body, stopping early. */
+    static WikiSummary read(InputStream body) throws IOException {
+        String[] v = JsonFieldExtractor.extract(body, FIELDS);
+        return new WikiSummary(v[0], v[1], v[2], v[3]);
     }
 }
 
 /**
- * StarCometBackgroundPanel animates a black space background with twinkling
- * stars and moving comets.
- * For use as a pretty background in main screens.
+ * Single-pass JSON reader that pulls a few fields out of a document without
+ * building it in memory. Fields are named by dotted object paths (e.g.
+ * "thumbnail.source"); subtrees that can't contain one are skipped without
+ * decoding, and reading stops as soon as every field has been seen.
  * 
- * @param starCount  Number of stars
- * @param cometCount Number of comets
- * @param width      Preferred width of panel
- * @param height     Preferred height of panel
+ * @param in    The JSON document (UTF-8).
+ * @param paths The field paths to extract.
+ * @return The decoded values in the order of paths, null where missing.
  */
-class StarCometBackgroundPanel extends JPanel {
-    private static class Star {
-        float x, y;
-        int size;
-        float brightness, dBrightness;
-    }
+class JsonFieldExtractor {
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos, limit;
+    private final String[] paths;
+    private final String[] values;
+    private int remaining;
+    private final StringBuilder path = new StringBuilder();
 
-    private final Star[] stars;
+    private JsonFieldExtractor(Reader in, String[] paths) {
+        this.in = in;
+        this.paths = paths;
+        this.values = new String[paths.length];
+        this.remaining = paths.length;
+    }
 
-    private static class Comet {
-        float x, y, dx, dy;
-        int length, tailAlpha;
-        Color color;
+    public static String[] extract(InputStream in, String... paths) throws IOException {
+        JsonFieldExtractor x = new JsonFieldExtractor(new InputStreamReader(in, StandardCharsets.UTF_8), paths);
+        x.value();
+        return x.values;
     }
 
-    private final Comet[] comets;
-    private final Random rand = new Random();
+    // Reads one value at the current path; returns early once all are found
+    private void value() throws IOException {
+        char c = nextNonSpace();
+        int match = matchingPath();
+        if (c == '{') {
+            if (isPrefixOfWanted())
+                object();
+            else
+                skipNested('{', '}');
+        } else if (c == '[') {
+            skipNested('[', ']'); // fields inside arrays aren't addressable
+        } else if (c == '"') {
+            if (match >= 0 && values[match] == null) {
+                values[match] = string(new StringBuilder());
+                remaining--;
+            } else {
+                skipString();
+            }
+        } else {
+            StringBuilder literal = match >= 0 && values[match] == null ? new StringBuilder() : null;
+            while (c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                if (literal != null)
+                    literal.append(c);
+                c = next();
+            }
+            pos--; // the delimiter belongs to the caller
+            if (literal != null) {
+                values[match] = literal.toString();
+                remaining--;
+            }
+        }
+    }
 
-    public StarCometBackgroundPanel(int starCount, int cometCount, int width, int height) {
-        setPreferredSize(new Dimension(width, height));
-        setOpaque(true);
-        setBackground(Color.BLACK);
-        stars = new Star[starCount];
-        for (int i = 0; i < starCount; i++) {
-            stars[i] = new Star();
-            stars[i].x = rand.nextFloat() * width;
-            stars[i].y = rand.nextFloat() * height;
-            stars[i].size = 1 + rand.nextInt(3);
-            stars[i].brightness = 0.6f + 0.4f * rand.nextFloat();
-            stars[i].dBrightness = 0.008f * (rand.nextFloat() - 0.5f);
+    private void object() throws IOException {
+        char c = nextNonSpace();
+        if (c == '}')
+            return;
+        while (true) {
+            if (c != '"')
+                throw new IOException("Expected a field name at " + path);
+            int mark = path.length();
+            if (mark > 0)
+                path.append('.');
+            string(path);
+            if (nextNonSpace() != ':')
+                throw new IOException("Expected ':' after " + path);
+            value();
+            path.setLength(mark);
+            if (remaining == 0)
+                return;
+            c = nextNonSpace();
+            if (c == '}')
+                return;
+            if (c != ',')
+                throw new IOException("Expected ',' or '}' at " + path);
+            c = nextNonSpace();
         }
-        comets = new Comet[cometCount];
-        for (int i = 0; i < cometCount; i++)
-            comets[i] = makeComet(width, height);
-        new Timer(40, e -> animate()).start();
-        addComponentListener(new ComponentAdapter() {
+    }
+
+    // Decodes a string body (opening quote already read) into out
+    private String string(StringBuilder out) throws IOException {
+        int start = out.length();
+        while (true) {
+            // Copy the plain run up to the next quote or escape in one go
+            int run = pos;
+            while (run < limit && buf[run] != '"' && buf[run] != '\\')
+                run++;
+            out.append(buf, pos, run - pos);
+            pos = run;
+            char c = next(); // refills the buffer when the run reached its end
+            if (c == '"')
+                return out.substring(start);
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            c = next();
+            switch (c) {
+                case 'n' -> out.append('\n');
+                case 't' -> out.append('\t');
+                case 'r' -> out.append('\r');
+                case 'b' -> out.append('\b');
+                case 'f' -> out.append('\f');
+                case 'u' -> {
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(next(), 16);
+                        if (digit < 0)
+                            throw new IOException("Bad \\u escape at " + path);
+                        code = code * 16 + digit;
+                    }
+                    out.append((char) code); // surrogate pairs arrive as two escapes
+                }
+                default -> out.append(c); // \" \\ \/
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        char c;
+        while ((c = next()) != '"') {
+            if (c == '\\')
+                next();
+        }
+    }
+
+    // Skips an object or array body (opening bracket already read)
+    private void skipNested(char open, char close) throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            char c = next();
+            if (c == '"')
+                skipString();
+            else if (c == '{' || c == '[')
+                depth++;
+            else if (c == '}' || c == ']')
+                depth--;
+        }
+    }
+
+    private int matchingPath() {
+        for (int i = 0; i < paths.length; i++) {
+            if (paths[i].length() == path.length() && startsWithPath(paths[i]))
+                return i;
+        }
+        return -1;
+    }
+
+    private boolean isPrefixOfWanted() {
+        if (path.length() == 0)
+            return true;
+        for (int i = 0; i < paths.length; i++) {
+            String p = paths[i];
+            if (values[i] == null && p.length() > path.length() && p.charAt(path.length()) == '.'
+                    && startsWithPath(p))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean startsWithPath(String p) {
+        for (int i = 0; i < path.length(); i++) {
+            if (p.charAt(i) != path.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private char nextNonSpace() throws IOException {
+        char c;
+        do {
+            c = next();
+        } while (Character.isWhitespace(c));
+        return c;
+    }
+
+    private char next() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0)
+                throw new EOFException("JSON ended early at " + path);
+        }
+        return buf[pos++];
+    }
+}
+
+/**
+ * Two-tier cache for Wikipedia summaries: a bounded in-memory LRU in front of
+ * a directory of one small file per entry, so answers survive restarts.
+ * Articles that don't exist are cached too, with a shorter TTL.
+ * 
+ * @param dir           Directory for the disk tier, or null for memory only.
+ * @param maxEntries    Max entries kept in memory.
+ * @param maxChars      Max total summary characters kept in memory.
+ * @param ttlMs         Lifetime of a found summary.
+ * @param negativeTtlMs Lifetime of a "no such article" result.
+ */
+class WikiCache {
+    /** A cached lookup; text is null when the article wasn't found. */
+    record Entry(String text, String thumbnailUrl, long expiresAt) {
+        boolean found() {
+            return text != null;
+        }
+
+        /** @return The entry as a summary, or null for "not found". */
+        WikiSummary toSummary() {
+            return found() ? new WikiSummary(null, text, thumbnailUrl, null) : null;
+        }
+
+        boolean expired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    private final Path dir;
+    private final int maxEntries;
+    private final long maxChars;
+    private final long ttlMs, negativeTtlMs;
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long chars = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public WikiCache(Path dir, int maxEntries, long maxChars, long ttlMs, long negativeTtlMs) {
+        this.dir = dir;
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        this.ttlMs = ttlMs;
+        this.negativeTtlMs = negativeTtlMs;
+        if (dir != null)
+            Thread.ofVirtual().start(this::purgeExpiredFiles);
+    }
+
+    /**
+     * Turns a question into a cache key: lower case, single spaces, no
+     * leading question words and no trailing punctuation, so "What is a
+     * Black  Hole?" and "black hole" end up in the same entry.
+     */
+    static String normalizeKey(String question) {
+        return WikiFetcher.toTopic(question).toLowerCase(Locale.ROOT);
+    }
+
+    /** @return The live entry for this key, or null on a miss. */
+    public Entry get(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry e = memory.get(key);
+            if (e != null && !e.expired(now)) {
+                hits.incrementAndGet();
+                return e;
+            }
+            if (e != null)
+                remove(key);
+        }
+        Entry e = readFile(key);
+        if (e != null && !e.expired(now)) {
+            diskHits.incrementAndGet();
+            synchronized (this) {
+                insert(key, e);
+            }
+            return e;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return Whether there is a live entry for this key. Unlike get, this
+     *         is not counted as a hit or a miss (for probes like prefetch).
+     */
+    public boolean contains(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry e = memory.get(key);
+            if (e != null && !e.expired(now))
+                return true;
+        }
+        Entry e = readFile(key);
+        return e != null && !e.expired(now);
+    }
+
+    /** @return The entry for this key even if it has expired, or null. */
+    public Entry getStale(String key) {
+        synchronized (this) {
+            Entry e = memory.get(key);
+            if (e != null)
+                return e;
+        }
+        return readFile(key);
+    }
+
+    /** @param summary The summary, or null to remember that there is none. */
+    public void put(String key, WikiSummary summary) {
+        long ttl = summary != null ? ttlMs : negativeTtlMs;
+        Entry e = summary != null
+                ? new Entry(summary.extract(), summary.thumbnailUrl(), System.currentTimeMillis() + ttl)
+                : new Entry(null, null, System.currentTimeMillis() + ttl);
+        synchronized (this) {
+            insert(key, e);
+        }
+        writeFile(key, e);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return memory.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WikiCache[entries=%d, chars=%d, hits=%d, diskHits=%d, misses=%d, evictions=%d]",
+                size(), chars, getHits(), getDiskHits(), getMisses(), getEvictions());
+    }
+
+    private void insert(String key, Entry e) {
+        remove(key);
+        memory.put(key, e);
+        chars += length(e);
+        Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+        while ((memory.size() > maxEntries || chars > maxChars) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getValue() == e)
+                break; // never evict what we just added
+            chars -= length(eldest.getValue());
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key) {
+        Entry old = memory.remove(key);
+        if (old != null)
+            chars -= length(old);
+    }
+
+    private static int length(Entry e) {
+        return e.found() ? e.text().length() : 0;
+    }
+
+    private Path fileFor(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return dir.resolve(HexFormat.of().formatHex(digest, 0, 16) + ".entry");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Entry readFile(String key) {
+        if (dir == null)
+            return null;
+        Path file = fileFor(key);
+        if (!Files.exists(file))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (!in.readUTF().equals(key))
+                return null; // hash collision, treat as a miss
+            long expiresAt = in.readLong();
+            boolean found = in.readBoolean();
+            String text = null, thumbnail = null;
+            if (found) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                text = new String(bytes, StandardCharsets.UTF_8);
+                if (in.readBoolean())
+                    thumbnail = in.readUTF();
+            }
+            return new Entry(text, thumbnail, expiresAt);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeFile(String key, Entry e) {
+        if (dir == null)
+            return;
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "entry", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeUTF(key);
+                out.writeLong(e.expiresAt());
+                out.writeBoolean(e.found());
+                if (e.found()) {
+                    byte[] bytes = e.text().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    out.writeBoolean(e.thumbnailUrl() != null);
+                    if (e.thumbnailUrl() != null)
+                        out.writeUTF(e.thumbnailUrl());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            ex.printStackTrace(); // the memory tier still has it
+        }
+    }
+
+    // Deletes disk entries that have outlived their TTL
+    private void purgeExpiredFiles() {
+        if (!Files.isDirectory(dir))
+            return;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.entry")) {
+            for (Path file : files) {
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                    in.readUTF();
+                    if (in.readLong() > now)
+                        continue;
+                } catch (IOException e) {
+                    // unreadable or half-written, drop it
+                }
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
+
+/**
+ * Offline encyclopedia: a compact on-disk inverted index over article
+ * summaries, memory-mapped at runtime and ranked with BM25. Build one from a
+ * UTF-8 dump with one "title<TAB>summary" line per article:
+ * <pre>java -cp app.jar OfflineEncyclopedia dump.tsv encyclopedia.idx</pre>
+ * The build streams the dump and spills sorted postings runs to temp files,
+ * so dumps larger than the heap are fine. Postings are delta + varint coded.
+ * Each section of the index must stay under 2 GB to be mapped.
+ * 
+ * @param indexFile The index written by {@link #build}.
+ */
+class OfflineEncyclopedia {
+    record Hit(String title, String summary, double score, int matchedTerms) {
+    }
+
+    private static final int MAGIC = 0x5A474549; // "ZGEI"
+    private static final int HEADER_BYTES = 72;
+    private static final int TERM_ENTRY_BYTES = 20; // termOffset, termLength, df, postingsOffset
+    private static final int DOC_ENTRY_BYTES = 12; // docOffset, docLength
+    private static final double K1 = 1.2, B = 0.75;
+    private static final int TITLE_BOOST = 2; // title words count as this many occurrences
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "the", "of", "in", "on", "at", "to", "and",
+            "or", "is", "are", "was", "what", "who", "why", "how", "do", "does", "tell", "me", "about", "explain",
+            "define", "for", "with", "by", "it", "its", "as", "from", "that", "this", "be", "can", "you");
+
+    private static OfflineEncyclopedia shared;
+    private static boolean sharedLoaded;
+
+    private final int docCount, termCount;
+    private final double avgDocLength;
+    private final MappedByteBuffer termTable, terms, postings, docTable, docs;
+
+    public OfflineEncyclopedia(Path indexFile) throws IOException {
+        try (FileChannel ch = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            ch.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not an encyclopedia index: " + indexFile);
+            docCount = header.getInt();
+            termCount = header.getInt();
+            avgDocLength = header.getDouble();
+            long[] sections = new long[6];
+            for (int i = 0; i < sections.length; i++)
+                sections[i] = header.getLong();
+            termTable = map(ch, sections[0], sections[1]);
+            terms = map(ch, sections[1], sections[2]);
+            postings = map(ch, sections[2], sections[3]);
+            docTable = map(ch, sections[3], sections[4]);
+            docs = map(ch, sections[4], sections[5]);
+        }
+    }
+
+    /**
+     * @return The index named by -Doffline.index (default encyclopedia.idx),
+     *         opened once, or null if there is none.
+     */
+    public static synchronized OfflineEncyclopedia shared() {
+        if (!sharedLoaded) {
+            sharedLoaded = true;
+            Path file = Path.of(System.getProperty("offline.index", "encyclopedia.idx"));
+            if (Files.exists(file)) {
+                try {
+                    shared = new OfflineEncyclopedia(file);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return shared;
+    }
+
+    public int size() {
+        return docCount;
+    }
+
+    /**
+     * @return The top hit if it matches at least half of the question's
+     *         words, so a loose match doesn't pass for an answer; else null.
+     */
+    public Hit bestAnswer(String question) {
+        List<String> words = tokenize(question);
+        if (words.isEmpty())
+            return null;
+        List<Hit> hits = search(question, 1);
+        if (hits.isEmpty() || hits.get(0).matchedTerms() * 2 < new HashSet<>(words).size())
+            return null;
+        return hits.get(0);
+    }
+
+    /**
+     * @return Up to limit articles ranked by BM25 score, best first. Scores
+     *         add up in arrays indexed by doc, not a map, since a common word
+     *         can have a posting in most of the articles.
+     */
+    public List<Hit> search(String query, int limit) {
+        List<Integer> entries = new ArrayList<>();
+        long postingCount = 0;
+        for (String term : new HashSet<>(tokenize(query))) {
+            int entry = findTerm(term);
+            if (entry >= 0) {
+                entries.add(entry);
+                postingCount += termTable.getInt(entry * TERM_ENTRY_BYTES + 8);
+            }
+        }
+        if (entries.isEmpty() || limit <= 0)
+            return List.of();
+        double[] scores = new double[docCount];
+        byte[] matched = new byte[docCount]; // terms found in the doc (a query has far fewer than 256)
+        int[] touched = new int[(int) Math.min(docCount, postingCount)];
+        int touchedCount = 0;
+        for (int entry : entries) {
+            int base = entry * TERM_ENTRY_BYTES;
+            int df = termTable.getInt(base + 8);
+            int pos = (int) termTable.getLong(base + 12);
+            double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+            int doc = 0;
+            for (int i = 0; i < df; i++) {
+                long v = readVarint(postings, pos);
+                pos += varintSize(v);
+                doc += (int) v;
+                long tf = readVarint(postings, pos);
+                pos += varintSize(tf);
+                int docLength = docTable.getInt(doc * DOC_ENTRY_BYTES + 8);
+                double norm = tf + K1 * (1 - B + B * docLength / avgDocLength);
+                if (matched[doc]++ == 0)
+                    touched[touchedCount++] = doc;
+                scores[doc] += idf * tf * (K1 + 1) / norm;
+            }
+        }
+        // Only a doc that beats the weakest of the top so far goes into the heap
+        PriorityQueue<Integer> top = new PriorityQueue<>(Comparator.comparingDouble(d -> scores[d]));
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            if (top.size() < limit) {
+                top.add(doc);
+            } else if (scores[doc] > scores[top.peek()]) {
+                top.poll();
+                top.add(doc);
+            }
+        }
+        List<Hit> hits = new ArrayList<>();
+        while (!top.isEmpty()) {
+            int doc = top.poll();
+            int off = (int) docTable.getLong(doc * DOC_ENTRY_BYTES);
+            String title = readString(docs, off);
+            off += varintSize(readVarint(docs, off)) + utf8Length(docs, off);
+            hits.add(new Hit(title, readString(docs, off), scores[doc], matched[doc]));
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    // Binary search of the sorted term table
+    private int findTerm(String term) {
+        int lo = 0, hi = termCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int base = mid * TERM_ENTRY_BYTES;
+            byte[] bytes = new byte[termTable.getInt(base + 4)];
+            terms.get(termTable.getInt(base), bytes);
+            int cmp = new String(bytes, StandardCharsets.UTF_8).compareTo(term);
+            if (cmp == 0)
+                return mid;
+            if (cmp < 0)
+                lo = mid + 1;
+            else
+                hi = mid - 1;
+        }
+        return -1;
+    }
+
+    /** Lower-cased words of the text, minus stop words. */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String w = text.substring(start, Math.min(i, start + 64)).toLowerCase(Locale.ROOT);
+                if (!STOP_WORDS.contains(w))
+                    words.add(w);
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Streams a "title<TAB>summary" dump into an index file. Postings are
+     * collected in memory up to a budget, spilled as sorted runs, and the
+     * runs are merged term by term into the final file.
+     */
+    public static void build(Path dump, Path indexFile) throws IOException {
+        int budget = Integer.getInteger("offline.buildBudget", 4_000_000);
+        Path work = Files.createTempDirectory("encyclopedia");
+        try {
+            Path docsFile = work.resolve("docs"), docTableFile = work.resolve("doctable");
+            List<Path> runs = new ArrayList<>();
+            TreeMap<String, ByteArrayOutputStream> run = new TreeMap<>();
+            Map<String, Integer> lastDocInRun = new HashMap<>();
+            int pending = 0, docCount = 0;
+            long totalLength = 0, docOffset = 0;
+
+            try (BufferedReader in = Files.newBufferedReader(dump, StandardCharsets.UTF_8);
+                    DataOutputStream docsOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(docsFile)));
+                    DataOutputStream docTableOut = new DataOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(docTableFile)))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab <= 0)
+                        continue;
+                    String title = line.substring(0, tab).strip(), summary = line.substring(tab + 1).strip();
+                    Map<String, Integer> tf = new HashMap<>();
+                    for (String w : tokenize(title))
+                        tf.merge(w, TITLE_BOOST, Integer::sum);
+                    for (String w : tokenize(summary))
+                        tf.merge(w, 1, Integer::sum);
+                    int length = 0;
+                    for (int n : tf.values())
+                        length += n;
+
+                    int doc = docCount++;
+                    totalLength += length;
+                    docTableOut.writeLong(docOffset);
+                    docTableOut.writeInt(length);
+                    docOffset += writeString(docsOut, title) + writeString(docsOut, summary);
+
+                    for (Map.Entry<String, Integer> e : tf.entrySet()) {
+                        ByteArrayOutputStream list = run.computeIfAbsent(e.getKey(), k -> new ByteArrayOutputStream());
+                        writeVarint(list, doc - lastDocInRun.getOrDefault(e.getKey(), 0));
+                        writeVarint(list, e.getValue());
+                        lastDocInRun.put(e.getKey(), doc);
+                    }
+                    pending += tf.size();
+                    if (pending >= budget) {
+                        runs.add(writeRun(work, runs.size(), run, lastDocInRun));
+                        pending = 0;
+                    }
+                }
+            }
+            if (!run.isEmpty() || runs.isEmpty())
+                runs.add(writeRun(work, runs.size(), run, lastDocInRun));
+            mergeRuns(work, runs, docsFile, docTableFile, docCount,
+                    docCount == 0 ? 1 : (double) totalLength / docCount, indexFile);
+        } finally {
+            try (var files = Files.list(work)) {
+                for (Path f : files.toList())
+                    Files.deleteIfExists(f);
+            }
+            Files.deleteIfExists(work);
+        }
+    }
+
+    // Run format per term: UTF term, posting count, postings with run-local deltas
+    private static Path writeRun(Path work, int n, TreeMap<String, ByteArrayOutputStream> run,
+            Map<String, Integer> lastDoc) throws IOException {
+        Path file = work.resolve("run" + n);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (Map.Entry<String, ByteArrayOutputStream> e : run.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeInt(e.getValue().size());
+                e.getValue().writeTo(out);
+            }
+        }
+        run.clear();
+        lastDoc.clear();
+        return file;
+    }
+
+    /** Cursor over one spilled run during the merge. */
+    private static class RunReader {
+        final DataInputStream in;
+        final int order;
+        String term;
+        byte[] postings;
+
+        RunReader(Path file, int order) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            this.order = order;
+        }
+
+        boolean advance() throws IOException {
+            try {
+                term = in.readUTF();
+            } catch (EOFException e) {
+                in.close();
+                return false;
+            }
+            postings = new byte[in.readInt()];
+            in.readFully(postings);
+            return true;
+        }
+    }
+
+    private static void mergeRuns(Path work, List<Path> runs, Path docsFile, Path docTableFile, int docCount,
+            double avgLength, Path indexFile) throws IOException {
+        Path termTableFile = work.resolve("termtable"), termsFile = work.resolve("terms"),
+                postingsFile = work.resolve("postings");
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                Comparator.comparing((RunReader r) -> r.term).thenComparingInt(r -> r.order));
+        for (int i = 0; i < runs.size(); i++) {
+            RunReader r = new RunReader(runs.get(i), i);
+            if (r.advance())
+                queue.add(r);
+        }
+        int termCount = 0;
+        try (DataOutputStream table = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(termTableFile)));
+                BufferedOutputStream termsOut = new BufferedOutputStream(Files.newOutputStream(termsFile));
+                CountingOutputStream postingsOut = new CountingOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(postingsFile)))) {
+            int termsOffset = 0;
+            while (!queue.isEmpty()) {
+                String term = queue.peek().term;
+                long postingsOffset = postingsOut.count;
+                int df = 0, lastDoc = 0;
+                // Runs cover increasing doc ranges, so run order keeps doc ids sorted
+                while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+                    RunReader r = queue.poll();
+                    ByteBuffer buf = ByteBuffer.wrap(r.postings);
+                    int doc = 0;
+                    for (int pos = 0; pos < r.postings.length;) {
+                        long delta = readVarint(buf, pos);
+                        pos += varintSize(delta);
+                        long tf = readVarint(buf, pos);
+                        pos += varintSize(tf);
+                        doc += (int) delta;
+                        writeVarint(postingsOut, doc - lastDoc);
+                        writeVarint(postingsOut, tf);
+                        lastDoc = doc;
+                        df++;
+                    }
+                    if (r.advance())
+                        queue.add(r);
+                }
+                byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+                termsOut.write(bytes);
+                table.writeInt(termsOffset);
+                table.writeInt(bytes.length);
+                table.writeInt(df);
+                table.writeLong(postingsOffset);
+                termsOffset += bytes.length;
+                termCount++;
+            }
+        }
+
+        Path[] sections = { termTableFile, termsFile, postingsFile, docTableFile, docsFile };
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(docCount).putInt(termCount).putDouble(avgLength);
+            long offset = HEADER_BYTES;
+            for (Path section : sections) {
+                header.putLong(offset);
+                offset += Files.size(section);
+            }
+            header.putLong(offset);
+            header.position(HEADER_BYTES).flip();
+            out.write(header);
+            for (Path section : sections) {
+                try (FileChannel in = FileChannel.open(section, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    for (long done = 0; done < size;)
+                        done += in.transferTo(done, size - done, out);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: OfflineEncyclopedia <dump.tsv> <index file>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        build(Path.of(args[0]), Path.of(args[1]));
+        OfflineEncyclopedia index = new OfflineEncyclopedia(Path.of(args[1]));
+        System.out.printf("Indexed %d articles in %d ms%n", index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Counts bytes written, for postings offsets. */
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel ch, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE)
+            throw new IOException("Index section too large to map: " + (to - from) + " bytes");
+        return ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    private static int writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+        return varintSize(bytes.length) + bytes.length;
+    }
+
+    private static String readString(ByteBuffer buf, int pos) {
+        byte[] bytes = new byte[utf8Length(buf, pos)];
+        buf.get(pos + varintSize(bytes.length), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(ByteBuffer buf, int pos) {
+        return (int) readVarint(buf, pos);
+    }
+
+    private static void writeVarint(OutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarint(ByteBuffer buf, int pos) {
+        long v = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = buf.get(pos++);
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+    }
+
+    private static int varintSize(long v) {
+        int n = 1;
+        while ((v >>>= 7) != 0)
+            n++;
+        return n;
+    }
+}
+
+/**
+ * Token bucket rate limiter: holds up to burst tokens, refilled at
+ * ratePerSecond; each request spends one.
+ * 
+ * @param ratePerSecond Sustained requests per second.
+ * @param burst         Max requests allowed back to back.
+ */
+class TokenBucket {
+    private final double ratePerNano;
+    private final int burst;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    // nanoTime can be negative, so "not paused" starts at now rather than 0
+    private long pausedUntil = lastRefill;
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.ratePerNano = ratePerSecond / 1e9;
+        this.burst = burst;
+        this.tokens = burst;
+    }
+
+    /** @return True if a request may go out now. */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (now - pausedUntil < 0)
+            return false;
+        tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+        if (tokens < 1)
+            return false;
+        tokens--;
+        return true;
+    }
+
+    /** Refuses every request for the given time (e.g. after HTTP 429). */
+    public synchronized void pauseFor(long millis) {
+        long until = System.nanoTime() + millis * 1_000_000;
+        if (until - pausedUntil > 0)
+            pausedUntil = until;
+        tokens = 0;
+    }
+}
+
+/**
+ * Circuit breaker: after enough failures in a row it opens and rejects
+ * requests for a cool-down, then lets one probe through (half-open) and
+ * closes again if that probe succeeds.
+ * 
+ * @param failureThreshold Consecutive failures that open the circuit.
+ * @param openMillis       How long to stay open before probing.
+ */
+class CircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /** @return True if a request may be attempted. */
+    public synchronized boolean allowRequest() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (System.currentTimeMillis() - openedAt < openMillis)
+                    yield false;
+                state = State.HALF_OPEN; // this caller is the probe
+                yield true;
+            }
+            case HALF_OPEN -> false; // a probe is already out
+        };
+    }
+
+    public synchronized void recordSuccess() {
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
+
+/**
+ * Lock-free latency histogram with log-linear buckets (8 per power of two,
+ * so about 12% resolution) from 1 microsecond to hours.
+ */
+class LatencyHistogram {
+    private static final int SUB = 8;
+    private final AtomicLongArray counts = new AtomicLongArray(62 * SUB);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(index(micros));
+        total.incrementAndGet();
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    /** @return Upper bound of the bucket holding the given percentile, in ms. */
+    public double percentileMillis(double percentile) {
+        long n = total.get();
+        if (n == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target)
+                return Math.min(lowerBound(i + 1) - 1, maxMicros.get()) / 1000.0;
+        }
+        return maxMicros.get() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms", count(),
+                percentileMillis(50), percentileMillis(95), percentileMillis(99), maxMicros.get() / 1000.0);
+    }
+
+    private static int index(long v) {
+        if (v < SUB)
+            return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        return (exp - 2) * SUB + (int) ((v >>> (exp - 3)) & (SUB - 1));
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB)
+            return index;
+        int exp = index / SUB + 2;
+        return (long) (SUB + index % SUB) << (exp - 3);
+    }
+}
+
+/**
+ * Helper class for reusable Swing UI elements.
+ * Creates a styled 'Back' button that navigates to a specific app screen.
+ * 
+ * @param app          The main app instance (to control navigation).
+ * @param targetScreen The screen name to show on click.
+ * @return The ready-to-use JButton.
+ */
+class UIUtils {
+    public static JButton createBackButton(ZeroGravityLessonApp app, String targetScreen) {
+        JButton backBtn = new JButton("⬅ Back");
+        backBtn.setFont(new Font("Comic Sans MS", Font.BOLD, 18));
+        backBtn.setBackground(new Color(60, 60, 60));
+        backBtn.setForeground(Color.YELLOW);
+        backBtn.setFocusPainted(false);
+        backBtn.setBorder(BorderFactory.createEmptyBorder(8, 24, 8, 24));
+        backBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        backBtn.addActionListener(e -> app.showScreen(targetScreen));
+        return backBtn;
+    }
+}
+
+/**
+ * Decodes each image once per size and keeps high-quality pre-scaled
+ * copies, keyed by resource and target size. Images load from the classpath
+ * first (so a packaged jar works) and then from the working directory.
+ * Large sources are subsampled while decoding, so a 5000 px picture shown
+ * at 350 px never exists at full size in memory. Entries are held through
+ * soft references, so the JVM can drop them under memory pressure; they
+ * are simply decoded again on the next request.
+ */
+class AssetCache {
+    record Key(String resource, int width, int height) {
+    }
+
+    // A cached image that remembers its key and size, so eviction can be accounted for
+    private static final class Entry extends SoftReference<BufferedImage> {
+        final Key key;
+        final long bytes;
+
+        Entry(Key key, BufferedImage image, ReferenceQueue<BufferedImage> queue) {
+            super(image, queue);
+            this.key = key;
+            this.bytes = (long) image.getWidth() * image.getHeight() * 4;
+        }
+    }
+
+    private static AssetCache shared;
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Key, CompletableFuture<BufferedImage>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Dimension> sourceSizes = new ConcurrentHashMap<>();
+    private final ReferenceQueue<BufferedImage> cleared = new ReferenceQueue<>();
+    private final AtomicLong footprint = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong(), decodes = new AtomicLong(), evictions = new AtomicLong();
+
+    public static synchronized AssetCache shared() {
+        if (shared == null)
+            shared = new AssetCache();
+        return shared;
+    }
+
+    /**
+     * @return The image scaled to width x height (a size of 0 or less keeps
+     *         the aspect ratio from the other; both for the original size),
+     *         or null if it can't be found or decoded.
+     */
+    public BufferedImage get(String resource, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            Dimension source = sourceSize(resource);
+            if (source == null)
+                return null;
+            if (width <= 0 && height <= 0) {
+                width = source.width;
+                height = source.height;
+            } else if (width <= 0) {
+                width = Math.max(1, Math.round((float) source.width * height / source.height));
+            } else {
+                height = Math.max(1, Math.round((float) source.height * width / source.width));
+            }
+        }
+        return lookup(new Key(resource, width, height));
+    }
+
+    /** @return The image no wider than maxWidth (never enlarged), or null. */
+    public BufferedImage getFitted(String resource, int maxWidth) {
+        Dimension source = sourceSize(resource);
+        if (source == null)
+            return null;
+        return source.width <= maxWidth ? get(resource, 0, 0) : get(resource, maxWidth, 0);
+    }
+
+    /**
+     * Loads every key on the executor, in parallel.
+     * 
+     * @param onEach Called (on a loader thread) after each key is done.
+     * @return Completes when all are loaded (or failed to).
+     */
+    public CompletableFuture<Void> preload(List<Key> keys, Executor executor, Runnable onEach) {
+        CompletableFuture<?>[] loads = keys.stream()
+                .map(k -> CompletableFuture.runAsync(() -> {
+                    get(k.resource(), k.width(), k.height());
+                    onEach.run();
+                }, executor))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(loads);
+    }
+
+    /** @return get() wrapped for a label, or null if there is no image. */
+    public ImageIcon icon(String resource, int width, int height) {
+        BufferedImage image = get(resource, width, height);
+        return image != null ? new ImageIcon(image) : null;
+    }
+
+    /** @return The image's full size, read from its header only, or null if it can't be read. */
+    public Dimension sourceSize(String resource) {
+        Dimension size = sourceSizes.get(resource);
+        if (size != null)
+            return size;
+        try (ImageInputStream stream = open(resource)) {
+            ImageReader reader = stream != null ? readerFor(stream) : null;
+            if (reader == null)
+                return null;
+            try {
+                size = new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        sourceSizes.put(resource, size);
+        return size;
+    }
+
+    private BufferedImage lookup(Key key) {
+        purgeCleared();
+        Entry entry = entries.get(key);
+        BufferedImage image = entry != null ? entry.get() : null;
+        if (image != null) {
+            hits.incrementAndGet();
+            return image;
+        }
+        CompletableFuture<BufferedImage> mine = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> shared = inFlight.putIfAbsent(key, mine);
+        if (shared != null)
+            return shared.join(); // someone else is already loading it
+        try {
+            image = load(key);
+            if (image != null) {
+                Entry added = new Entry(key, image, cleared);
+                footprint.addAndGet(added.bytes);
+                Entry old = entries.put(key, added);
+                if (old != null) // cleared but not yet purged; purgeCleared will skip it
+                    footprint.addAndGet(-old.bytes);
+            }
+            return image;
+        } finally {
+            inFlight.remove(key, mine);
+            mine.complete(image);
+        }
+    }
+
+    // Decodes at no more than twice the target size, then scales down smoothly
+    private BufferedImage load(Key key) {
+        try (ImageInputStream stream = open(key.resource())) {
+            ImageReader reader = stream != null ? readerFor(stream) : null;
+            if (reader == null)
+                return null;
+            try {
+                decodes.incrementAndGet();
+                int w = reader.getWidth(0), h = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = Math.max(1, Math.min(w / (2 * key.width()), h / (2 * key.height())));
+                if (factor > 1)
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                return scale(reader.read(0, param), key.width(), key.height());
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static ImageInputStream open(String resource) throws IOException {
+        URL url = AssetCache.class.getResource("/" + resource);
+        if (url != null)
+            return ImageIO.createImageInputStream(url.openStream());
+        Path file = Path.of(resource);
+        return Files.exists(file) ? ImageIO.createImageInputStream(file.toFile()) : null;
+    }
+
+    private static ImageReader readerFor(ImageInputStream stream) {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext())
+            return null;
+        ImageReader reader = readers.next();
+        reader.setInput(stream, true, true);
+        return reader;
+    }
+
+    /**
+     * Scales in steps of at most one half with bilinear filtering, which looks
+     * as good as SCALE_SMOOTH for downscaling at a fraction of the cost. The
+     * result is always a new image compatible with the screen.
+     */
+    static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int w = source.getWidth(), h = source.getHeight();
+        do {
+            w = w > width ? Math.max(width, w / 2) : width;
+            h = h > height ? Math.max(height, h / 2) : height;
+            BufferedImage next = newImage(w, h);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    // Compatible with the screen when there is one, so drawing it needs no conversion
+    private static BufferedImage newImage(int w, int h) {
+        if (!GraphicsEnvironment.isHeadless())
+            return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration().createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+        return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    // Forget entries whose images the GC has reclaimed
+    private void purgeCleared() {
+        Reference<? extends BufferedImage> ref;
+        while ((ref = cleared.poll()) != null) {
+            Entry entry = (Entry) ref;
+            if (entries.remove(entry.key, entry))
+                footprint.addAndGet(-entry.bytes);
+            evictions.incrementAndGet();
+        }
+    }
+
+    /** @return Bytes of pixel data currently held. */
+    public long getFootprintBytes() {
+        purgeCleared();
+        return footprint.get();
+    }
+
+    /** @return {cache hits, decodes, entries evicted}. */
+    public long[] getCounts() {
+        return new long[] { hits.get(), decodes.get(), evictions.get() };
+    }
+
+    @Override
+    public String toString() {
+        long bytes = getFootprintBytes(), c[] = getCounts();
+        return String.format("%d images, %.1f MB, hits=%d decodes=%d evicted=%d", entries.size(),
+                bytes / 1048576.0, c[0], c[1], c[2]);
+    }
+}
+
+/**
+ * Chat panel lets users ask questions about zero gravity or science topics.
+ * Displays avatar, conversation, and text field for input.
+ */
+class ChatPanel extends JPanel {
+    private final TranscriptModel transcript = new TranscriptModel(Integer.getInteger("chat.transcriptSize", 200));
+    private final JList<ChatMessage> chatList;
+    private final JTextField inputField;
+    private final IntentMatcher intents = IntentMatcher.shared();
+
+    // Typeahead: suggest topics shortly after typing stops, and prefetch the top one
+    private final JPanel suggestionBar;
+    private final Timer suggestTimer;
+    private int typingVersion = 0;
+
+    // Wikipedia lookups run here so the EDT (and every animation) keeps going; made on first use and shut
+    // down when the panel is removed, so a panel added back gets a fresh one
+    private ExecutorService lookupExecutor;
+    private Future<?> pendingLookup;
+    private ChatMessage pendingPlaceholder;
+    private final ChatHistoryLog history = ChatHistoryLog.shared();
+    private static final int THUMBNAIL_SIZE = 96;
+    private static final String ASKED_COMMAND = "/asked";
+    private static final int ASKED_SHOWN = 20;
+    private static final int SCROLL_BACK_PAGE = 50;
+
+    public ChatPanel(ZeroGravityLessonApp app) {
+        setLayout(new BorderLayout());
+        setBackground(Color.DARK_GRAY);
+
+        // TOP: back button and avatar side by side
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        topPanel.setOpaque(false);
+        topPanel.add(UIUtils.createBackButton(app, ScreenNames.LESSON));
+        add(topPanel, BorderLayout.NORTH);
+
+        // CENTER: chat transcript (with scroll); JList only lays out and
+        // paints the rows in view
+        chatList = new JList<>(transcript) {
+            @Override
+            public boolean getScrollableTracksViewportWidth() {
+                return true; // wrap messages to the visible width
+            }
+        };
+        chatList.setCellRenderer(new ChatMessageRenderer());
+        chatList.setBackground(new Color(30, 30, 30));
+        chatList.setSelectionModel(new DefaultListSelectionModel() {
+            @Override
+            public void setSelectionInterval(int index0, int index1) {
+                // the transcript is read-only
+            }
+        });
+        chatList.addComponentListener(new ComponentAdapter() {
+            public void componentResized(ComponentEvent evt) {
+                // Row heights depend on the width, so make JList measure again
+                chatList.setFixedCellHeight(10);
+                chatList.setFixedCellHeight(-1);
+            }
+        });
+        JScrollPane scroll = new JScrollPane(chatList);
+        transcript.addListDataListener(new ListDataListener() {
+            public void intervalAdded(ListDataEvent e) {
+                if (e.getIndex1() == transcript.getSize() - 1) {
+                    chatList.ensureIndexIsVisible(transcript.getSize() - 1);
+                    return;
+                }
+                // Older messages paged in above: keep the rows that were on screen where they were
+                Rectangle added = chatList.getCellBounds(e.getIndex0(), e.getIndex1());
+                Point view = scroll.getViewport().getViewPosition();
+                scroll.validate();
+                scroll.getViewport().setViewPosition(new Point(view.x, view.y + (added != null ? added.height : 0)));
+            }
+
+            public void intervalRemoved(ListDataEvent e) {
+            }
+
+            public void contentsChanged(ListDataEvent e) {
+            }
+        });
+
+        // SOUTH: input field
+        inputField = new JTextField();
+        inputField.setFont(new Font("Comic Sans MS", Font.PLAIN, 18));
+        inputField.setBackground(new Color(50, 50, 50));
+        inputField.setForeground(Color.GRAY);
+        inputField.setText("Write here...");
+        inputField.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        inputField.addFocusListener(new java.awt.event.FocusAdapter() {
+            public void focusGained(java.awt.event.FocusEvent evt) {
+                if (inputField.getText().equals("Write here...")) {
+                    inputField.setText("");
+                    inputField.setForeground(Color.WHITE);
+                }
+            }
+
+            public void focusLost(java.awt.event.FocusEvent evt) {
+                if (inputField.getText().isEmpty()) {
+                    inputField.setText("Write here...");
+                    inputField.setForeground(Color.GRAY);
+                }
+            }
+        });
+        inputField.addActionListener(e -> processUserInput());
+
+        suggestionBar = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 4));
+        suggestionBar.setBackground(new Color(30, 30, 30));
+        suggestionBar.setVisible(false);
+        suggestTimer = new Timer(250, e -> suggestTopics());
+        suggestTimer.setRepeats(false);
+        inputField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                typed();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                typed();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
+        // Layout: center everything in a panel (GridBagLayout for centering)
+
+        JPanel centerWrapper = new JPanel();
+        centerWrapper.setOpaque(false);
+        centerWrapper.setLayout(new GridBagLayout());
+
+        JPanel chatBox = new JPanel(new BorderLayout());
+        chatBox.setPreferredSize(new Dimension(600, 350)); // width x height
+        chatBox.setBackground(new Color(30, 30, 30));
+        chatBox.setBorder(BorderFactory.createLineBorder(Color.WHITE, 1));
+        // Scrolled to the top: bring back the messages spilled to disk, a page at a time
+        scroll.getVerticalScrollBar().addAdjustmentListener(e -> {
+            if (e.getValue() == 0 && !e.getValueIsAdjusting() && transcript.hasOlder())
+                transcript.loadOlder(SCROLL_BACK_PAGE);
+        });
+        chatBox.add(scroll, BorderLayout.CENTER);
+        JPanel inputBox = new JPanel(new BorderLayout());
+        inputBox.add(suggestionBar, BorderLayout.NORTH);
+        inputBox.add(inputField, BorderLayout.CENTER);
+        chatBox.add(inputBox, BorderLayout.SOUTH);
+
+        centerWrapper.add(chatBox); // This centers the chatBox panel
+
+        add(centerWrapper, BorderLayout.CENTER);
+
+        // Bring back the end of earlier sessions, then greet (off the EDT)
+        history.lastMessages(Integer.getInteger("chat.restoreCount", 50)).whenComplete((old, err) -> {
+            if (old != null)
+                old.forEach(transcript::append);
+            transcript.append(new ChatMessage("Avatar", "Hello! Ask me anything about zero gravity."));
+        });
+    }
+
+    /**
+     * Handles input, checks if user asked a local or Wikipedia question, and
+     * replies.
+     */
+
+    private void processUserInput() {
+        String userText = inputField.getText().trim();
+        if (userText.isEmpty() || userText.equals("Write here..."))
+            return;
+        if (userText.equals(ASKED_COMMAND) || userText.startsWith(ASKED_COMMAND + " ")) {
+            transcript.append(new ChatMessage("You", userText)); // a lookup, not a question: not logged
+            inputField.setText("");
+            showPastQuestions(userText.substring(ASKED_COMMAND.length()).trim());
+            return;
+        }
+        appendUserMessage(userText);
+        inputField.setText("");
+        suggestTimer.stop();
+        showSuggestions(List.of());
+
+        // Curated answers first (see intents.txt)
+        IntentMatcher.Intent intent = intents.match(userText);
+        if (intent != null) {
+            appendAvatarMessage(intent.answer());
+        } else {
+            // Default: fetch from Wikipedia in the background
+            askWikipedia(userText);
+        }
+    }
+
+    // Restarts the debounce on every keystroke
+    private void typed() {
+        typingVersion++;
+        suggestTimer.restart();
+    }
+
+    /**
+     * Looks up completions for the current text off the EDT, shows them as
+     * buttons, and prefetches the top one unless it has a curated answer.
+     */
+    private void suggestTopics() {
+        String text = inputField.getText();
+        int version = typingVersion;
+        if (text.isBlank() || text.equals("Write here...")) {
+            showSuggestions(List.of());
+            return;
+        }
+        lookups().submit(() -> {
+            List<String> topics = TopicTrie.shared().suggest(WikiFetcher.toTopic(text), 3);
+            if (!topics.isEmpty() && intents.match(topics.get(0)) == null)
+                WikiFetcher.prefetch(topics.get(0));
+            SwingUtilities.invokeLater(() -> {
+                if (version == typingVersion) // ignore if the kid kept typing
+                    showSuggestions(topics);
+            });
+        });
+    }
+
+    private void showSuggestions(List<String> topics) {
+        suggestionBar.removeAll();
+        for (String topic : topics) {
+            JButton btn = new JButton(topic);
+            btn.setFont(new Font("Comic Sans MS", Font.PLAIN, 14));
+            btn.setBackground(new Color(45, 136, 255));
+            btn.setForeground(Color.WHITE);
+            btn.setFocusPainted(false);
+            btn.setBorder(BorderFactory.createEmptyBorder(3, 10, 3, 10));
+            btn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+            btn.addActionListener(e -> {
+                inputField.setText(topic);
+                inputField.setForeground(Color.WHITE);
+                processUserInput();
+            });
+            suggestionBar.add(btn);
+        }
+        suggestionBar.setVisible(!topics.isEmpty());
+        suggestionBar.revalidate();
+        suggestionBar.repaint();
+    }
+
+    /**
+     * Starts a background Wikipedia lookup and shows a placeholder that is
+     * replaced in place once the answer arrives. A newer question cancels
+     * any lookup still in flight.
+     */
+    private void askWikipedia(String userText) {
+        cancelPendingLookup();
+        ChatMessage placeholder = new ChatMessage("Avatar", "thinking…");
+        transcript.append(placeholder);
+        pendingPlaceholder = placeholder;
+        pendingLookup = lookups().submit(() -> {
+            WikiFetcher.Answer answer = WikiFetcher.fetchAnswer(userText);
+            if (Thread.currentThread().isInterrupted())
+                return;
+            SwingUtilities.invokeLater(() -> {
+                if (pendingPlaceholder != placeholder)
+                    return; // a newer question already took over
+                transcript.update(placeholder, answer.text());
+                history.append(placeholder);
+                pendingPlaceholder = null;
+                pendingLookup = null;
+                if (answer.thumbnailUrl() != null)
+                    showThumbnail(placeholder, answer.thumbnailUrl());
+            });
+        });
+    }
+
+    /**
+     * "/asked word" lists the questions asked in the last -Dchat.searchDays
+     * (default 30) days that contain the word, newest last, so a teacher can
+     * see what the class wanted to know. The search runs off the EDT.
+     */
+    private void showPastQuestions(String keyword) {
+        long days = Long.getLong("chat.searchDays", 30);
+        long from = System.currentTimeMillis() - days * 24 * 60 * 60 * 1000;
+        lookups().submit(() -> {
+            String reply;
+            try {
+                List<ChatMessage> found = history.searchQuestions(keyword, from, Long.MAX_VALUE);
+                String about = keyword.isEmpty() ? "" : " about \"" + keyword + "\"";
+                if (found.isEmpty()) {
+                    reply = "No questions" + about + " in the last " + days + " days.";
+                } else {
+                    StringBuilder sb = new StringBuilder(found.size() + (found.size() == 1 ? " question" : " questions")
+                            + about + " in the last " + days + " days:");
+                    if (found.size() > ASKED_SHOWN)
+                        sb.append(" (the last ").append(ASKED_SHOWN).append(")");
+                    for (ChatMessage m : found.subList(Math.max(0, found.size() - ASKED_SHOWN), found.size()))
+                        sb.append(String.format("%n%tF %<tR  %s", m.time, m.getText()));
+                    reply = sb.toString();
+                }
+            } catch (IOException | UncheckedIOException e) {
+                e.printStackTrace();
+                reply = "I couldn't read the chat history.";
+            }
+            String text = reply;
+            SwingUtilities.invokeLater(() -> transcript.append(new ChatMessage("Avatar", text)));
+        });
+    }
+
+    // The text is already showing; the picture pops in next to it when ready.
+    private void showThumbnail(ChatMessage message, String url) {
+        ThumbnailLoader.load(url, THUMBNAIL_SIZE, THUMBNAIL_SIZE).thenAccept(image -> {
+            if (image != null)
+                SwingUtilities.invokeLater(() -> {
+                    message.setImage(image);
+                    transcript.refresh(message);
+                });
+        });
+    }
+
+    // Dropped by the ScreenRegistry (or the window closed): stop the background work
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        suggestTimer.stop();
+        cancelPendingLookup();
+        if (lookupExecutor != null) {
+            lookupExecutor.shutdownNow();
+            lookupExecutor = null;
+        }
+        transcript.close();
+    }
+
+    // EDT only, like everything that submits to it
+    private ExecutorService lookups() {
+        if (lookupExecutor == null)
+            lookupExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        return lookupExecutor;
+    }
+
+    private void cancelPendingLookup() {
+        if (pendingLookup == null)
+            return;
+        pendingLookup.cancel(true);
+        transcript.update(pendingPlaceholder, "(skipped, you asked something new)");
+        pendingLookup = null;
+        pendingPlaceholder = null;
+    }
+
+    // Appends a user message to the transcript.
+    private void appendUserMessage(String msg) {
+        ChatMessage message = new ChatMessage("You", msg);
+        transcript.append(message);
+        history.append(message);
+    }
+
+    // Appends an avatar reply to the transcript.
+    private void appendAvatarMessage(String msg) {
+        ChatMessage message = new ChatMessage("Avatar", msg);
+        transcript.append(message);
+        history.append(message);
+    }
+}
+
+/** One line of the chat transcript. Text can change (e.g. "thinking…"). */
+class ChatMessage {
+    final String speaker;
+    final long time;
+    private volatile String text;
+    private volatile Image image; // article thumbnail, if any
+    private volatile ImageIcon icon; // made once for the renderer, which asks on every paint
+
+    public ChatMessage(String speaker, String text) {
+        this(speaker, text, System.currentTimeMillis());
+    }
+
+    public ChatMessage(String speaker, String text, long time) {
+        this.speaker = speaker;
+        this.text = text;
+        this.time = time;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    void setText(String text) {
+        this.text = text;
+    }
+
+    public Image getImage() {
+        return image;
+    }
+
+    /** @return The image as an icon, or null when there is no image. */
+    public ImageIcon getIcon() {
+        return icon;
+    }
+
+    void setImage(Image image) {
+        this.icon = image != null ? new ImageIcon(image) : null;
+        this.image = image;
+    }
+}
+
+/**
+ * List model for the chat transcript. Keeps the most recent messages in
+ * memory and spills older ones to a temp file (written off the EDT), so
+ * memory and layout cost stay flat however long the session runs. Appends
+ * may come from any thread; a burst is folded into one EDT update.
+ * {@link #loadOlder} pages spilled messages back in at the top (without
+ * their pictures) when the view is scrolled up to them; the next append
+ * trims the transcript back to capacity. {@link #close} deletes the spill
+ * file once the transcript is gone.
+ * 
+ * @param capacity Messages kept in memory.
+ */
+class TranscriptModel extends AbstractListModel<ChatMessage> {
+    private final int capacity;
+    private final ArrayList<ChatMessage> window = new ArrayList<>(); // EDT only
+    private final ConcurrentLinkedQueue<ChatMessage> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final ExecutorService spillWriter = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+    private File spillFile; // guarded by spillOffsets
+    private RandomAccessFile spill; // guarded by spillOffsets
+    private long[] spillOffsets = new long[64];
+    private int spilled = 0;
+    private boolean closed = false; // EDT only
+    private int offWindow = 0; // EDT only: messages older than the first in the window, all spilled
+    private int pagedIn = 0; // EDT only: messages at the front of the window read back from the spill
+    private boolean loadingOlder = false; // EDT only
+
+    public TranscriptModel(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /** Queues a message; it shows up with the next coalesced flush. */
+    public void append(ChatMessage message) {
+        pending.add(message);
+        if (flushScheduled.compareAndSet(false, true))
+            SwingUtilities.invokeLater(this::flush);
+    }
+
+    /** Changes a message's text and repaints its row if it is on screen. Call on the EDT. */
+    public void update(ChatMessage message, String text) {
+        message.setText(text);
+        refresh(message);
+    }
+
+    /** Repaints (and re-measures) a message's row if it is on screen. Call on the EDT. */
+    public void refresh(ChatMessage message) {
+        for (int i = window.size() - 1; i >= 0; i--) {
+            if (window.get(i) == message) {
+                fireContentsChanged(this, i, i);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return window.size();
+    }
+
+    @Override
+    public ChatMessage getElementAt(int index) {
+        return window.get(index);
+    }
+
+    /** @return Whether there are spilled messages older than the first row. Call on the EDT. */
+    public boolean hasOlder() {
+        return offWindow > 0 && !closed;
+    }
+
+    /**
+     * Reads up to n of the spilled messages just before the first row, off
+     * the EDT, and inserts them at the top. Does nothing while a page is
+     * still loading. Call on the EDT.
+     */
+    public void loadOlder(int n) {
+        if (!hasOlder() || loadingOlder || n <= 0)
+            return;
+        loadingOlder = true;
+        int to = offWindow, from = Math.max(0, to - n);
+        spillWriter.execute(() -> { // after any writes still queued, so all of from..to are on disk
+            List<ChatMessage> older = new ArrayList<>(to - from);
+            try {
+                for (int i = from; i < to; i++)
+                    older.add(getSpilled(i));
+            } catch (IOException | IndexOutOfBoundsException e) {
+                e.printStackTrace(); // deleted or unreadable: no scroll-back
+                older = null;
+            }
+            List<ChatMessage> page = older;
+            SwingUtilities.invokeLater(() -> {
+                if (page != null && !closed && offWindow == to) { // else the window moved meanwhile
+                    window.addAll(0, page);
+                    offWindow = from;
+                    pagedIn += page.size();
+                    // Still loading while listeners run: a view re-laid out at the top mustn't ask again
+                    fireIntervalAdded(this, 0, page.size() - 1);
+                }
+                loadingOlder = false;
+            });
+        });
+    }
+
+    /** @return How many older messages have been moved to disk. */
+    public int getSpilledCount() {
+        synchronized (spillOffsets) {
+            return spilled;
+        }
+    }
+
+    /**
+     * Stops spilling and deletes the spill file (after any writes still
+     * queued). Messages in memory stay; older ones are dropped from now on.
+     * Call on the EDT.
+     */
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        spillWriter.execute(this::deleteSpill);
+        spillWriter.shutdown();
+    }
+
+    /** @return The spill file, or null if nothing has spilled (or it was deleted). */
+    File getSpillFile() {
+        synchronized (spillOffsets) {
+            return spillFile;
+        }
+    }
+
+    /** @return A spilled message, oldest first (0 .. getSpilledCount() - 1). */
+    public ChatMessage getSpilled(int index) throws IOException {
+        synchronized (spillOffsets) {
+            if (index < 0 || index >= spilled)
+                throw new IndexOutOfBoundsException(index);
+            spill.seek(spillOffsets[index]);
+            long time = spill.readLong();
+            String speaker = spill.readUTF();
+            byte[] bytes = new byte[spill.readInt()];
+            spill.readFully(bytes);
+            return new ChatMessage(speaker, new String(bytes, StandardCharsets.UTF_8), time);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        int first = window.size();
+        ChatMessage m;
+        while ((m = pending.poll()) != null)
+            window.add(m);
+        if (window.size() == first)
+            return;
+        int overflow = window.size() - capacity;
+        if (overflow > 0) {
+            int onDisk = Math.min(overflow, pagedIn); // paged back in, so spilled already
+            if (!closed && overflow > onDisk) {
+                List<ChatMessage> old = new ArrayList<>(window.subList(onDisk, overflow));
+                spillWriter.execute(() -> writeSpill(old));
+            }
+            window.subList(0, overflow).clear();
+            pagedIn -= onDisk;
+            offWindow += overflow;
+            int shownBefore = Math.min(overflow, first); // rows listeners already knew about
+            if (shownBefore > 0)
+                fireIntervalRemoved(this, 0, shownBefore - 1);
+            first -= shownBefore;
+        }
+        fireIntervalAdded(this, first, window.size() - 1);
+    }
+
+    private void writeSpill(List<ChatMessage> messages) {
+        synchronized (spillOffsets) {
+            try {
+                if (spill == null) {
+                    spillFile = File.createTempFile("chat-transcript", ".spill");
+                    spillFile.deleteOnExit();
+                    spill = new RandomAccessFile(spillFile, "rw");
+                }
+                ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(buf);
+                long offset = spill.length();
+                for (ChatMessage m : messages) {
+                    if (spilled == spillOffsets.length)
+                        spillOffsets = Arrays.copyOf(spillOffsets, spilled * 2);
+                    spillOffsets[spilled++] = offset + out.size();
+                    byte[] bytes = m.getText().getBytes(StandardCharsets.UTF_8);
+                    out.writeLong(m.time);
+                    out.writeUTF(m.speaker);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                spill.seek(offset);
+                spill.write(buf.toByteArray());
+            } catch (IOException e) {
+                e.printStackTrace(); // only the scroll-back is lost
+            }
+        }
+    }
+
+    private void deleteSpill() {
+        synchronized (spillOffsets) {
+            spilled = 0;
+            if (spill == null)
+                return;
+            try {
+                spill.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            spillFile.delete(); // if that fails, deleteOnExit still gets it
+            spill = null;
+            spillFile = null;
+        }
+    }
+}
+
+/**
+ * Persistent chat history: an append-only log split into segment files,
+ * each with a sparse index (one entry every 64 records) of record number,
+ * file offset and time. All disk work runs on one background writer, never
+ * on the EDT. Reading the last N messages costs O(N) however long the history
+ * is, and a torn record at the end of the log (e.g. after a crash) is cut
+ * off when the log is reopened. The chat's "/asked" command searches it.
+ * 
+ * @param dir          Directory for the segment and index files.
+ * @param segmentBytes Size at which a new segment is started.
+ */
+class ChatHistoryLog {
+    private static final int INDEX_EVERY = 64;
+    private static final int INDEX_ENTRY_BYTES = 24; // record number, offset, time
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private static ChatHistoryLog shared;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+
+    // Writer-thread state
+    private boolean opened = false;
+    private final List<Long> segmentBases = new CopyOnWriteArrayList<>(); // first record number of each segment
+    private FileChannel segment, index;
+    private long nextRecord = 0;
+
+    /** A decoded record and where the next one starts. */
+    private record Record(long number, ChatMessage message, long next) {
+    }
+
+    public ChatHistoryLog(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /** @return The log under -Dchat.historyDir (default chat-history). */
+    public static synchronized ChatHistoryLog shared() {
+        if (shared == null)
+            shared = new ChatHistoryLog(Path.of(System.getProperty("chat.historyDir", "chat-history")), 4 << 20);
+        return shared;
+    }
+
+    /** Queues a message for writing; returns immediately. */
+    public void append(ChatMessage message) {
+        writer.execute(() -> {
+            try {
+                open();
+                write(message);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /** @return The newest n messages, oldest first, once earlier appends are on disk. */
+    public CompletableFuture<List<ChatMessage>> lastMessages(int n) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                open();
+                return readFrom(Math.max(0, nextRecord - n));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, writer);
+    }
+
+    /**
+     * Finds questions (the user's messages) containing a keyword within a
+     * time range. Segments outside the range are skipped by their index; the
+     * rest are scanned in parallel.
+     * 
+     * @param keyword Text to look for, any case; empty matches everything.
+     * @param from    Earliest time, epoch millis (inclusive).
+     * @param to      Latest time, epoch millis (exclusive).
+     * @return Matching questions, oldest first.
+     */
+    public List<ChatMessage> searchQuestions(String keyword, long from, long to) throws IOException {
+        lastMessages(0).join(); // make sure the log is open and recovered
+        String needle = keyword.toLowerCase(Locale.ROOT);
+        List<Long> bases = List.copyOf(segmentBases);
+        long[] firstTimes = new long[bases.size()];
+        for (int i = 0; i < bases.size(); i++)
+            firstTimes[i] = firstTime(bases.get(i));
+        return IntStream.range(0, bases.size()).parallel()
+                .filter(i -> firstTimes[i] < to && (i + 1 == bases.size() || firstTimes[i + 1] >= from))
+                .mapToObj(i -> {
+                    List<ChatMessage> found = new ArrayList<>();
+                    try (FileChannel ch = FileChannel.open(segmentFile(bases.get(i)), StandardOpenOption.READ)) {
+                        long number = bases.get(i);
+                        for (Record r = readRecord(ch, 0, number); r != null; r = readRecord(ch, r.next(), ++number)) {
+                            ChatMessage m = r.message();
+                            if (m.speaker.equals("You") && m.time >= from && m.time < to
+                                    && m.getText().toLowerCase(Locale.ROOT).contains(needle))
+                                found.add(m);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return found;
+                })
+                .flatMap(List::stream)
+                .sorted(Comparator.comparingLong(m -> m.time))
+                .toList();
+    }
+
+    /** Waits for queued writes and closes the files. */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+            if (segment != null) {
+                segment.close();
+                index.close();
+            }
+        } catch (InterruptedException | IOException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Opens the newest segment, cutting off any torn tail (writer thread)
+    private void open() throws IOException {
+        if (opened)
+            return;
+        opened = true;
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(f -> f.getFileName().toString())
+                    .filter(name -> name.endsWith(".log"))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - 4)))
+                    .sorted()
+                    .forEach(segmentBases::add);
+        }
+        if (segmentBases.isEmpty()) {
+            startSegment(0);
+            return;
+        }
+        long base = segmentBases.get(segmentBases.size() - 1);
+        segment = FileChannel.open(segmentFile(base), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(indexFile(base), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        // Resume from the last index entry that points at a valid record
+        long entries = index.size() / INDEX_ENTRY_BYTES;
+        long number = base, pos = 0;
+        while (entries > 0) {
+            long[] entry = readIndexEntry(index, entries - 1);
+            if (readRecord(segment, entry[1], entry[0]) != null) {
+                number = entry[0];
+                pos = entry[1];
+                break;
+            }
+            entries--;
+        }
+        index.truncate(entries * INDEX_ENTRY_BYTES);
+        for (Record r; (r = readRecord(segment, pos, number)) != null; number++) {
+            long j = number - base;
+            if (j % INDEX_EVERY == 0 && j / INDEX_EVERY >= entries)
+                writeIndexEntry(number, pos, r.message().time); // entry lost before the crash
+            pos = r.next();
+        }
+        segment.truncate(pos);
+        nextRecord = number;
+    }
+
+    private void write(ChatMessage m) throws IOException {
+        if (segment.size() >= segmentBytes)
+            startSegment(nextRecord);
+        byte[] text = m.getText().getBytes(StandardCharsets.UTF_8);
+        byte[] speaker = m.speaker.getBytes(StandardCharsets.UTF_8);
+        int payload = 8 + 2 + speaker.length + text.length;
+        ByteBuffer buf = ByteBuffer.allocate(8 + payload);
+        buf.putInt(payload).putInt(0).putLong(m.time).putShort((short) speaker.length).put(speaker).put(text);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 8, payload);
+        buf.putInt(4, (int) crc.getValue()).flip();
+
+        long pos = segment.size();
+        if ((nextRecord - segmentBases.get(segmentBases.size() - 1)) % INDEX_EVERY == 0)
+            writeIndexEntry(nextRecord, pos, m.time);
+        while (buf.hasRemaining())
+            segment.write(buf, pos + buf.position());
+        nextRecord++;
+    }
+
+    private void startSegment(long base) throws IOException {
+        if (segment != null) {
+            segment.close();
+            index.close();
+        }
+        segment = FileChannel.open(segmentFile(base), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        index = FileChannel.open(indexFile(base), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentBases.add(base);
+    }
+
+    // Reads records number first .. nextRecord-1 across segments (writer thread)
+    private List<ChatMessage> readFrom(long first) throws IOException {
+        List<ChatMessage> out = new ArrayList<>();
+        int seg = segmentBases.size() - 1;
+        while (seg > 0 && segmentBases.get(seg) > first)
+            seg--;
+        for (; seg < segmentBases.size(); seg++) {
+            long base = segmentBases.get(seg);
+            try (FileChannel ch = FileChannel.open(segmentFile(base), StandardOpenOption.READ);
+                    FileChannel idx = FileChannel.open(indexFile(base), StandardOpenOption.READ)) {
+                // Jump to the nearest indexed record at or before first
+                long entries = idx.size() / INDEX_ENTRY_BYTES;
+                long[] start = { base, 0 };
+                long lo = 0, hi = entries - 1;
+                while (lo <= hi) {
+                    long mid = (lo + hi) >>> 1;
+                    long[] e = readIndexEntry(idx, mid);
+                    if (e[0] <= first) {
+                        start = e;
+                        lo = mid + 1;
+                    } else {
+                        hi = mid - 1;
+                    }
+                }
+                long number = start[0], pos = start[1];
+                for (Record r; number < nextRecord && (r = readRecord(ch, pos, number)) != null; number++) {
+                    if (number >= first)
+                        out.add(r.message());
+                    pos = r.next();
+                }
+            }
+        }
+        return out;
+    }
+
+    /** @return The record at pos, or null if it is missing, short or corrupt. */
+    private static Record readRecord(FileChannel ch, long pos, long number) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(8);
+        if (ch.read(head, pos) < 8)
+            return null;
+        int payload = head.getInt(0), crc = head.getInt(4);
+        if (payload < 10 || payload > MAX_RECORD_BYTES)
+            return null;
+        ByteBuffer body = ByteBuffer.allocate(payload);
+        while (body.hasRemaining()) {
+            if (ch.read(body, pos + 8 + body.position()) <= 0)
+                return null;
+        }
+        CRC32 check = new CRC32();
+        check.update(body.array());
+        if ((int) check.getValue() != crc)
+            return null;
+        body.flip();
+        long time = body.getLong();
+        byte[] speaker = new byte[body.getShort()];
+        body.get(speaker);
+        byte[] text = new byte[body.remaining()];
+        body.get(text);
+        ChatMessage m = new ChatMessage(new String(speaker, StandardCharsets.UTF_8),
+                new String(text, StandardCharsets.UTF_8), time);
+        return new Record(number, m, pos + 8 + payload);
+    }
+
+    private void writeIndexEntry(long number, long offset, long time) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(INDEX_ENTRY_BYTES).putLong(number).putLong(offset).putLong(time).flip();
+        index.write(buf, index.size());
+    }
+
+    private static long[] readIndexEntry(FileChannel idx, long entry) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        idx.read(buf, entry * INDEX_ENTRY_BYTES);
+        return new long[] { buf.getLong(0), buf.getLong(8), buf.getLong(16) };
+    }
+
+    // Time of a segment's first record, from its index (Long.MAX_VALUE if empty)
+    private long firstTime(long base) {
+        try (FileChannel idx = FileChannel.open(indexFile(base), StandardOpenOption.READ)) {
+            return idx.size() >= INDEX_ENTRY_BYTES ? readIndexEntry(idx, 0)[2] : Long.MAX_VALUE;
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private Path segmentFile(long base) {
+        return dir.resolve(String.format("%016d.log", base));
+    }
+
+    private Path indexFile(long base) {
+        return dir.resolve(String.format("%016d.idx", base));
+    }
+}
+
+/**
+ * Downloads and decodes article thumbnails off the EDT. Images are decoded
+ * straight to roughly the size they are shown at (ImageIO source
+ * subsampling skips pixels while reading, so a large JPEG never exists at
+ * full resolution in memory), then scaled to fit. Decoded images are kept
+ * in an LRU cache bounded by their pixel bytes; concurrent requests for the
+ * same image share one download.
+ */
+class ThumbnailLoader {
+    private static final long budgetBytes = Long.getLong("chat.imageCacheBytes", 16L << 20);
+    private static final ExecutorService decoder = Executors.newVirtualThreadPerTaskExecutor();
+    private static final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> inFlight = new ConcurrentHashMap<>();
+
+    // Access-ordered, so the first entry is always the least recently used
+    private static final LinkedHashMap<String, BufferedImage> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes = 0; // guarded by cache
+    private static final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), evictions = new AtomicLong();
+
+    /**
+     * @return Completes with the image scaled to fit maxW x maxH, or null if
+     *         it could not be downloaded or decoded. Never completes
+     *         exceptionally.
+     */
+    public static CompletableFuture<BufferedImage> load(String url, int maxW, int maxH) {
+        String key = maxW + "x" + maxH + " " + url;
+        synchronized (cache) {
+            BufferedImage image = cache.get(key);
+            if (image != null) {
+                hits.incrementAndGet();
+                return CompletableFuture.completedFuture(image);
+            }
+        }
+        CompletableFuture<BufferedImage> mine = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> shared = inFlight.putIfAbsent(key, mine);
+        if (shared != null)
+            return shared;
+        misses.incrementAndGet();
+        decoder.execute(() -> {
+            BufferedImage image = null;
+            try {
+                image = download(url, maxW, maxH);
+                if (image != null)
+                    remember(key, image);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                inFlight.remove(key, mine);
+                mine.complete(image);
+            }
+        });
+        return mine;
+    }
+
+    private static BufferedImage download(String url, int maxW, int maxH) throws IOException, InterruptedException {
+        URI uri = URI.create(url.startsWith("//") ? "https:" + url : url);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("User-Agent", "ZeroGravityLessonApp/1.0")
+                .timeout(Duration.ofSeconds(10))
+                .build();
+        HttpResponse<InputStream> response = WikiFetcher.httpClient().send(request,
+                HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200)
+                return null;
+            return decode(new BufferedInputStream(body), maxW, maxH);
+        }
+    }
+
+    /** Decodes an image, reading only every n-th pixel when it is much larger than needed. */
+    static BufferedImage decode(InputStream in, int maxW, int maxH) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            if (stream == null)
+                return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext())
+                return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int w = reader.getWidth(0), h = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = Math.max(1, Math.min(w / maxW, h / maxH));
+                if (factor > 1)
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                return fit(reader.read(0, param), maxW, maxH);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Final smooth scale (aspect kept) to fit the box; subsampling only gets close
+    private static BufferedImage fit(BufferedImage src, int maxW, int maxH) {
+        double scale = Math.min(1.0, Math.min((double) maxW / src.getWidth(), (double) maxH / src.getHeight()));
+        int w = Math.max(1, (int) Math.round(src.getWidth() * scale));
+        int h = Math.max(1, (int) Math.round(src.getHeight() * scale));
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        return out;
+    }
+
+    private static void remember(String key, BufferedImage image) {
+        synchronized (cache) {
+            BufferedImage old = cache.put(key, image);
+            if (old != null)
+                cachedBytes -= footprint(old);
+            cachedBytes += footprint(image);
+            Iterator<BufferedImage> it = cache.values().iterator();
+            while (cachedBytes > budgetBytes && cache.size() > 1) {
+                cachedBytes -= footprint(it.next());
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static long footprint(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    /** @return {cache hits, downloads, evictions, bytes held}. */
+    public static long[] getCounts() {
+        synchronized (cache) {
+            return new long[] { hits.get(), misses.get(), evictions.get(), cachedBytes };
+        }
+    }
+}
+
+/**
+ * Draws one chat message as a wrapped text block sized to the list width,
+ * with the article thumbnail on the left when the message has one.
+ */
+class ChatMessageRenderer extends JPanel implements ListCellRenderer<ChatMessage> {
+    private final JLabel picture = new JLabel();
+    private final JTextArea text = new JTextArea();
+
+    public ChatMessageRenderer() {
+        super(new BorderLayout());
+        setOpaque(false);
+        picture.setVerticalAlignment(SwingConstants.TOP);
+        picture.setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 0));
+        text.setLineWrap(true);
+        text.setWrapStyleWord(true);
+        text.setOpaque(false);
+        text.setFont(new Font("Comic Sans MS", Font.PLAIN, 18));
+        text.setForeground(Color.WHITE);
+        text.setBorder(BorderFactory.createEmptyBorder(4, 6, 8, 6));
+        add(picture, BorderLayout.WEST);
+        add(text, BorderLayout.CENTER);
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends ChatMessage> list, ChatMessage msg, int index,
+            boolean isSelected, boolean cellHasFocus) {
+        ImageIcon icon = msg.getIcon();
+        picture.setIcon(icon);
+        picture.setVisible(icon != null);
+        text.setText(msg.speaker + ": " + msg.getText());
+        // Give the text area its share of the row width first so its preferred height wraps
+        int width = list.getWidth() > 0 ? list.getWidth() : 560;
+        int pictureWidth = icon != null ? picture.getPreferredSize().width : 0;
+        text.setSize(Math.max(1, width - pictureWidth), Short.MAX_VALUE);
+        return this;
+    }
+}
+
+/**
+ * Matches a chat message against every curated intent keyword in one pass
+ * using an Aho-Corasick automaton. Keywords only count on whole words.
+ * When several intents match, the highest priority wins, then the one with
+ * the longest matched keyword, then the one with the most matched keywords.
+ * Intents load from intents.txt (classpath first, then working directory).
+ * 
+ * @param lines Intent definitions: "priority | kw, kw, ... | answer".
+ */
+class IntentMatcher {
+    record Intent(int priority, String answer) {
+    }
+
+    private static IntentMatcher shared;
+
+    private final Intent[] intents;
+    private final String[] keywords;
+    private final int[] keywordIntent; // keyword id -> intent id
+    private final int[] keywordLength;
+    private final int[] sameText; // next keyword id with identical text, or -1
+
+    // Automaton: per state, sorted edge labels and their target states
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] fail;
+    private final int[] output; // first keyword id ending in this state, or -1
+    private final int[] outputLink; // nearest fail-chain state with an output, or -1
+
+    public IntentMatcher(List<String> lines) {
+        List<Intent> intentList = new ArrayList<>();
+        List<String> keywords = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (String line : lines) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] parts = line.split("\\|", 3);
+            if (parts.length < 3)
+                throw new IllegalArgumentException("Bad intent line: " + line);
+            intentList.add(new Intent(Integer.parseInt(parts[0].strip()), parts[2].strip()));
+            for (String kw : parts[1].split(",")) {
+                kw = kw.strip().toLowerCase(Locale.ROOT);
+                if (!kw.isEmpty()) {
+                    keywords.add(kw);
+                    owners.add(intentList.size() - 1);
+                }
+            }
+        }
+        intents = intentList.toArray(new Intent[0]);
+        this.keywords = keywords.toArray(new String[0]);
+        keywordIntent = new int[keywords.size()];
+        keywordLength = new int[keywords.size()];
+        sameText = new int[keywords.size()];
+
+        // Build the trie with hash maps, then flatten into sorted arrays
+        List<Map<Character, Integer>> edges = new ArrayList<>();
+        List<Integer> outs = new ArrayList<>();
+        edges.add(new HashMap<>());
+        outs.add(-1);
+        for (int k = 0; k < keywords.size(); k++) {
+            String kw = keywords.get(k);
+            keywordIntent[k] = owners.get(k);
+            keywordLength[k] = kw.length();
+            int state = 0;
+            for (int i = 0; i < kw.length(); i++) {
+                Integer next = edges.get(state).get(kw.charAt(i));
+                if (next == null) {
+                    next = edges.size();
+                    edges.get(state).put(kw.charAt(i), next);
+                    edges.add(new HashMap<>());
+                    outs.add(-1);
+                }
+                state = next;
+            }
+            sameText[k] = outs.get(state);
+            outs.set(state, k);
+        }
+
+        int n = edges.size();
+        labels = new char[n][];
+        targets = new int[n][];
+        output = new int[n];
+        for (int st = 0; st < n; st++) {
+            Map<Character, Integer> m = edges.get(st);
+            labels[st] = new char[m.size()];
+            targets[st] = new int[m.size()];
+            int i = 0;
+            for (char c : new TreeMap<>(m).keySet()) {
+                labels[st][i] = c;
+                targets[st][i++] = m.get(c);
+            }
+            output[st] = outs.get(st);
+        }
+
+        // Breadth-first failure links
+        fail = new int[n];
+        outputLink = new int[n];
+        Arrays.fill(outputLink, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0])
+            queue.add(child);
+        while (!queue.isEmpty()) {
+            int st = queue.poll();
+            for (int i = 0; i < labels[st].length; i++) {
+                int child = targets[st][i];
+                int f = fail[st];
+                int t;
+                while ((t = step(f, labels[st][i])) < 0 && f != 0)
+                    f = fail[f];
+                fail[child] = t >= 0 ? t : 0;
+                outputLink[child] = output[fail[child]] >= 0 ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /** @return The automaton built from intents.txt, loaded once and shared. */
+    public static synchronized IntentMatcher shared() {
+        if (shared == null) {
+            try {
+                shared = new IntentMatcher(readIntentFile("intents.txt"));
+            } catch (IOException e) {
+                e.printStackTrace();
+                shared = new IntentMatcher(List.of());
+            }
+        }
+        return shared;
+    }
+
+    private static List<String> readIntentFile(String name) throws IOException {
+        InputStream in = IntentMatcher.class.getResourceAsStream("/" + name);
+        if (in == null)
+            return Files.readAllLines(Path.of(name), StandardCharsets.UTF_8);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+
+    public int intentCount() {
+        return intents.length;
+    }
+
+    /** @return Every keyword, lower case, in file order. */
+    public List<String> keywords() {
+        return List.of(keywords);
+    }
+
+    /** @return The best matching intent for this text, or null if none. */
+    public Intent match(String text) {
+        int best = -1, bestLength = 0, bestHits = 0;
+        // Matched intents and their keyword counts; a message only hits a few
+        int[] seen = new int[8], seenHits = new int[8];
+        int seenCount = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int t;
+            while ((t = step(state, c)) < 0 && state != 0)
+                state = fail[state];
+            state = Math.max(t, 0);
+            for (int o = output[state] >= 0 ? state : outputLink[state]; o >= 0; o = outputLink[o]) {
+                for (int k = output[o]; k >= 0; k = sameText[k]) {
+                    int len = keywordLength[k];
+                    if (!isBoundary(text, i - len) || !isBoundary(text, i + 1))
+                        continue;
+                    int intent = keywordIntent[k];
+                    int slot = 0;
+                    while (slot < seenCount && seen[slot] != intent)
+                        slot++;
+                    if (slot == seenCount) {
+                        if (seenCount == seen.length) {
+                            seen = Arrays.copyOf(seen, seenCount * 2);
+                            seenHits = Arrays.copyOf(seenHits, seenCount * 2);
+                        }
+                        seen[seenCount++] = intent;
+                    }
+                    int h = ++seenHits[slot];
+                    if (best < 0 || better(intent, len, h, best, bestLength, bestHits)) {
+                        best = intent;
+                        bestLength = len;
+                        bestHits = h;
+                    } else if (intent == best) {
+                        bestHits = h;
+                    }
+                }
+            }
+        }
+        return best < 0 ? null : intents[best];
+    }
+
+    private boolean better(int intent, int len, int hits, int best, int bestLength, int bestHits) {
+        int a = intents[intent].priority(), b = intents[best].priority();
+        if (a != b)
+            return a > b;
+        if (len != bestLength)
+            return len > bestLength;
+        return hits > bestHits;
+    }
+
+    // True if position i is outside the text or not part of a word
+    private static boolean isBoundary(String text, int i) {
+        return i < 0 || i >= text.length() || !Character.isLetterOrDigit(text.charAt(i));
+    }
+
+    private int step(int state, char c) {
+        int i = Arrays.binarySearch(labels[state], c);
+        return i >= 0 ? targets[state][i] : -1;
+    }
+}
+
+/**
+ * Prefix trie of topic names for chat typeahead. Each topic has a weight
+ * (how often it was fetched); completions come back heaviest first.
+ * Seeded with the curated intent keywords; fetched article titles are added
+ * as they arrive.
+ */
+class TopicTrie {
+    private static final class Node {
+        final TreeMap<Character, Node> children = new TreeMap<>();
+        String topic;
+        int weight;
+    }
+
+    private static TopicTrie shared;
+
+    private final Node root = new Node();
+    private int size = 0;
+
+    /** @return The trie shared by every chat session. */
+    public static synchronized TopicTrie shared() {
+        if (shared == null) {
+            shared = new TopicTrie();
+            for (String keyword : IntentMatcher.shared().keywords())
+                shared.add(keyword, 1);
+        }
+        return shared;
+    }
+
+    /** Adds a topic, or adds weight to it if it is already known. */
+    public synchronized void add(String topic, int weight) {
+        String key = topic.strip().toLowerCase(Locale.ROOT);
+        if (key.isEmpty())
+            return;
+        Node node = root;
+        for (int i = 0; i < key.length(); i++)
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+        if (node.topic == null)
+            size++;
+        node.topic = topic.strip();
+        node.weight += weight;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /** @return Up to limit topics starting with prefix, heaviest first. */
+    public synchronized List<String> suggest(String prefix, int limit) {
+        String key = prefix.strip().toLowerCase(Locale.ROOT);
+        if (key.isEmpty())
+            return List.of();
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++)
+            node = node.children.get(key.charAt(i));
+        if (node == null)
+            return List.of();
+
+        // Walk the subtree (bounded, so a one-letter prefix stays cheap)
+        PriorityQueue<Node> best = new PriorityQueue<>(Comparator.comparingInt((Node n) -> n.weight));
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        int visited = 0;
+        while (!stack.isEmpty() && visited++ < 5000) {
+            Node n = stack.pop();
+            if (n.topic != null) {
+                best.add(n);
+                if (best.size() > limit)
+                    best.poll();
+            }
+            for (Node child : n.children.descendingMap().values())
+                stack.push(child);
+        }
+        List<String> result = new ArrayList<>();
+        while (!best.isEmpty())
+            result.add(best.poll().topic);
+        Collections.reverse(result);
+        return result;
+    }
+}
+
+/**
+ * One Swing timer that drives every animated panel. Panels subscribe while
+ * they are on screen and unsubscribe when hidden; the timer only runs while
+ * someone is subscribed, so hidden cards cost nothing. Ticks run on the EDT.
+ * 
+ * @param periodMs Time between ticks.
+ */
+class AnimationClock {
+    private static AnimationClock shared;
+
+    private final Timer timer;
+    private final ArrayList<Runnable> subscribers = new ArrayList<>(); // EDT only
+    private long ticks = 0;
+
+    public AnimationClock(int periodMs) {
+        timer = new Timer(periodMs, e -> tick());
+        timer.setCoalesce(true);
+    }
+
+    /** @return The clock shared by all background panels (-Dui.frameMs, default 40). */
+    public static synchronized AnimationClock shared() {
+        if (shared == null)
+            shared = new AnimationClock(Integer.getInteger("ui.frameMs", 40));
+        return shared;
+    }
+
+    /** Starts calling the task every tick. Call on the EDT. */
+    public void subscribe(Runnable task) {
+        if (subscribers.contains(task))
+            return;
+        subscribers.add(task);
+        if (!timer.isRunning())
+            timer.start();
+    }
+
+    /** Stops calling the task; the timer stops with the last subscriber. Call on the EDT. */
+    public void unsubscribe(Runnable task) {
+        subscribers.remove(task);
+        if (subscribers.isEmpty())
+            timer.stop();
+    }
+
+    private void tick() {
+        ticks++;
+        // Copy so a task may unsubscribe itself mid-tick
+        for (Runnable task : subscribers.toArray(new Runnable[0]))
+            task.run();
+    }
+
+    /** Changes the time between ticks, from the next tick on. Call on the EDT. */
+    public void setPeriod(int periodMs) {
+        timer.setDelay(periodMs);
+    }
+
+    public int getPeriod() {
+        return timer.getDelay();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public boolean isRunning() {
+        return timer.isRunning();
+    }
+
+    /** @return Ticks delivered since startup (counted once, however many subscribers). */
+    public long getTickCount() {
+        return ticks;
+    }
+}
+
+/**
+ * Keeps the background animation within a CPU budget. Panels report how
+ * long each frame took (simulation plus painting); when the average over a
+ * window of frames goes over budget the governor drops one quality level
+ * (fewer stars, shorter comet tails, then a lower frame rate), and after
+ * several windows well under budget it climbs back one level.
+ * 
+ * Configuration: -Dui.frameBudgetMs (default 8), -Dui.qualityMin and
+ * -Dui.qualityMax (default 0 and 4), -Dui.quality (starting level,
+ * default the maximum).
+ */
+class QualityGovernor {
+    /** What one quality level draws; level 0 is the cheapest. */
+    record Level(double starDensity, double tailLength, int frameMs) {
+    }
+
+    static final Level[] LEVELS = {
+            new Level(0.25, 0.35, 100),
+            new Level(0.35, 0.5, 66),
+            new Level(0.5, 0.75, 50),
+            new Level(0.75, 1.0, 40),
+            new Level(1.0, 1.0, 40),
+    };
+    private static final int WINDOW = 25; // frames per decision
+    private static final int CALM_WINDOWS = 4; // windows under budget before raising
+    private static final double HEADROOM = 0.5; // "well under" = this share of the budget
+
+    private static QualityGovernor shared;
+
+    private final long budgetNanos;
+    private final int minLevel, maxLevel;
+    private int level; // EDT only
+    private long windowNanos = 0;
+    private int windowFrames = 0, calmWindows = 0;
+    private long lowered = 0, raised = 0;
+    private double lastAverageMs = 0;
+
+    public QualityGovernor(double budgetMs, int minLevel, int maxLevel, int startLevel) {
+        this.budgetNanos = (long) (budgetMs * 1_000_000);
+        this.minLevel = Math.max(0, Math.min(minLevel, LEVELS.length - 1));
+        this.maxLevel = Math.max(this.minLevel, Math.min(maxLevel, LEVELS.length - 1));
+        this.level = Math.max(this.minLevel, Math.min(startLevel, this.maxLevel));
+    }
+
+    public static synchronized QualityGovernor shared() {
+        if (shared == null) {
+            int max = Integer.getInteger("ui.qualityMax", LEVELS.length - 1);
+            shared = new QualityGovernor(Double.parseDouble(System.getProperty("ui.frameBudgetMs", "8")),
+                    Integer.getInteger("ui.qualityMin", 0), max, Integer.getInteger("ui.quality", max));
+            AnimationClock.shared().setPeriod(shared.getLevel().frameMs());
+        }
+        return shared;
+    }
+
+    /** Reports the work one frame took. Call on the EDT. */
+    public void recordFrame(long nanos) {
+        windowNanos += nanos;
+        if (++windowFrames < WINDOW)
+            return;
+        long average = windowNanos / windowFrames;
+        lastAverageMs = average / 1e6;
+        windowNanos = 0;
+        windowFrames = 0;
+        if (average > budgetNanos) {
+            calmWindows = 0;
+            if (level > minLevel) {
+                level--;
+                lowered++;
+                applyFrameRate();
+            }
+        } else if (average < budgetNanos * HEADROOM && level < maxLevel) {
+            if (++calmWindows >= CALM_WINDOWS) {
+                calmWindows = 0;
+                level++;
+                raised++;
+                applyFrameRate();
+            }
+        } else {
+            calmWindows = 0;
+        }
+    }
+
+    private void applyFrameRate() {
+        AnimationClock.shared().setPeriod(LEVELS[level].frameMs());
+    }
+
+    /** @return The current level number (0 = cheapest). */
+    public int getLevelIndex() {
+        return level;
+    }
+
+    public Level getLevel() {
+        return LEVELS[level];
+    }
+
+    /** @return Average frame work over the last full window, in ms. */
+    public double getAverageFrameMillis() {
+        return lastAverageMs;
+    }
+
+    /** @return {times lowered, times raised}. */
+    public long[] getChangeCounts() {
+        return new long[] { lowered, raised };
+    }
+}
+
+/**
+ * Particles (stars, dust) kept as parallel primitive arrays rather than one
+ * object each, so an update is a tight loop over contiguous memory. Above
+ * a threshold (-Dui.particleThreshold, default 16384) the update is split
+ * into chunks across a fork-join pool. Particles may drift and have a
+ * lifetime in ticks; when it runs out they respawn somewhere random.
+ * Only the first {@code active} particles are updated and drawn, so the
+ * density can be turned down without reallocating.
+ * 
+ * @param count   Number of particles.
+ * @param width   Area they are spread over.
+ * @param height  Area they are spread over.
+ * @param drift   Largest speed in pixels per tick (0 for fixed stars).
+ * @param maxLife Longest lifetime in ticks (0 to live forever).
+ */
+class ParticleField {
+    static final int PARALLEL_THRESHOLD = Integer.getInteger("ui.particleThreshold", 16384);
+    private static final int CHUNK = 4096;
+
+    final int count;
+    int active;
+    final float[] x, y, vx, vy, brightness, dBrightness, life;
+    final byte[] size;
+    private final float drift, maxLife;
+    private final ForkJoinPool pool;
+
+    // Per-update bounds, read by the chunks
+    private float width, height;
+
+    public ParticleField(int count, int width, int height, float drift, int maxLife) {
+        this(count, width, height, drift, maxLife, ForkJoinPool.commonPool());
+    }
+
+    public ParticleField(int count, int width, int height, float drift, int maxLife, ForkJoinPool pool) {
+        this.count = count;
+        this.active = count;
+        this.drift = drift;
+        this.maxLife = maxLife;
+        this.pool = pool;
+        x = new float[count];
+        y = new float[count];
+        vx = new float[count];
+        vy = new float[count];
+        brightness = new float[count];
+        dBrightness = new float[count];
+        life = new float[count];
+        size = new byte[count];
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        Random rand = new Random();
+        for (int i = 0; i < count; i++) {
+            spawn(i, rand.nextFloat(), rand.nextFloat(), rand.nextFloat(), rand.nextFloat());
+            size[i] = (byte) (1 + rand.nextInt(3));
+            brightness[i] = 0.6f + 0.4f * rand.nextFloat();
+            dBrightness[i] = 0.008f * (rand.nextFloat() - 0.5f);
+        }
+    }
+
+    /** Advances every particle one tick within a width x height area. */
+    public void update(int width, int height) {
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        if (active < PARALLEL_THRESHOLD)
+            step(0, active);
+        else
+            pool.invoke(new Chunk(0, active, false));
+    }
+
+    /** Sets how many particles (from the start) are live; the rest stay as they are. */
+    public void setActive(int active) {
+        this.active = Math.max(0, Math.min(active, count));
+    }
+
+    /** Moves every particle to the same relative spot in a resized area. */
+    public void rescale(int oldWidth, int oldHeight, int newWidth, int newHeight) {
+        float sx = (float) Math.max(1, newWidth) / Math.max(1, oldWidth);
+        float sy = (float) Math.max(1, newHeight) / Math.max(1, oldHeight);
+        width = Math.max(1, newWidth);
+        height = Math.max(1, newHeight);
+        if (count < PARALLEL_THRESHOLD)
+            scale(0, count, sx, sy);
+        else
+            pool.invoke(new Chunk(0, count, true, sx, sy));
+    }
+
+    private void step(int from, int to) {
+        float w = width, h = height;
+        for (int i = from; i < to; i++) {
+            float b = brightness[i] + dBrightness[i];
+            if (b > 1f) {
+                b = 1f;
+                dBrightness[i] = -dBrightness[i];
+            } else if (b < 0.55f) {
+                b = 0.55f;
+                dBrightness[i] = -dBrightness[i];
+            }
+            brightness[i] = b;
+            if (drift == 0)
+                continue;
+            float px = x[i] + vx[i], py = y[i] + vy[i];
+            // wrap around the edges
+            if (px < 0)
+                px += w;
+            else if (px >= w)
+                px -= w;
+            if (py < 0)
+                py += h;
+            else if (py >= h)
+                py -= h;
+            x[i] = px;
+            y[i] = py;
+            if (maxLife > 0 && --life[i] <= 0) {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                spawn(i, r.nextFloat(), r.nextFloat(), r.nextFloat(), r.nextFloat());
+            }
+        }
+    }
+
+    private void scale(int from, int to, float sx, float sy) {
+        for (int i = from; i < to; i++) {
+            x[i] *= sx;
+            y[i] *= sy;
+        }
+    }
+
+    // Uniform random inputs in [0, 1) -> position, velocity and lifetime
+    private void spawn(int i, float u1, float u2, float u3, float u4) {
+        x[i] = u1 * width;
+        y[i] = u2 * height;
+        double angle = u3 * 2 * Math.PI;
+        vx[i] = (float) (drift * u4 * Math.cos(angle));
+        vy[i] = (float) (drift * u4 * Math.sin(angle));
+        life[i] = maxLife > 0 ? 1 + u4 * maxLife : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Plots every particle straight into an opaque RGB raster, for counts
+     * where one drawImage per particle would be far too slow.
+     */
+    public void rasterize(int[] pixels, int width, int height, int rgb) {
+        int r = (rgb >> 16) & 0xff, g = (rgb >> 8) & 0xff, bl = rgb & 0xff;
+        for (int i = 0; i < active; i++) {
+            int alpha = (int) (110 + 120 * brightness[i]);
+            int px = (int) x[i], py = (int) y[i], s = size[i];
+            int color = (r * alpha / 255) << 16 | (g * alpha / 255) << 8 | bl * alpha / 255;
+            for (int yy = py; yy < py + s && yy < height; yy++) {
+                if (yy < 0)
+                    continue;
+                for (int xx = px; xx < px + s && xx < width; xx++) {
+                    if (xx >= 0)
+                        pixels[yy * width + xx] = color;
+                }
+            }
+        }
+    }
+
+    /** Splits an update (or rescale) in halves until a chunk is small enough. */
+    private class Chunk extends RecursiveAction {
+        private final int from, to;
+        private final boolean rescale;
+        private final float sx, sy;
+
+        Chunk(int from, int to, boolean rescale) {
+            this(from, to, rescale, 1, 1);
+        }
+
+        Chunk(int from, int to, boolean rescale, float sx, float sy) {
+            this.from = from;
+            this.to = to;
+            this.rescale = rescale;
+            this.sx = sx;
+            this.sy = sy;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                if (rescale)
+                    scale(from, to, sx, sy);
+                else
+                    step(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Chunk(from, mid, rescale, sx, sy), new Chunk(mid, to, rescale, sx, sy));
+        }
+    }
+}
+
+/**
+ * StarCometBackgroundPanel animates a black space background with twinkling
+ * stars and moving comets.
+ * For use as a pretty background in main screens. Animation runs off the
+ * shared AnimationClock and only while the panel is showing; a hidden panel
+ * keeps its stars and comets where they were and carries on from there.
+ * Stars and comets are blitted from pre-rendered sprites, with star
+ * twinkle applied as a shared AlphaComposite, so a frame allocates nothing.
+ * Stars live in a ParticleField; -Dui.starCount overrides the star count
+ * for dense "deep space" scenes, which are plotted into a frame buffer
+ * instead of blitted one by one. Each tick repaints only what changed (the
+ * comets' old and new spots and stars that visibly changed brightness),
+ * falling back to a full repaint once that passes -Dui.dirtyThreshold
+ * (default 0.35) of the panel.
+ * Motion is simulated in fixed 40 ms steps however often frames come, and
+ * comets are drawn interpolated between the last two steps, so a busy EDT
+ * or a lower frame rate doesn't slow them down. How much is drawn follows
+ * the shared QualityGovernor.
+ * 
+ * @param starCount  Number of stars
+ * @param cometCount Number of comets
+ * @param width      Preferred width of panel
+ * @param height     Preferred height of panel
+ */
+class StarCometBackgroundPanel extends JPanel {
+    private static final int SPRITE_LIMIT = 4096; // above this, plot stars into a frame buffer
+    private final ParticleField stars;
+
+    private static class Comet {
+        float x, y, dx, dy;
+        int length, tailAlpha;
+        int color; // index into COMET_COLORS
+        float prevX, prevY; // position one step back, for interpolation
+        BufferedImage sprite; // tail and head; null until (re)drawn
+        int spriteX, spriteY, spriteW, spriteH; // sprite bounds relative to the head
+        int drawX, drawY; // where the sprite is on screen now
+    }
+
+    // One composite per alpha value, shared by every panel
+    private static final AlphaComposite[] ALPHA = new AlphaComposite[256];
+    static {
+        for (int a = 0; a < ALPHA.length; a++)
+            ALPHA[a] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, a / 255f);
+    }
+    private static final Color STAR_COLOR = new Color(255, 255, 60);
+    private static final Color[] COMET_COLORS = new Color[90];
+    static {
+        for (int i = 0; i < COMET_COLORS.length; i++)
+            COMET_COLORS[i] = new Color(255, 255, 80 + i);
+    }
+    private static final LatencyHistogram frameTimes = new LatencyHistogram();
+
+    private BufferedImage[] starSprites; // by star size; null until drawn
+    private final BufferedImage[] tailDots = new BufferedImage[COMET_COLORS.length]; // by comet color, as needed
+    private GraphicsConfiguration spriteConfig; // the screen the sprites were made for
+    private BufferedImage starBuffer; // dense scenes only
+    private int fieldWidth, fieldHeight; // the area stars are currently spread over
+
+    private final Comet[] comets;
+    private final Random rand = new Random();
+
+    private final Runnable tick = this::animate;
+    private long ticks = 0, paints = 0; // EDT only
+
+    // Dirty tracking: twinkle is shown in steps of ALPHA_STEP, so a star only
+    // needs repainting when it crosses a step. Dirty areas are marked on a
+    // grid of TILE-sized cells and painted as row runs of cells, since
+    // RepaintManager would union separate repaint(Rectangle) calls into one
+    // bounding box covering most of the panel.
+    private static final int ALPHA_STEP = 8, TILE = 32;
+    private static final double DIRTY_THRESHOLD = Double.parseDouble(System.getProperty("ui.dirtyThreshold", "0.35"));
+    private int[] shownAlpha; // per star, as last painted
+    private boolean[] dirtyTiles = new boolean[0];
+    private int tileCols, tileRows;
+    private final ArrayList<Rectangle> dirtyRegions = new ArrayList<>();
+    private final Rectangle clip = new Rectangle();
+    private long paintedPixels = 0, childPaintNanos = 0, fullRepaints = 0, partialRepaints = 0;
+
+    // Fixed-timestep simulation
+    private static final long STEP_NANOS = 40_000_000L;
+    private static final long MAX_CATCH_UP_NANOS = 250_000_000L; // drop time beyond this (e.g. a long GC)
+    private long lastTickNanos = 0, accumulatedNanos = 0, simSteps = 0;
+    private final QualityGovernor governor = QualityGovernor.shared();
+    private QualityGovernor.Level quality;
+    private boolean inTick = false;
+    private long paintNanosSinceTick = 0; // repaints done outside the tick belong to the next frame
+
+    public StarCometBackgroundPanel(int starCount, int cometCount, int width, int height) {
+        setPreferredSize(new Dimension(width, height));
+        setOpaque(true);
+        setBackground(Color.BLACK);
+        stars = new ParticleField(Integer.getInteger("ui.starCount", starCount), width, height, 0, 0);
+        shownAlpha = new int[stars.count];
+        fieldWidth = width;
+        fieldHeight = height;
+        comets = new Comet[cometCount];
+        for (int i = 0; i < cometCount; i++) {
+            comets[i] = new Comet();
+            resetComet(comets[i], width, height);
+            comets[i].x = comets[i].prevX = rand.nextInt(Math.max(1, width));
+        }
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                if (isShowing()) {
+                    lastTickNanos = 0; // resume where we stopped, without catching up
+                    AnimationClock.shared().subscribe(tick);
+                } else {
+                    AnimationClock.shared().unsubscribe(tick);
+                }
+            }
+        });
+        addComponentListener(new ComponentAdapter() {
             public void componentResized(ComponentEvent evt) {
                 int w = Math.max(1, getWidth()), h = Math.max(2, getHeight());
-                for (Star s : stars) {
-                    s.x = rand.nextFloat() * w;
-                    s.y = rand.nextFloat() * h;
-                }
+                // Keep everything where it was, relative to the new size
+                float sx = (float) w / fieldWidth, sy = (float) h / fieldHeight;
+                stars.rescale(fieldWidth, fieldHeight, w, h);
                 for (Comet c : comets) {
-                    Comet reset = makeComet(w, h);
-                    c.x = reset.x;
-                    c.y = reset.y;
-                    c.dx = reset.dx;
-                    c.dy = reset.dy;
-                    c.length = reset.length;
-                    c.tailAlpha = reset.tailAlpha;
-                    c.color = reset.color;
+                    c.x *= sx;
+                    c.y *= sy;
+                    c.prevX *= sx;
+                    c.prevY *= sy;
                 }
+                fieldWidth = w;
+                fieldHeight = h;
+                starBuffer = null;
+                invalidateSprites();
             }
         });
     }
 
-    private Comet makeComet(int w, int h) {
-        w = Math.max(1, w);
+    // Starts a comet over from the left edge with a new direction, speed and look
+    private void resetComet(Comet c, int w, int h) {
         h = Math.max(2, h);
-        Comet c = new Comet();
-        c.x = rand.nextInt(w);
+        c.x = -40;
         c.y = rand.nextInt(h / 2);
         double angle = Math.PI / 4 + rand.nextDouble() * Math.PI / 3;
         float speed = 5f + rand.nextFloat() * 4f;
@@ -418,97 +4115,919 @@ class StarCometBackgroundPanel extends JPanel {
         c.dy = (float) (speed * Math.sin(angle));
         c.length = 60 + rand.nextInt(50);
         c.tailAlpha = 60 + rand.nextInt(80);
-        c.color = new Color(255, 255, 80 + rand.nextInt(90));
-        return c;
+        c.color = rand.nextInt(COMET_COLORS.length);
+        c.prevX = c.x;
+        c.prevY = c.y;
+        fitCometSprite(c);
+    }
+
+    // The tail dots and head as they sit around the head at (0, 0), at the current tail length
+    private void fitCometSprite(Comet c) {
+        c.sprite = null;
+        int length = tailLength(c);
+        int tailX = (int) (-c.dx * (length - 1) / 10.0), tailY = (int) (-c.dy * (length - 1) / 10.0);
+        c.spriteX = Math.min(-2, tailX) - 1;
+        c.spriteY = Math.min(-2, tailY) - 1;
+        c.spriteW = Math.max(7, tailX + 6) + 1 - c.spriteX;
+        c.spriteH = Math.max(7, tailY + 6) + 1 - c.spriteY;
+    }
+
+    private int tailLength(Comet c) {
+        double share = quality != null ? quality.tailLength() : 1.0;
+        return Math.max(2, (int) (c.length * share));
+    }
+
+    private void animate() {
+        long start = System.nanoTime();
+        inTick = true;
+        try {
+            advance(start);
+        } finally {
+            inTick = false;
+        }
+        governor.recordFrame(System.nanoTime() - start + paintNanosSinceTick);
+        paintNanosSinceTick = 0;
+    }
+
+    // One animation tick at time now; package-private so tests can drive it with their own clock
+    void advance(long now) {
+        ticks++;
+        int w = Math.max(1, getWidth()), h = Math.max(2, getHeight());
+        boolean full = stars.count > SPRITE_LIMIT || !startDirtyGrid(w, h);
+        if (quality != governor.getLevel()) {
+            quality = governor.getLevel();
+            stars.setActive((int) Math.round(stars.count * quality.starDensity()));
+            for (Comet c : comets)
+                fitCometSprite(c);
+            full = true;
+        }
+
+        // Where the comets are now has to be cleared; mark it before a step
+        // can restart a comet with a different sprite size
+        if (!full) {
+            for (Comet c : comets)
+                markDirty(c.drawX, c.drawY, c.spriteW, c.spriteH);
+        }
+
+        // Run as many fixed steps as real time calls for
+        accumulatedNanos += lastTickNanos == 0 ? STEP_NANOS : Math.min(now - lastTickNanos, MAX_CATCH_UP_NANOS);
+        lastTickNanos = now;
+        for (; accumulatedNanos >= STEP_NANOS; accumulatedNanos -= STEP_NANOS) {
+            simSteps++;
+            stars.update(w, h);
+            for (Comet c : comets) {
+                c.prevX = c.x;
+                c.prevY = c.y;
+                c.x += c.dx;
+                c.y += c.dy;
+                if (c.x > w + 40 || c.y > h + 40)
+                    resetComet(c, w, h);
+            }
+        }
+        float t = (float) accumulatedNanos / STEP_NANOS;
+
+        if (!full) {
+            for (int i = 0; i < stars.active; i++) {
+                if (starAlpha(i) != shownAlpha[i])
+                    markDirty(Math.round(stars.x[i]), Math.round(stars.y[i]), stars.size[i], stars.size[i]);
+            }
+        }
+        for (Comet c : comets) {
+            c.drawX = (int) (c.prevX + (c.x - c.prevX) * t) + c.spriteX;
+            c.drawY = (int) (c.prevY + (c.y - c.prevY) * t) + c.spriteY;
+            if (!full)
+                markDirty(c.drawX, c.drawY, c.spriteW, c.spriteH);
+        }
+        if (full || !collectDirtyRegions()) {
+            fullRepaints++;
+            repaint();
+            return;
+        }
+        partialRepaints++;
+        for (Rectangle r : dirtyRegions)
+            paintImmediately(r);
+    }
+
+    /** @return Fixed simulation steps run so far (one per 40 ms of showing time). */
+    public long getSimulationSteps() {
+        return simSteps;
+    }
+
+    private int starAlpha(int i) {
+        return (int) (110 + 120 * stars.brightness[i]) / ALPHA_STEP * ALPHA_STEP;
+    }
+
+    // Clears the tile grid for a w x h panel; false if the panel isn't paintable yet
+    private boolean startDirtyGrid(int w, int h) {
+        if (getWidth() <= 0)
+            return false;
+        tileCols = (w + TILE - 1) / TILE;
+        tileRows = (h + TILE - 1) / TILE;
+        if (dirtyTiles.length < tileCols * tileRows)
+            dirtyTiles = new boolean[tileCols * tileRows];
+        else
+            Arrays.fill(dirtyTiles, false);
+        return true;
+    }
+
+    private void markDirty(int x, int y, int w, int h) {
+        int c0 = Math.max(0, x / TILE), c1 = Math.min(tileCols - 1, (x + w) / TILE);
+        int r0 = Math.max(0, y / TILE), r1 = Math.min(tileRows - 1, (y + h) / TILE);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++)
+                dirtyTiles[r * tileCols + c] = true;
+        }
+    }
+
+    // Turns dirty tiles into row runs; false if so much is dirty that a full repaint is cheaper
+    private boolean collectDirtyRegions() {
+        int dirty = 0;
+        for (int i = 0; i < tileCols * tileRows; i++) {
+            if (dirtyTiles[i])
+                dirty++;
+        }
+        if (dirty > DIRTY_THRESHOLD * tileCols * tileRows)
+            return false;
+        int used = 0;
+        for (int r = 0; r < tileRows; r++) {
+            for (int c = 0; c < tileCols; c++) {
+                if (!dirtyTiles[r * tileCols + c])
+                    continue;
+                int start = c;
+                while (c + 1 < tileCols && dirtyTiles[r * tileCols + c + 1])
+                    c++;
+                if (used == dirtyRegions.size())
+                    dirtyRegions.add(new Rectangle());
+                dirtyRegions.get(used++).setBounds(start * TILE, r * TILE, (c - start + 1) * TILE, TILE);
+            }
+        }
+        dirtyRegions.subList(used, dirtyRegions.size()).clear();
+        return true;
+    }
+
+    /** @return Animation steps this panel has run. */
+    public long getTickCount() {
+        return ticks;
+    }
+
+    /** @return Times this panel has painted. */
+    public long getPaintCount() {
+        return paints;
+    }
+
+    /** @return Paint times of all background panels so far. */
+    public static LatencyHistogram getFrameTimes() {
+        return frameTimes;
+    }
+
+    /** @return Background pixels painted so far (the sum of paint clip areas). */
+    public long getPaintedPixels() {
+        return paintedPixels;
+    }
+
+    /** @return Time spent painting the Swing components on top of this panel. */
+    public long getChildPaintNanos() {
+        return childPaintNanos;
+    }
+
+    /** @return {full repaints, region repaints} issued by the animation. */
+    public long[] getRepaintCounts() {
+        return new long[] { fullRepaints, partialRepaints };
+    }
+
+    @Override
+    protected void paintChildren(Graphics g) {
+        long start = System.nanoTime();
+        super.paintChildren(g);
+        childPaintNanos += System.nanoTime() - start;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g0) {
+        long start = System.nanoTime();
+        super.paintComponent(g0);
+        paints++;
+        Graphics2D g = (Graphics2D) g0;
+        if (g.getClipBounds(clip) == null)
+            clip.setBounds(0, 0, getWidth(), getHeight());
+        paintedPixels += (long) clip.width * clip.height;
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if (config != spriteConfig)
+            invalidateSprites(); // moved to another screen (or first paint)
+        spriteConfig = config;
+        if (starSprites == null)
+            starSprites = makeStarSprites();
+
+        if (stars.count > SPRITE_LIMIT) {
+            paintDenseStars(g);
+        } else {
+            Composite saved = g.getComposite();
+            for (int i = 0; i < stars.active; i++) {
+                int x = Math.round(stars.x[i]), y = Math.round(stars.y[i]), size = stars.size[i];
+                if (x + size < clip.x || y + size < clip.y || x > clip.x + clip.width || y > clip.y + clip.height)
+                    continue;
+                int alpha = shownAlpha[i] = starAlpha(i);
+                g.setComposite(ALPHA[alpha]);
+                g.drawImage(starSprites[size], x, y, null);
+            }
+            g.setComposite(saved);
+        }
+        for (Comet c : comets) {
+            if (c.sprite == null)
+                drawCometSprite(c);
+            g.drawImage(c.sprite, c.drawX, c.drawY, null);
+        }
+        long took = System.nanoTime() - start;
+        frameTimes.recordNanos(took);
+        if (!inTick)
+            paintNanosSinceTick += took;
+
+    }
+
+    private void paintDenseStars(Graphics2D g) {
+        int w = Math.max(1, getWidth()), h = Math.max(1, getHeight());
+        if (starBuffer == null || starBuffer.getWidth() != w || starBuffer.getHeight() != h)
+            starBuffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) starBuffer.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, 0);
+        stars.rasterize(pixels, w, h, STAR_COLOR.getRGB());
+        g.drawImage(starBuffer, 0, 0, null);
+    }
+
+    private void invalidateSprites() {
+        starSprites = null;
+        Arrays.fill(tailDots, null);
+        for (Comet c : comets)
+            c.sprite = null;
+    }
+
+    private BufferedImage[] makeStarSprites() {
+        BufferedImage[] sprites = new BufferedImage[4];
+        for (int size = 1; size < sprites.length; size++) {
+            sprites[size] = newSprite(size, size);
+            Graphics2D g = sprites[size].createGraphics();
+            g.setColor(STAR_COLOR);
+            g.fillOval(0, 0, size, size);
+            g.dispose();
+        }
+        return sprites;
+    }
+
+    // Draws the tail dots and the head once, exactly as they sit around the head at (0, 0).
+    // The dots are blits of one cached dot through the shared composites; a translucent
+    // fillOval costs a few KB of garbage each, and a tail has up to 55 of them.
+    private void drawCometSprite(Comet c) {
+        if (tailDots[c.color] == null) {
+            tailDots[c.color] = newSprite(6, 6);
+            Graphics2D g = tailDots[c.color].createGraphics();
+            g.setColor(COMET_COLORS[c.color]);
+            g.fillOval(0, 0, 6, 6);
+            g.dispose();
+        }
+        c.sprite = newSprite(c.spriteW, c.spriteH);
+        Graphics2D g = c.sprite.createGraphics();
+        g.translate(-c.spriteX, -c.spriteY);
+        for (int i = 0, length = tailLength(c); i < length; i += 2) {
+            g.setComposite(ALPHA[Math.max(0, c.tailAlpha - i * 2)]);
+            g.drawImage(tailDots[c.color], (int) (-c.dx * i / 10.0), (int) (-c.dy * i / 10.0), null);
+        }
+        g.setComposite(ALPHA[255]);
+        g.setColor(Color.WHITE);
+        g.fillOval(-2, -2, 9, 9);
+        g.dispose();
+    }
+
+    // Compatible images are kept in video memory by Java2D when it can
+    private BufferedImage newSprite(int w, int h) {
+        if (spriteConfig != null)
+            return spriteConfig.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+        return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+}
+
+/**
+ * SplashPanel is the first thing on screen at startup: a title and a
+ * progress bar while images decode and screens are built behind it.
+ * 
+ * @param onFirstPaint Called once, the first time the splash is painted.
+ */
+class SplashPanel extends JPanel {
+    private final JProgressBar progress = new JProgressBar();
+    private Runnable onFirstPaint;
+
+    public SplashPanel(Runnable onFirstPaint) {
+        this.onFirstPaint = onFirstPaint;
+        setLayout(new GridBagLayout());
+        setBackground(Color.BLACK);
+        JPanel box = new JPanel();
+        box.setOpaque(false);
+        box.setLayout(new BoxLayout(box, BoxLayout.Y_AXIS));
+        JLabel title = new JLabel("🚀 Zero Gravity Lesson");
+        title.setFont(new Font("Comic Sans MS", Font.BOLD, 36));
+        title.setForeground(new Color(255, 226, 87));
+        title.setAlignmentX(Component.CENTER_ALIGNMENT);
+        box.add(title);
+        box.add(Box.createVerticalStrut(20));
+        progress.setStringPainted(true);
+        progress.setString("Getting the spaceship ready…");
+        progress.setAlignmentX(Component.CENTER_ALIGNMENT);
+        progress.setMaximumSize(new Dimension(360, 24));
+        box.add(progress);
+        add(box);
+    }
+
+    /** Call on the EDT. */
+    public void setProgress(int done, int total) {
+        progress.setMaximum(Math.max(1, total));
+        progress.setValue(done);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (onFirstPaint != null) {
+            onFirstPaint.run();
+            onFirstPaint = null;
+        }
+    }
+}
+
+/**
+ * Avatar label shows a scaled astronaut or character icon.
+ * 
+ * @param imgPath Path to the avatar image file
+ */
+class Avatar extends JLabel {
+    public Avatar(String imgPath) {
+        setIcon(AssetCache.shared().icon(imgPath, 140, 140));
+        setPreferredSize(new Dimension(140, 140));
+        setHorizontalAlignment(SwingConstants.CENTER);
+    }
+}
+
+/**
+ * ProgressManager saves quiz results. saveProgress only queues a result and
+ * returns. A background writer appends queued results in batches to a
+ * binary journal next to the progress file (progress.txt.journal). Each
+ * record is length-prefixed and CRC-checked, and the journal is fsynced
+ * once per batch (group commit). On startup the journal is recovered and
+ * a torn or corrupt tail is cut off. Once the journal passes
+ * -Dprogress.compactBytes (64 KB), and on exit, its results are folded into
+ * the readable progress file as "lesson - Score: n @ epoch millis" lines
+ * (lines from before times were recorded still load, as time 0). A fold first
+ * journals a checkpoint holding the progress file's length. If a crash cuts
+ * the fold short, the next start rolls the file back to that length and
+ * redoes the fold, so no line is written twice or lost. The file holds one
+ * learner's progress and stores no names, so as a ProgressSink it takes
+ * results for one learner only: the first it is given.
+ * 
+ * @param filePath   File to save progress data.
+ * @param lessonName Lesson title.
+ * @param score      User's score.
+ */
+class ProgressManager implements ProgressSink {
+    record Result(long time, String lesson, int score) {
+    }
+
+    private static final byte RESULT = 1, CHECKPOINT = 2;
+    private static final int MAX_RECORD_BYTES = 1 << 16;
+    private static final long COMPACT_BYTES = Long.getLong("progress.compactBytes", 64 << 10);
+    private static final Object CLOSE = new Object();
+
+    // Asks the writer to report back once everything queued before it is on disk
+    private record Barrier(CompletableFuture<Void> done, boolean compact) {
+    }
+
+    private final Path file, journalFile;
+    private final AtomicReference<String> learner = new AtomicReference<>(); // whose file this is
+    private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean stopped; // the writer has exited, or is about to
+    private final ProgressStats stats = new ProgressStats();
+
+    // Writer-thread state
+    private FileChannel journal;
+    private final List<Result> unfolded = new ArrayList<>(); // journaled, not yet in the progress file
+    private long checkpoint = -1; // progress file length saved by an unfinished fold
+    private final AtomicLong batches = new AtomicLong(), records = new AtomicLong();
+
+    public ProgressManager(String filePath) {
+        this.file = Path.of(filePath);
+        this.journalFile = Path.of(filePath + ".journal");
+        writer = new Thread(this::run, "progress-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /**
+     * Queues the result of the learner this file belongs to: whoever was
+     * saved for first. Give each learner their own ProgressManager.
+     * 
+     * @throws IllegalArgumentException If the result is another learner's,
+     *                                  rather than mix it into their file.
+     */
+    @Override
+    public void saveProgress(String learner, String lessonName, int score) {
+        String owner = this.learner.compareAndExchange(null, learner);
+        if (owner != null && !owner.equals(learner))
+            throw new IllegalArgumentException(file + " holds " + owner + "'s progress, not " + learner + "'s");
+        saveProgress(lessonName, score);
+    }
+
+    /**
+     * Queues the result for writing; returns immediately.
+     * 
+     * @throws IllegalStateException If the writer has stopped (closed, or
+     *                               the files couldn't be recovered), so
+     *                               the result can't be saved.
+     */
+    public void saveProgress(String lessonName, int score) {
+        if (stopped)
+            throw new IllegalStateException("Progress writer has stopped; " + lessonName + " not saved");
+        Result result = new Result(System.currentTimeMillis(), lessonName, score);
+        queue.add(result);
+        if (stopped) { // stopped meanwhile: its last drain may have dropped the result
+            queue.remove(result);
+            throw new IllegalStateException("Progress writer has stopped; " + lessonName + " may not be saved");
+        }
+        stats.record(result);
+    }
+
+    /** @return Best, latest, attempts, distribution and history per lesson, kept up to date. */
+    public ProgressStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return Completes once every result queued so far is durable in the
+     *         journal; fails if the writer has stopped.
+     */
+    public CompletableFuture<Void> flush() {
+        return barrier(false);
+    }
+
+    /** @return Completes once every result queued so far is in the progress file. */
+    public CompletableFuture<Void> compact() {
+        return barrier(true);
+    }
+
+    private CompletableFuture<Void> barrier(boolean compact) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(new Barrier(done, compact));
+        if (stopped) // the writer may have drained the queue for the last time already
+            failQueued();
+        return done;
+    }
+
+    /** Writes what is queued, folds it into the progress file and stops the writer. */
+    public void close() {
+        if (!writer.isAlive())
+            return;
+        queue.add(CLOSE);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return {results journaled, batches (one fsync each)}. */
+    public long[] getCounts() {
+        return new long[] { records.get(), batches.get() };
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        boolean loading = false;
+        try {
+            recover();
+            // Folds only ever append, so the file's current length marks what the stats read from it
+            stats.loadAsync(file, Files.exists(file) ? Files.size(file) : 0, List.copyOf(unfolded));
+            loading = true;
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                boolean close = false;
+                try {
+                    writeBatch(batch);
+                    for (Object o : batch) {
+                        if (o instanceof Barrier b) {
+                            if (b.compact())
+                                fold();
+                            b.done().complete(null);
+                        }
+                        close |= o == CLOSE;
+                    }
+                    if (close) {
+                        fold();
+                        journal.close();
+                        return;
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    failBarriers(batch, e);
+                }
+                batch.clear();
+            }
+        } catch (RuntimeException e) {
+            stopped = true; // before anyone waiting hears of it
+            failBarriers(batch, e); // the writer is gone; don't leave anyone waiting on it
+            throw e;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+            if (!loading) { // recovery failed: load what can still be read rather than keep the stats waiting
+                long length = 0;
+                try {
+                    length = Files.size(file);
+                } catch (IOException e) {
+                    // nothing readable; the stats start empty
+                }
+                stats.loadAsync(file, length, List.copyOf(unfolded));
+            }
+            failQueued();
+        }
+    }
+
+    // Fails barriers queued for a writer that has stopped
+    private void failQueued() {
+        List<Object> left = new ArrayList<>();
+        queue.drainTo(left);
+        failBarriers(left, new IllegalStateException("Progress writer has stopped"));
+    }
+
+    private static void failBarriers(List<Object> batch, Exception e) {
+        for (Object o : batch)
+            if (o instanceof Barrier b)
+                b.done().completeExceptionally(e);
+    }
+
+    // Appends the batch's results as one write and one fsync (writer thread)
+    private void writeBatch(List<Object> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int count = 0;
+        for (Object o : batch) {
+            if (o instanceof Result r) {
+                byte[] lesson = r.lesson().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 4 + lesson.length);
+                payload.put(RESULT).putLong(r.time()).putInt(r.score()).put(lesson);
+                bytes.write(frame(payload.array()));
+                unfolded.add(r);
+                count++;
+            }
+        }
+        if (count == 0)
+            return;
+        append(ByteBuffer.wrap(bytes.toByteArray()));
+        journal.force(false);
+        records.addAndGet(count);
+        batches.incrementAndGet();
+        if (journal.size() >= COMPACT_BYTES)
+            fold();
+    }
+
+    // Reads the journal back, cuts off a torn tail and finishes an interrupted fold (writer thread)
+    private void recover() throws IOException {
+        journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer all = ByteBuffer.allocate((int) journal.size());
+        while (all.hasRemaining() && journal.read(all, all.position()) > 0)
+            ;
+        all.flip();
+        int pos = 0;
+        while (true) {
+            ByteBuffer payload = readRecord(all, pos);
+            if (payload == null)
+                break;
+            pos += 8 + payload.remaining();
+            byte type = payload.get();
+            if (type == RESULT) {
+                long time = payload.getLong();
+                int score = payload.getInt();
+                byte[] lesson = new byte[payload.remaining()];
+                payload.get(lesson);
+                unfolded.add(new Result(time, new String(lesson, StandardCharsets.UTF_8), score));
+            } else if (type == CHECKPOINT && checkpoint < 0) {
+                checkpoint = payload.getLong();
+            }
+        }
+        if (pos < journal.size()) {
+            journal.truncate(pos);
+            journal.force(false);
+        }
+        if (checkpoint >= 0)
+            fold();
+    }
+
+    /**
+     * Moves the journaled results into the progress file and empties the
+     * journal (writer thread). Crash-safe: see the class comment.
+     */
+    private void fold() throws IOException {
+        if (unfolded.isEmpty() && checkpoint < 0)
+            return;
+        try (FileChannel txt = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (checkpoint < 0) {
+                checkpoint = txt.size();
+                append(ByteBuffer.wrap(frame(ByteBuffer.allocate(9).put(CHECKPOINT).putLong(checkpoint).array())));
+                journal.force(false);
+            }
+            long start = Math.min(checkpoint, txt.size());
+            txt.truncate(start); // drops whatever a fold cut short had written
+
+            StringBuilder lines = new StringBuilder();
+            for (Result r : unfolded)
+                lines.append(r.lesson()).append(" - Score: ").append(r.score()).append(" @ ").append(r.time())
+                        .append('\n');
+            ByteBuffer buf = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining())
+                txt.write(buf, start + buf.position());
+            txt.force(false);
+        }
+        journal.truncate(0);
+        journal.force(false);
+        unfolded.clear();
+        checkpoint = -1;
+    }
+
+    private void append(ByteBuffer buf) throws IOException {
+        long pos = journal.size();
+        while (buf.hasRemaining())
+            journal.write(buf, pos + buf.position());
+    }
+
+    // Length and CRC header, then the payload
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(8 + payload.length).putInt(payload.length).putInt((int) crc.getValue())
+                .put(payload).array();
+    }
+
+    /** @return The payload of the record at pos, or null if it is missing, short or corrupt. */
+    private static ByteBuffer readRecord(ByteBuffer all, int pos) {
+        if (all.limit() - pos < 8)
+            return null;
+        int length = all.getInt(pos), crc = all.getInt(pos + 4);
+        if (length < 9 || length > MAX_RECORD_BYTES || all.limit() - pos - 8 < length)
+            return null;
+        ByteBuffer payload = all.slice(pos + 8, length);
+        CRC32 check = new CRC32();
+        check.update(payload.duplicate());
+        return (int) check.getValue() == crc ? payload : null;
+    }
+}
+
+/**
+ * Read side of the learner's progress: per-lesson best and latest score,
+ * attempt count, score distribution and history. The aggregates are kept
+ * up to date on every save, so each query is O(1), or O(log n + results)
+ * for a history window found by binary search. They are built once at
+ * startup from the progress file, which is memory-mapped in chunks and
+ * parsed in parallel (each chunk owns the lines that start in it), plus
+ * the results still waiting in the journal. Lines written before times
+ * were recorded count as time 0. Queries wait for that load to finish.
+ */
+class ProgressStats {
+    record Attempt(long time, int score) {
+    }
+
+    private static final byte[] SCORE_MARK = " - Score: ".getBytes(StandardCharsets.US_ASCII);
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    private static final int MAX_LINE_BYTES = 1 << 16; // a chunk reads this far past its end to finish its last line
+
+    // One lesson's aggregates; attempts are kept in time order
+    private static final class Lesson {
+        int best = -1, latest = -1, attempts;
+        int[] counts = new int[4]; // score -> attempts
+        long[] times = new long[8];
+        int[] scores = new int[8];
+
+        void add(long time, int score) {
+            if (score < 0)
+                return;
+            best = Math.max(best, score);
+            latest = score;
+            if (score >= counts.length)
+                counts = Arrays.copyOf(counts, Math.max(score + 1, counts.length * 2));
+            counts[score]++;
+            if (attempts == times.length) {
+                times = Arrays.copyOf(times, attempts * 2);
+                scores = Arrays.copyOf(scores, attempts * 2);
+            }
+            int at = attempts;
+            if (at > 0 && times[at - 1] > time) // clock went back: keep the history sorted
+                at = upperBound(times, attempts, time);
+            System.arraycopy(times, at, times, at + 1, attempts - at);
+            System.arraycopy(scores, at, scores, at + 1, attempts - at);
+            times[at] = time;
+            scores[at] = score;
+            attempts++;
+        }
+
+        // Appends a later slice of the file
+        void addAll(Lesson later) {
+            for (int i = 0; i < later.attempts; i++)
+                add(later.times[i], later.scores[i]);
+        }
+    }
+
+    private final Map<String, Lesson> lessons = new HashMap<>();
+    private final List<ProgressManager.Result> early = new ArrayList<>(); // saved while loading
+    private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+
+    /**
+     * Loads the progress file's first length bytes, then the journaled
+     * results, in the background; saves made meanwhile are applied after.
+     */
+    void loadAsync(Path file, long length, List<ProgressManager.Result> journaled) {
+        CompletableFuture.runAsync(() -> {
+            Map<String, Lesson> fromFile = Map.of();
+            try {
+                fromFile = parse(file, length, ForkJoinPool.commonPool());
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace(); // still complete the load, or every query would wait forever
+            }
+            synchronized (this) {
+                lessons.putAll(fromFile);
+                journaled.forEach(this::apply);
+                early.forEach(this::apply);
+                early.clear();
+                loaded.complete(null);
+            }
+        });
+    }
+
+    /** Counts a new result; O(1) unless the clock went backwards. */
+    public synchronized void record(ProgressManager.Result result) {
+        if (loaded.isDone())
+            apply(result);
+        else
+            early.add(result);
+    }
+
+    private void apply(ProgressManager.Result r) {
+        lessons.computeIfAbsent(r.lesson(), k -> new Lesson()).add(r.time(), r.score());
+    }
+
+    /** @return Completes once the saved progress has been read. */
+    public CompletableFuture<Void> whenLoaded() {
+        return loaded;
+    }
+
+    public Set<String> lessons() {
+        return view(() -> Set.copyOf(lessons.keySet()));
+    }
+
+    /** @return The best score for the lesson, or -1 if never taken. */
+    public int best(String lesson) {
+        return view(() -> lesson(lesson).best);
+    }
+
+    /** @return The most recent score for the lesson, or -1 if never taken. */
+    public int latest(String lesson) {
+        return view(() -> lesson(lesson).latest);
+    }
+
+    public int attempts(String lesson) {
+        return view(() -> lesson(lesson).attempts);
+    }
+
+    /** @return How many attempts got each score (index = score). */
+    public int[] distribution(String lesson) {
+        return view(() -> {
+            Lesson l = lesson(lesson);
+            return Arrays.copyOf(l.counts, l.best + 1);
+        });
+    }
+
+    /** @return Attempts from (inclusive) to (exclusive), epoch millis, oldest first. */
+    public List<Attempt> history(String lesson, long from, long to) {
+        return view(() -> {
+            Lesson l = lesson(lesson);
+            List<Attempt> out = new ArrayList<>();
+            for (int i = upperBound(l.times, l.attempts, from - 1); i < l.attempts && l.times[i] < to; i++)
+                out.add(new Attempt(l.times[i], l.scores[i]));
+            return out;
+        });
     }
 
-    private void animate() {
-        for (Star s : stars) {
-            s.brightness += s.dBrightness;
-            if (s.brightness > 1f) {
-                s.brightness = 1f;
-                s.dBrightness = -s.dBrightness;
-            } else if (s.brightness < 0.55f) {
-                s.brightness = 0.55f;
-                s.dBrightness = -s.dBrightness;
-            }
-        }
-        int w = Math.max(1, getWidth()), h = Math.max(2, getHeight());
-        for (Comet c : comets) {
-            c.x += c.dx;
-            c.y += c.dy;
-            if (c.x > w + 40 || c.y > h + 40) {
-                Comet reset = makeComet(w, h);
-                c.x = -40;
-                c.y = rand.nextInt(h / 2);
-                c.dx = reset.dx;
-                c.dy = reset.dy;
-                c.length = reset.length;
-                c.tailAlpha = reset.tailAlpha;
-                c.color = reset.color;
-            }
+    private <T> T view(Supplier<T> query) {
+        loaded.join();
+        synchronized (this) {
+            return query.get();
         }
-        repaint();
     }
 
-    @Override
-    protected void paintComponent(Graphics g0) {
-        super.paintComponent(g0);
-        Graphics2D g = (Graphics2D) g0;
-        for (Star s : stars) {
-            int alpha = (int) (110 + 120 * s.brightness);
-            g.setColor(new Color(255, 255, 60, alpha));
-            g.fillOval(Math.round(s.x), Math.round(s.y), s.size, s.size);
-        }
-        for (Comet c : comets) {
-            for (int i = 0; i < c.length; i += 2) {
-                int alpha = Math.max(0, c.tailAlpha - i * 2);
-                g.setColor(new Color(c.color.getRed(), c.color.getGreen(), c.color.getBlue(), alpha));
-                int x = (int) (c.x - c.dx * i / 10.0);
-                int y = (int) (c.y - c.dy * i / 10.0);
-                g.fillOval(x, y, 6, 6);
-            }
-            g.setColor(Color.WHITE);
-            g.fillOval((int) c.x - 2, (int) c.y - 2, 9, 9);
-        }
+    private Lesson lesson(String name) {
+        return lessons.getOrDefault(name, new Lesson());
     }
-}
 
-/**
- * Avatar label shows a scaled astronaut or character icon.
- * 
- * @param imgPath Path to the avatar image file
- */
-class Avatar extends JLabel {
-    public Avatar(String imgPath) {
-        ImageIcon icon = new ImageIcon(imgPath);
-        Image scaledImage = icon.getImage().getScaledInstance(140, 140, Image.SCALE_SMOOTH);
-        setIcon(new ImageIcon(scaledImage));
-        setPreferredSize(new Dimension(140, 140));
-        setHorizontalAlignment(SwingConstants.CENTER);
+    // First index whose time is greater than time
+    private static int upperBound(long[] times, int size, long time) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= time)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
     }
-}
 
-/**
- * ProgressManager handles saving user quiz progress to a file.
- * 
- * @param filePath   File to save progress data.
- * @param lessonName Lesson title.
- * @param score      User's score.
- */
-class ProgressManager {
-    private final String filePath;
+    /**
+     * Parses "lesson - Score: n @ millis" lines (the time is optional) from
+     * the file's first length bytes, chunks in parallel on the pool.
+     */
+    static Map<String, Lesson> parse(Path file, long length, ForkJoinPool pool) throws IOException {
+        if (length <= 0 || !Files.exists(file))
+            return new HashMap<>();
+        int parallelism = pool.getParallelism() * 4;
+        int chunks = (int) Math.max(1, Math.min(parallelism, length / MIN_CHUNK_BYTES));
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Map<String, Lesson>> parts = pool.submit(() -> IntStream.range(0, chunks).parallel()
+                    .mapToObj(i -> {
+                        try {
+                            return parseChunk(ch, length * i / chunks, length * (i + 1) / chunks, length);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }).toList()).join();
+            Map<String, Lesson> all = parts.get(0);
+            for (int i = 1; i < parts.size(); i++)
+                parts.get(i).forEach((name, later) -> all.computeIfAbsent(name, k -> new Lesson()).addAll(later));
+            return all;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-    public ProgressManager(String filePath) {
-        this.filePath = filePath;
+    // Lines that start in [from, to); the last one may run past to
+    private static Map<String, Lesson> parseChunk(FileChannel ch, long from, long to, long length) throws IOException {
+        long mapFrom = Math.max(0, from - 1);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, mapFrom,
+                Math.min(length, to + MAX_LINE_BYTES) - mapFrom);
+        int end = (int) (to - mapFrom), limit = buf.limit();
+        int pos = 0;
+        if (from > 0) { // a line that started in the previous chunk is that chunk's
+            while (pos < limit && buf.get(pos) != '\n')
+                pos++;
+            pos++;
+        }
+        Map<String, Lesson> out = new HashMap<>();
+        String lastName = null;
+        byte[] lastBytes = new byte[0];
+        while (pos < end && pos < limit) {
+            int lineEnd = pos;
+            while (lineEnd < limit && buf.get(lineEnd) != '\n')
+                lineEnd++;
+            int mark = lastIndexOf(buf, pos, lineEnd, SCORE_MARK);
+            if (mark >= 0) {
+                // Most lines repeat the previous lesson; reuse its name instead of decoding it again
+                if (!sameBytes(buf, pos, mark, lastBytes)) {
+                    lastBytes = new byte[mark - pos];
+                    buf.get(pos, lastBytes);
+                    lastName = new String(lastBytes, StandardCharsets.UTF_8);
+                }
+                int p = mark + SCORE_MARK.length;
+                int score = 0, digits = 0;
+                for (; p < lineEnd && buf.get(p) >= '0' && buf.get(p) <= '9'; p++, digits++)
+                    score = score * 10 + buf.get(p) - '0';
+                long time = 0;
+                while (p < lineEnd && (buf.get(p) == ' ' || buf.get(p) == '@'))
+                    p++;
+                for (; p < lineEnd && buf.get(p) >= '0' && buf.get(p) <= '9'; p++)
+                    time = time * 10 + buf.get(p) - '0';
+                if (digits > 0)
+                    out.computeIfAbsent(lastName, k -> new Lesson()).add(time, score);
+            }
+            pos = lineEnd + 1;
+        }
+        return out;
     }
 
-    public void saveProgress(String lessonName, int score) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, true))) {
-            writer.write(lessonName + " - Score: " + score + "\n");
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static int lastIndexOf(ByteBuffer buf, int from, int to, byte[] needle) {
+        outer: for (int i = to - needle.length; i >= from; i--) {
+            for (int j = 0; j < needle.length; j++)
+                if (buf.get(i + j) != needle[j])
+                    continue outer;
+            return i;
         }
+        return -1;
+    }
+
+    private static boolean sameBytes(ByteBuffer buf, int from, int to, byte[] bytes) {
+        if (to - from != bytes.length)
+            return false;
+        for (int i = 0; i < bytes.length; i++)
+            if (buf.get(from + i) != bytes[i])
+                return false;
+        return true;
     }
 }
 
@@ -535,9 +5054,7 @@ class WelcomePanel extends StarCometBackgroundPanel {
         super(90, 2, 1000, 700);
         setLayout(null);
         // Avatar image
-        ImageIcon icon = new ImageIcon("kid.png");
-        Image scaled = icon.getImage().getScaledInstance(150, 220, Image.SCALE_SMOOTH);
-        JLabel avatarLabel = new JLabel(new ImageIcon(scaled));
+        JLabel avatarLabel = new JLabel(AssetCache.shared().icon("kid.png", 150, 220));
         avatarLabel.setBounds(60, 70, 115, 180);
         avatarLabel.setCursor(customCursor);
         add(avatarLabel);
@@ -613,6 +5130,15 @@ class LessonPanel extends StarCometBackgroundPanel {
         chatBtn.addActionListener(e -> app.showScreen(ScreenNames.CHAT));
         topBar.add(chatBtn);
 
+        JButton sandboxBtn = new JButton("🪐 Zero-G Sandbox");
+        sandboxBtn.setFont(new Font("Comic Sans MS", Font.BOLD, 18));
+        sandboxBtn.setBackground(new Color(45, 136, 255));
+        sandboxBtn.setForeground(Color.black);
+        sandboxBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        sandboxBtn.setFocusPainted(false);
+        sandboxBtn.addActionListener(e -> app.showScreen(ScreenNames.SANDBOX));
+        topBar.add(sandboxBtn);
+
         add(topBar, BorderLayout.NORTH);
 
         int maxWidth = 650;
@@ -638,75 +5164,893 @@ class LessonPanel extends StarCometBackgroundPanel {
                 + "<b>Fun Fact:</b> Did you know astronauts sleep in bags strapped to the walls, so they don’t float away while dreaming?</span>"
                 + "</div></html>";
 
-        JLabel lessonLabel = new JLabel(lessonHTML);
-        lessonLabel.setFont(new Font("Comic Sans MS", Font.PLAIN, 20));
-        lessonLabel.setForeground(Color.WHITE);
-        lessonLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
-        contentPanel.add(lessonLabel);
+        JLabel lessonLabel = new JLabel(lessonHTML);
+        lessonLabel.setFont(new Font("Comic Sans MS", Font.PLAIN, 20));
+        lessonLabel.setForeground(Color.WHITE);
+        lessonLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        contentPanel.add(lessonLabel);
+
+        contentPanel.add(Box.createVerticalStrut(36));
+
+        JButton quizBtn = new JButton("Take Quiz");
+        quizBtn.setFont(new Font("Comic Sans MS", Font.BOLD, 22));
+        quizBtn.setBackground(new Color(45, 136, 255));
+        quizBtn.setForeground(Color.WHITE);
+        quizBtn.setFocusPainted(false);
+        quizBtn.setBorder(BorderFactory.createEmptyBorder(8, 24, 8, 24));
+        quizBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        quizBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
+        quizBtn.addActionListener(e -> app.showScreen(ScreenNames.QUIZ));
+        contentPanel.add(quizBtn);
+
+        JPanel outer = new JPanel();
+        outer.setOpaque(false);
+        outer.setLayout(new FlowLayout(FlowLayout.LEFT, 0, 40));
+        outer.add(contentPanel);
+
+        JScrollPane scrollPane = new JScrollPane(outer);
+        scrollPane.setOpaque(false);
+        scrollPane.getViewport().setOpaque(false);
+        scrollPane.setBorder(null);
+        scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+
+        add(scrollPane, BorderLayout.CENTER);
+    }
+}
+
+/**
+ * Quiz questions stored in a compact binary file and memory-mapped, so a
+ * bank of tens of thousands costs almost nothing on the heap. Questions are
+ * indexed by id (their position when the bank was written) and by topic and
+ * difficulty: the index is sorted on (topic, difficulty, id), so every
+ * topic/difficulty is one contiguous run found by binary search. Build a
+ * bank from a UTF-8 file with one
+ * "topic<TAB>difficulty<TAB>correct option (from 0)<TAB>question<TAB>option..."
+ * line per question:
+ * <pre>java -cp app.jar QuestionBank questions.tsv questions.bin</pre>
+ * 
+ * @param bankFile The file written by {@link #write}.
+ */
+class QuestionBank {
+    record Question(int id, String topic, int difficulty, String text, List<String> options, int correct) {
+    }
+
+    private static final int MAGIC = 0x5A475142; // "ZGQB"
+    private static final int HEADER_BYTES = 44;
+    private static final int ENTRY_BYTES = 12; // id, topic (short), difficulty, correct, textOffset
+    static final String DEFAULT_TOPIC = "zero-gravity";
+
+    // The lesson's own questions, used when there is no bank file
+    private static final List<Question> BUILT_IN = List.of(
+            new Question(0, DEFAULT_TOPIC, 1, "Why do astronauts feel weightless?",
+                    List.of("Because they are free falling around Earth", "Because there is no gravity in space",
+                            "Because they are far from Earth", "Because the ship pushes them up"),
+                    0),
+            new Question(1, DEFAULT_TOPIC, 1, "What is microgravity?",
+                    List.of("Very small gravity is still present", "No gravity at all", "Gravity is reversed",
+                            "Gravity only on Mars"),
+                    0),
+            new Question(2, DEFAULT_TOPIC, 1, "Why do astronauts have to exercise in space?",
+                    List.of("To keep bones and muscles strong", "To float better", "For fun", "To use equipment"),
+                    0));
+
+    private static QuestionBank shared;
+
+    private final int count;
+    private final String[] topics; // sorted; an entry stores its topic's position here
+    private final ByteBuffer index, ids, text;
+
+    public QuestionBank(Path bankFile) throws IOException {
+        try (FileChannel ch = FileChannel.open(bankFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            ch.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a question bank: " + bankFile);
+            count = header.getInt();
+            topics = new String[header.getInt()];
+            long[] sections = new long[4];
+            for (int i = 0; i < sections.length; i++)
+                sections[i] = header.getLong();
+            readTopics(map(ch, HEADER_BYTES, sections[0]));
+            index = map(ch, sections[0], sections[1]);
+            ids = map(ch, sections[1], sections[2]);
+            text = map(ch, sections[2], sections[3]);
+        }
+    }
+
+    // Same layout, held in memory
+    private QuestionBank(ByteBuffer bank) {
+        if (bank.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("Not a question bank");
+        count = bank.getInt(4);
+        topics = new String[bank.getInt(8)];
+        long[] sections = new long[4];
+        for (int i = 0; i < sections.length; i++)
+            sections[i] = bank.getLong(12 + i * 8);
+        readTopics(bank.slice(HEADER_BYTES, (int) sections[0] - HEADER_BYTES));
+        index = bank.slice((int) sections[0], (int) (sections[1] - sections[0]));
+        ids = bank.slice((int) sections[1], (int) (sections[2] - sections[1]));
+        text = bank.slice((int) sections[2], (int) (sections[3] - sections[2]));
+    }
+
+    /** @return A bank of the given questions, kept in memory. */
+    public static QuestionBank of(List<Question> questions) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            write(questions, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // can't happen in memory
+        }
+        return new QuestionBank(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * @return The bank named by -Dquiz.bank (default questions.bin), opened
+     *         once, or the lesson's built-in questions if there is none.
+     */
+    public static synchronized QuestionBank shared() {
+        if (shared == null) {
+            Path file = Path.of(System.getProperty("quiz.bank", "questions.bin"));
+            if (Files.exists(file)) {
+                try {
+                    shared = new QuestionBank(file);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (shared == null)
+                shared = of(BUILT_IN);
+        }
+        return shared;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /** @return The question, decoded from the bank. */
+    public Question get(int id) {
+        if (id < 0 || id >= count)
+            throw new IndexOutOfBoundsException("No question " + id);
+        int entry = ids.getInt(id * 4) * ENTRY_BYTES;
+        ByteBuffer buf = text.duplicate().position(index.getInt(entry + 8));
+        int options = buf.get() & 0xFF;
+        String question = readString(buf);
+        String[] choices = new String[options];
+        for (int i = 0; i < options; i++)
+            choices[i] = readString(buf);
+        return new Question(id, topics[index.getShort(entry + 4)], index.get(entry + 6) & 0xFF, question,
+                List.of(choices), index.get(entry + 7));
+    }
+
+    /** @return How many questions the topic has. */
+    public int count(String topic) {
+        int t = Arrays.binarySearch(topics, topic);
+        return t < 0 ? 0 : lowerBound((t + 1) << 8) - lowerBound(t << 8);
+    }
+
+    /** @return The difficulties the topic has questions at, ascending (empty if none). */
+    public int[] difficulties(String topic) {
+        int t = Arrays.binarySearch(topics, topic);
+        if (t < 0)
+            return new int[0];
+        List<Integer> found = new ArrayList<>();
+        int end = lowerBound((t + 1) << 8);
+        for (int slot = lowerBound(t << 8); slot < end;) {
+            int difficulty = index.get(slot * ENTRY_BYTES + 6) & 0xFF;
+            found.add(difficulty);
+            slot = lowerBound(t << 8 | (difficulty + 1));
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return {from, to}: the index slots holding the topic's questions at
+     *         this difficulty, in id order; use {@link #idAt} to read them.
+     */
+    public int[] range(String topic, int difficulty) {
+        int t = Arrays.binarySearch(topics, topic);
+        if (t < 0)
+            return new int[2];
+        int key = t << 8 | difficulty;
+        return new int[] { lowerBound(key), lowerBound(key + 1) };
+    }
+
+    public int idAt(int slot) {
+        return index.getInt(slot * ENTRY_BYTES);
+    }
+
+    // First slot whose (topic, difficulty) key is at least key
+    private int lowerBound(int key) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int entry = mid * ENTRY_BYTES;
+            if ((index.getShort(entry + 4) << 8 | index.get(entry + 6) & 0xFF) < key)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private void readTopics(ByteBuffer buf) {
+        for (int i = 0; i < topics.length; i++)
+            topics[i] = readString(buf);
+    }
+
+    /**
+     * Writes a bank. A question's id is its position in the list (the ids
+     * in the records are ignored).
+     */
+    public static void write(List<Question> questions, OutputStream out) throws IOException {
+        String[] topics = questions.stream().map(Question::topic).distinct().sorted().toArray(String[]::new);
+        if (topics.length > Short.MAX_VALUE)
+            throw new IOException("Too many topics: " + topics.length);
+        Map<String, Integer> topicIndex = new HashMap<>();
+        for (int i = 0; i < topics.length; i++)
+            topicIndex.put(topics[i], i);
+
+        ByteArrayOutputStream topicBytes = new ByteArrayOutputStream();
+        DataOutputStream topicOut = new DataOutputStream(topicBytes);
+        for (String topic : topics)
+            writeString(topicOut, topic);
+
+        // Question texts in id order, remembering where each starts
+        ByteArrayOutputStream textBytes = new ByteArrayOutputStream();
+        DataOutputStream textOut = new DataOutputStream(textBytes);
+        int[] textOffset = new int[questions.size()];
+        for (int id = 0; id < questions.size(); id++) {
+            Question q = questions.get(id);
+            if (q.difficulty() < 0 || q.difficulty() > 255 || q.options().size() > 255
+                    || q.correct() < 0 || q.correct() >= q.options().size())
+                throw new IOException("Bad question " + id + ": " + q.text());
+            textOffset[id] = textOut.size();
+            textOut.writeByte(q.options().size());
+            writeString(textOut, q.text());
+            for (String option : q.options())
+                writeString(textOut, option);
+        }
+
+        Integer[] order = new Integer[questions.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt((Integer id) -> topicIndex.get(questions.get(id).topic()))
+                .thenComparingInt(id -> questions.get(id).difficulty()).thenComparingInt(id -> id));
+
+        long indexStart = HEADER_BYTES + topicBytes.size();
+        long idsStart = indexStart + (long) ENTRY_BYTES * order.length;
+        long textStart = idsStart + 4L * order.length;
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(questions.size());
+        data.writeInt(topics.length);
+        data.writeLong(indexStart);
+        data.writeLong(idsStart);
+        data.writeLong(textStart);
+        data.writeLong(textStart + textBytes.size());
+        topicBytes.writeTo(data);
+        int[] slotOf = new int[order.length];
+        for (int slot = 0; slot < order.length; slot++) {
+            int id = order[slot];
+            Question q = questions.get(id);
+            slotOf[id] = slot;
+            data.writeInt(id);
+            data.writeShort(topicIndex.get(q.topic()));
+            data.writeByte(q.difficulty());
+            data.writeByte(q.correct());
+            data.writeInt(textOffset[id]);
+        }
+        for (int slot : slotOf)
+            data.writeInt(slot);
+        textBytes.writeTo(data);
+        data.flush();
+    }
+
+    /** Builds a bank file from a tab-separated question list (see the class comment). */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: QuestionBank questions.tsv questions.bin");
+            System.exit(2);
+        }
+        List<Question> questions = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split("\t");
+                if (line.isBlank() || f.length < 6)
+                    continue; // need at least two options
+                questions.add(new Question(questions.size(), f[0], Integer.parseInt(f[1].trim()), f[3],
+                        List.of(Arrays.copyOfRange(f, 4, f.length)), Integer.parseInt(f[2].trim())));
+            }
+        }
+        try (OutputStream out = Files.newOutputStream(Path.of(args[1]))) {
+            write(questions, out);
+        }
+        System.out.println("Wrote " + questions.size() + " questions to " + args[1]);
+    }
+
+    private static MappedByteBuffer map(FileChannel ch, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE)
+            throw new IOException("Bank section too large to map: " + (to - from) + " bytes");
+        return ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF)
+            throw new IOException("Text too long: " + s.substring(0, 40) + "…");
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    // Reads a string at the buffer's position and moves past it
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort() & 0xFFFF];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
+
+/**
+ * One learner's spaced-repetition schedule for a topic of a QuestionBank,
+ * after SM-2. A question answered right comes back after 1 day, then 6,
+ * then its last interval times its easiness factor. A question answered
+ * wrong starts over and comes back after -Dquiz.relearnSeconds (60), so it
+ * gets practised again in the same session. Questions waiting for review
+ * sit in a binary min-heap keyed by due time, so choosing the next one is
+ * O(log n). When nothing is due, a new question is drawn at the learner's
+ * current difficulty, which is judged every 4 answers: up a level if all
+ * were right, down one if half or more were wrong. Several quizzes can
+ * draw from one schedule at once: a question handed out is out of the
+ * rotation until it is answered or put back.
+ * State is only kept for questions the learner has seen (about 35 bytes
+ * each, in arrays that grow as needed), so a big bank costs a new learner
+ * next to nothing. Call it on one thread.
+ * 
+ * @param bank  The questions.
+ * @param topic The topic to quiz on.
+ */
+class ReviewScheduler {
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    private static final long RELEARN_MS = Integer.getInteger("quiz.relearnSeconds", 60) * 1000L;
+    private static final int WINDOW = 4; // answers judged together when adapting the difficulty
+
+    private final QuestionBank bank;
+    private final String topic;
+    private final int[] levels; // the topic's difficulties, ascending
+    private final int[] nextNew, levelEnd; // per level: next unseen slot, end of its range
+
+    // Seen questions, structure of arrays in the order they were first asked
+    private int seen = 0;
+    private int[] ids = new int[16];
+    private float[] easiness = new float[16];
+    private int[] intervalDays = new int[16];
+    private byte[] repetitions = new byte[16];
+    private long[] due = new long[16];
+    private int[] out = new int[16]; // quizzes holding it unanswered; in the heap only when 0
+    private int[] table = new int[32]; // open addressing: question id -> seen index + 1 (0 = free)
+
+    private int[] heap = new int[64]; // seen indexes, soonest due first
+    private int heapSize;
+    private int level;
+    private int windowAnswers, windowRight;
+
+    public ReviewScheduler(QuestionBank bank, String topic) {
+        this.bank = bank;
+        this.topic = topic;
+        levels = bank.difficulties(topic);
+        nextNew = new int[levels.length];
+        levelEnd = new int[levels.length];
+        for (int l = 0; l < levels.length; l++) {
+            int[] range = bank.range(topic, levels[l]);
+            nextNew[l] = range[0];
+            levelEnd[l] = range[1];
+        }
+    }
+
+    /**
+     * Hands out a question; answer it or put it back.
+     * 
+     * @return Id of the question to ask next: the most overdue review, else
+     *         a new question, else the review due soonest, else (when every
+     *         question seen is out in another quiz) the one of those due
+     *         soonest; -1 if the topic has no questions.
+     */
+    public int next(long now) {
+        int i;
+        if (heapSize > 0 && due[heap[0]] <= now) {
+            i = poll();
+        } else {
+            i = nextNew(now);
+            if (i < 0 && heapSize > 0)
+                i = poll(); // everything seen and nothing due: review early
+            else if (i < 0)
+                i = soonestOut();
+        }
+        if (i < 0)
+            return -1;
+        out[i]++;
+        return ids[i];
+    }
+
+    /** Records the answer to a question handed out by next() and schedules it. */
+    public void answer(int id, boolean correct, long now) {
+        int i = indexOf(id);
+        if (i < 0 || out[i] == 0)
+            throw new IllegalArgumentException("Not a question asked: " + id);
+        int quality = correct ? 4 : 1; // SM-2 grades 0-5
+        easiness[i] = Math.max(1.3f, easiness[i] + 0.1f - (5 - quality) * (0.08f + (5 - quality) * 0.02f));
+        if (correct) {
+            int reps = Math.min(repetitions[i] + 1, Byte.MAX_VALUE);
+            repetitions[i] = (byte) reps;
+            intervalDays[i] = reps == 1 ? 1 : reps == 2 ? 6 : Math.round(intervalDays[i] * easiness[i]);
+            due[i] = now + intervalDays[i] * DAY_MS;
+        } else {
+            repetitions[i] = 0;
+            intervalDays[i] = 0;
+            due[i] = now + RELEARN_MS;
+        }
+        if (--out[i] == 0)
+            push(i);
+        adapt(correct);
+    }
+
+    /** Returns a question handed out by next() but not answered to the rotation, unchanged. */
+    public void putBack(int id) {
+        int i = indexOf(id);
+        if (i < 0 || out[i] == 0)
+            throw new IllegalArgumentException("Not a question asked: " + id);
+        if (--out[i] == 0)
+            push(i);
+    }
+
+    /** @return The difficulty new questions are drawn at. */
+    public int getDifficulty() {
+        return levels.length > 0 ? levels[level] : 0;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /** @return How many questions are waiting for review. */
+    public int getReviewCount() {
+        return heapSize;
+    }
+
+    /** @return How many questions the learner has been asked so far. */
+    public int getSeenCount() {
+        return seen;
+    }
+
+    /** @return When the question is next due (ms), or -1 if it hasn't been asked. */
+    public long getDue(int id) {
+        int i = indexOf(id);
+        return i < 0 ? -1 : due[i];
+    }
+
+    private void adapt(boolean correct) {
+        windowAnswers++;
+        if (correct)
+            windowRight++;
+        if (windowAnswers < WINDOW)
+            return;
+        if (windowRight == WINDOW && level < levels.length - 1)
+            level++;
+        else if (windowRight * 2 <= WINDOW && level > 0)
+            level--;
+        windowAnswers = windowRight = 0;
+    }
+
+    // Seen index of an unseen question at the current difficulty, else the nearest one that has some left
+    private int nextNew(long now) {
+        for (int d = 0; d < levels.length; d++) {
+            for (int l : new int[] { level + d, level - d }) {
+                if (l < 0 || l >= levels.length || nextNew[l] >= levelEnd[l])
+                    continue;
+                int i = add(bank.idAt(nextNew[l]++));
+                easiness[i] = 2.5f;
+                due[i] = now;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Seen index of the question out in other quizzes that is due soonest, or -1 if none was seen.
+    // Only reached when every question seen is out, so there are no more of them than open quizzes.
+    private int soonestOut() {
+        int best = -1;
+        for (int i = 0; i < seen; i++)
+            if (best < 0 || before(i, best))
+                best = i;
+        return best;
+    }
+
+    // Seen index of a question, or -1
+    private int indexOf(int id) {
+        for (int t = hash(id);; t = (t + 1) & (table.length - 1)) {
+            if (table[t] == 0)
+                return -1;
+            if (ids[table[t] - 1] == id)
+                return table[t] - 1;
+        }
+    }
+
+    // Starts state for a question not seen before; returns its seen index
+    private int add(int id) {
+        if (seen == ids.length) {
+            int n = seen * 2;
+            ids = Arrays.copyOf(ids, n);
+            easiness = Arrays.copyOf(easiness, n);
+            intervalDays = Arrays.copyOf(intervalDays, n);
+            repetitions = Arrays.copyOf(repetitions, n);
+            due = Arrays.copyOf(due, n);
+            out = Arrays.copyOf(out, n);
+        }
+        if ((seen + 1) * 2 > table.length) { // keep the table at most half full
+            table = new int[table.length * 2];
+            for (int i = 0; i < seen; i++)
+                place(i);
+        }
+        ids[seen] = id;
+        place(seen);
+        return seen++;
+    }
+
+    private void place(int i) {
+        int t = hash(ids[i]);
+        while (table[t] != 0)
+            t = (t + 1) & (table.length - 1);
+        table[t] = i + 1;
+    }
+
+    private int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ h >>> 16) & (table.length - 1);
+    }
+
+    // Soonest due first; ties go to the lower question id
+    private boolean before(int a, int b) {
+        return due[a] < due[b] || due[a] == due[b] && ids[a] < ids[b];
+    }
+
+    private void push(int seenIndex) {
+        if (heapSize == heap.length)
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(seenIndex, heap[parent]))
+                break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = seenIndex;
+    }
+
+    private int poll() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child]))
+                child++;
+            if (!before(heap[child], last))
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+}
+
+/** Where finished quizzes are recorded; ProgressManager is the desktop one. */
+interface ProgressSink {
+    void saveProgress(String learner, String lessonName, int score);
+}
+
+/**
+ * The lesson → quiz → result flow without any UI, so one JVM can host a
+ * whole class's sessions. Each session is a small state machine
+ * (LESSON, QUIZ, RESULT, CLOSED) held in a ConcurrentHashMap and locked on
+ * its own, so sessions never wait for each other. Each learner has one
+ * ReviewScheduler, shared by their sessions and locked separately; each
+ * session holds its own question out of it until answered. Once a
+ * learner has had no open session for -Dquiz.idleMinutes (30) it is
+ * dropped by {@link #evictIdle}, and they start a fresh schedule if they
+ * come back. The question bank is read-only and shared by everyone.
+ * Finished quizzes go to the ProgressSink. The Swing panels are one
+ * client: the desktop app opens a single session. See
+ * SessionLoadBenchmark for thousands.
+ * 
+ * @param bank       Questions for every session.
+ * @param topic      The lesson's topic in the bank.
+ * @param lessonName What finished quizzes are saved under.
+ * @param quizLength Questions per quiz (at most the number the topic has).
+ * @param sink       Gets each finished quiz's score.
+ */
+class SessionEngine {
+    enum Stage {
+        LESSON, QUIZ, RESULT, CLOSED
+    }
+
+    /** A question to show: the question and its place in the quiz (from 1). */
+    record Step(QuestionBank.Question question, int number, int total) {
+    }
+
+    record Outcome(int score, int total) {
+    }
+
+    private static final class Session {
+        final String learner;
+        final ReviewScheduler scheduler; // the learner's, shared with their other sessions
+        Stage stage = Stage.LESSON;
+        QuestionBank.Question question;
+        int number, score;
+        boolean answered;
+        Outcome outcome; // of the last finished quiz
+
+        Session(String learner, ReviewScheduler scheduler) {
+            this.learner = learner;
+            this.scheduler = scheduler;
+        }
+    }
+
+    // A learner's schedule and how many sessions they have open (changed only inside compute)
+    private static final class Learner {
+        final ReviewScheduler scheduler;
+        int sessions;
+        long idleSince; // ms, once sessions is 0
+
+        Learner(ReviewScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+    }
+
+    private static final long IDLE_MS = Integer.getInteger("quiz.idleMinutes", 30) * 60_000L;
+    private static final long SWEEP_MS = 60_000;
+
+    private final QuestionBank bank;
+    private final String topic, lessonName;
+    private final int quizLength;
+    private final ProgressSink sink;
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Learner> learners = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+    private final LongAdder quizzesFinished = new LongAdder();
+
+    public SessionEngine(QuestionBank bank, String topic, String lessonName, int quizLength, ProgressSink sink) {
+        this.bank = bank;
+        this.topic = topic;
+        this.lessonName = lessonName;
+        this.quizLength = Math.min(quizLength, bank.count(topic));
+        this.sink = sink;
+    }
+
+    /** @return A new session for the learner, on the lesson. */
+    public long open(String learner) {
+        Learner l = learners.compute(learner, (name, known) -> {
+            Learner found = known != null ? known : new Learner(new ReviewScheduler(bank, topic));
+            found.sessions++;
+            return found;
+        });
+        long id = nextId.getAndIncrement();
+        sessions.put(id, new Session(learner, l.scheduler));
+        return id;
+    }
+
+    public void close(long id) {
+        Session s = sessions.remove(id);
+        if (s == null)
+            return;
+        synchronized (s) {
+            putBack(s);
+            s.stage = Stage.CLOSED;
+        }
+        long now = System.currentTimeMillis();
+        learners.computeIfPresent(s.learner, (name, l) -> {
+            if (--l.sessions == 0)
+                l.idleSince = now;
+            return l;
+        });
+        long last = lastSweep.get();
+        if (now - last >= SWEEP_MS && lastSweep.compareAndSet(last, now))
+            evictIdle(now);
+    }
+
+    /**
+     * Drops the schedules of learners with no open session since
+     * -Dquiz.idleMinutes before now. Runs every minute or so from close().
+     * 
+     * @return How many were dropped.
+     */
+    public int evictIdle(long now) {
+        int[] dropped = new int[1];
+        for (String learner : learners.keySet()) {
+            learners.computeIfPresent(learner, (name, l) -> {
+                if (l.sessions > 0 || now - l.idleSince < IDLE_MS)
+                    return l;
+                dropped[0]++;
+                return null;
+            });
+        }
+        return dropped[0];
+    }
+
+    public Stage stage(long id) {
+        Session s = sessions.get(id);
+        if (s == null)
+            return Stage.CLOSED;
+        synchronized (s) {
+            return s.stage;
+        }
+    }
+
+    /**
+     * Starts a quiz, from the lesson, a finished quiz, or over an unfinished one.
+     * 
+     * @return The first question, or null if the topic has none.
+     */
+    public Step startQuiz(long id) {
+        Session s = session(id);
+        synchronized (s) {
+            putBack(s);
+            s.number = 0;
+            s.score = 0;
+            if (quizLength == 0) {
+                s.stage = Stage.LESSON;
+                return null;
+            }
+            s.stage = Stage.QUIZ;
+            return ask(s);
+        }
+    }
 
-        contentPanel.add(Box.createVerticalStrut(36));
+    /** @return Whether the choice was right. */
+    public boolean answer(long id, int choice) {
+        Session s = session(id);
+        synchronized (s) {
+            expect(s, Stage.QUIZ);
+            if (s.answered)
+                throw new IllegalStateException("Question already answered");
+            boolean right = choice == s.question.correct();
+            synchronized (s.scheduler) {
+                s.scheduler.answer(s.question.id(), right, System.currentTimeMillis());
+            }
+            s.answered = true; // only once the scheduler has taken it
+            if (right)
+                s.score++;
+            return right;
+        }
+    }
 
-        JButton quizBtn = new JButton("Take Quiz");
-        quizBtn.setFont(new Font("Comic Sans MS", Font.BOLD, 22));
-        quizBtn.setBackground(new Color(45, 136, 255));
-        quizBtn.setForeground(Color.WHITE);
-        quizBtn.setFocusPainted(false);
-        quizBtn.setBorder(BorderFactory.createEmptyBorder(8, 24, 8, 24));
-        quizBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
-        quizBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
-        quizBtn.addActionListener(e -> app.showScreen(ScreenNames.QUIZ));
-        contentPanel.add(quizBtn);
+    /**
+     * @return The next question, or null when the quiz is over; the
+     *         session is then on RESULT and the score has gone to the sink.
+     * @throws RuntimeException Whatever the sink throws; the session is left
+     *                          as it was, so the call can be repeated.
+     */
+    public Step next(long id) {
+        Session s = session(id);
+        synchronized (s) {
+            expect(s, Stage.QUIZ);
+            if (!s.answered)
+                throw new IllegalStateException("Answer the question first");
+            if (s.number < quizLength)
+                return ask(s);
+            // Saved before the session moves on: if the sink throws, the quiz stays on its last
+            // question, answered, and next() can be called again
+            sink.saveProgress(s.learner, lessonName, s.score);
+            s.stage = Stage.RESULT;
+            s.outcome = new Outcome(s.score, quizLength);
+        }
+        quizzesFinished.increment();
+        return null;
+    }
 
-        JPanel outer = new JPanel();
-        outer.setOpaque(false);
-        outer.setLayout(new FlowLayout(FlowLayout.LEFT, 0, 40));
-        outer.add(contentPanel);
+    /** @return The score of the session's last finished quiz, or null if none. */
+    public Outcome outcome(long id) {
+        Session s = session(id);
+        synchronized (s) {
+            return s.outcome;
+        }
+    }
 
-        JScrollPane scrollPane = new JScrollPane(outer);
-        scrollPane.setOpaque(false);
-        scrollPane.getViewport().setOpaque(false);
-        scrollPane.setBorder(null);
-        scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
-        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+    /** @return {open sessions, quizzes finished, learners with a schedule held}. */
+    public long[] getCounts() {
+        return new long[] { sessions.size(), quizzesFinished.sum(), learners.size() };
+    }
 
-        add(scrollPane, BorderLayout.CENTER);
+    // Moves the session to its next question (session lock held)
+    private Step ask(Session s) {
+        int questionId;
+        synchronized (s.scheduler) {
+            questionId = s.scheduler.next(System.currentTimeMillis());
+        }
+        s.question = bank.get(questionId);
+        s.answered = false;
+        s.number++;
+        return new Step(s.question, s.number, quizLength);
+    }
+
+    // Gives an unanswered question back to the learner's schedule (session lock held)
+    private static void putBack(Session s) {
+        if (s.stage != Stage.QUIZ || s.answered)
+            return;
+        synchronized (s.scheduler) {
+            s.scheduler.putBack(s.question.id());
+        }
+        s.answered = true; // nothing outstanding any more
+    }
+
+    private Session session(long id) {
+        Session s = sessions.get(id);
+        if (s == null)
+            throw new IllegalArgumentException("No open session " + id);
+        return s;
+    }
+
+    private static void expect(Session s, Stage stage) {
+        if (s.stage != stage)
+            throw new IllegalStateException("Session is on " + s.stage + ", not " + stage);
     }
 }
 
 /**
  * QuizPanel presents MCQ quiz about zero gravity, manages scoring.
+ * The quiz itself runs in the app's SessionEngine (-Dquiz.length
+ * questions, default 3); this panel shows its steps and passes on the answers.
+ * The card, picture, labels and buttons are built once; each question is
+ * bound into them, and option buttons are added only when a question has
+ * more options than any before it (extra ones are hidden).
  * 
  * @param app Main app for navigation and updating score.
  */
-class QuizPanel extends StarCometBackgroundPanel {
-    private final String[][] questions = {
-            { "Why do astronauts feel weightless?",
-                    "Because they are free falling around Earth",
-                    "Because there is no gravity in space",
-                    "Because they are far from Earth",
-                    "Because the ship pushes them up" },
-            { "What is microgravity?",
-                    "Very small gravity is still present",
-                    "No gravity at all",
-                    "Gravity is reversed",
-                    "Gravity only on Mars" },
-            { "Why do astronauts have to exercise in space?",
-                    "To keep bones and muscles strong",
-                    "To float better",
-                    "For fun",
-                    "To use equipment" }
-    };
-    private final int[] correct = { 0, 0, 0 };
+class QuizPanel extends StarCometBackgroundPanel implements ScreenRegistry.InProgress {
+    private static final Font OPTION_FONT = new Font("Comic Sans MS", Font.PLAIN, 19);
+    private static final Color OPTION_BACKGROUND = new Color(35, 50, 90);
+    private static final Border OPTION_BORDER = BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(new Color(85, 157, 255), 2, true),
+            BorderFactory.createEmptyBorder(10, 18, 10, 18));
 
-    private int currentQuestion = 0;
-    private int score = 0;
-    private JPanel card;
-    private JLabel feedbackLabel;
-    private JButton[] optionButtons;
-    private JButton nextBtn;
+    static final String LESSON_NAME = "Zero Gravity";
+
+    private final ZeroGravityLessonApp app;
+    private final SessionEngine engine;
+    private final long session;
+
+    private SessionEngine.Step step;
+    private final JPanel card;
+    private final JLabel progressLabel;
+    private final JLabel questionLabel;
+    private final JLabel feedbackLabel;
+    private final JPanel optionBox;
+    private final List<JButton> optionButtons = new ArrayList<>();
+    private final List<Component> optionGaps = new ArrayList<>();
+    private final JButton nextBtn;
 
     public QuizPanel(ZeroGravityLessonApp app) {
+        this(app, app.getSessionEngine(), app.getSession());
+    }
+
+    /**
+     * @param engine  Runs the quiz; this panel only shows it.
+     * @param session The learner's session in the engine.
+     */
+    QuizPanel(ZeroGravityLessonApp app, SessionEngine engine, long session) {
         super(80, 8, 1100, 800);
+        this.app = app;
+        this.engine = engine;
+        this.session = session;
         setLayout(new BorderLayout());
 
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -714,39 +6058,20 @@ class QuizPanel extends StarCometBackgroundPanel {
         topPanel.add(UIUtils.createBackButton(app, ScreenNames.LESSON));
         add(topPanel, BorderLayout.NORTH);
 
-        showQuestion(app);
-    }
-
-    private void showQuestion(ZeroGravityLessonApp app) {
-        if (getComponentCount() > 1)
-            remove(1);
-
         card = new JPanel();
         card.setLayout(new BoxLayout(card, BoxLayout.Y_AXIS));
         card.setOpaque(false);
         card.setPreferredSize(new Dimension(550, 400));
         card.setMaximumSize(new Dimension(650, 600));
 
-        ImageIcon icon = new ImageIcon("solar.png");
-        Image img = icon.getImage();
-        int maxWidth = 350;
-        int imgWidth = icon.getIconWidth();
-        int imgHeight = icon.getIconHeight();
-
-        float scale = Math.min(1.0f, (float) maxWidth / imgWidth);
-        int newWidth = (int) (imgWidth * scale);
-        int newHeight = (int) (imgHeight * scale);
-
-        if (scale < 1.0f)
-            img = img.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
-
-        JLabel quizImgLabel = new JLabel(new ImageIcon(img));
+        BufferedImage img = AssetCache.shared().getFitted("solar.png", 350);
+        JLabel quizImgLabel = new JLabel(img != null ? new ImageIcon(img) : null);
         quizImgLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         card.add(Box.createVerticalStrut(8)); // space above
         card.add(quizImgLabel);
         card.add(Box.createVerticalStrut(20)); // space below
 
-        JLabel progressLabel = new JLabel(String.format("Question %d of %d", currentQuestion + 1, questions.length));
+        progressLabel = new JLabel();
         progressLabel.setFont(new Font("Comic Sans MS", Font.PLAIN, 18));
         progressLabel.setForeground(new Color(255, 232, 93));
         progressLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -754,8 +6079,7 @@ class QuizPanel extends StarCometBackgroundPanel {
 
         card.add(Box.createVerticalStrut(14));
 
-        JLabel questionLabel = new JLabel("<html><div style='text-align:center;'>" +
-                "<b>" + questions[currentQuestion][0] + "</b></div></html>");
+        questionLabel = new JLabel();
         questionLabel.setFont(new Font("Comic Sans MS", Font.BOLD, 24));
         questionLabel.setForeground(Color.WHITE);
         questionLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -764,23 +6088,11 @@ class QuizPanel extends StarCometBackgroundPanel {
 
         card.add(Box.createVerticalStrut(12));
 
-        optionButtons = new JButton[4];
-        for (int i = 0; i < 4; i++) {
-            optionButtons[i] = new JButton(questions[currentQuestion][i + 1]);
-            optionButtons[i].setFont(new Font("Comic Sans MS", Font.PLAIN, 19));
-            optionButtons[i].setFocusPainted(false);
-            optionButtons[i].setBackground(new Color(35, 50, 90));
-            optionButtons[i].setForeground(Color.WHITE);
-            optionButtons[i].setAlignmentX(Component.CENTER_ALIGNMENT);
-            optionButtons[i].setCursor(new Cursor(Cursor.HAND_CURSOR));
-            optionButtons[i].setBorder(BorderFactory.createCompoundBorder(
-                    BorderFactory.createLineBorder(new Color(85, 157, 255), 2, true),
-                    BorderFactory.createEmptyBorder(10, 18, 10, 18)));
-            int choice = i;
-            optionButtons[i].addActionListener(e -> handleAnswer(choice, app));
-            card.add(Box.createVerticalStrut(8));
-            card.add(optionButtons[i]);
-        }
+        optionBox = new JPanel();
+        optionBox.setLayout(new BoxLayout(optionBox, BoxLayout.Y_AXIS));
+        optionBox.setOpaque(false);
+        optionBox.setAlignmentX(Component.CENTER_ALIGNMENT);
+        card.add(optionBox);
         card.add(Box.createVerticalStrut(20));
 
         feedbackLabel = new JLabel(" ");
@@ -799,15 +6111,7 @@ class QuizPanel extends StarCometBackgroundPanel {
         nextBtn.setAlignmentX(Component.CENTER_ALIGNMENT);
         nextBtn.setBorder(BorderFactory.createEmptyBorder(12, 35, 12, 35));
         nextBtn.setVisible(false);
-        nextBtn.addActionListener(e -> {
-            currentQuestion++;
-            if (currentQuestion < questions.length) {
-                showQuestion(app);
-            } else {
-                app.setScore(score);
-                app.showScreen(ScreenNames.RESULT);
-            }
-        });
+        nextBtn.addActionListener(e -> next());
         card.add(Box.createVerticalStrut(12));
         card.add(nextBtn);
 
@@ -817,23 +6121,95 @@ class QuizPanel extends StarCometBackgroundPanel {
         scrollPane.getViewport().setOpaque(false);
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
-
         add(scrollPane, BorderLayout.CENTER);
-        revalidate();
-        repaint();
+
+        // Coming back after the results starts a new quiz
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()
+                    && engine.stage(session) == SessionEngine.Stage.RESULT)
+                start();
+        });
+        start();
+    }
+
+    private void start() {
+        step = engine.startQuiz(session);
+        if (step == null) {
+            questionLabel.setText("No questions for this lesson yet.");
+            return;
+        }
+        bindQuestion();
+    }
+
+    // Puts the step's question into the existing components; the setters repaint and re-layout only what changed
+    private void bindQuestion() {
+        QuestionBank.Question question = step.question();
+        int options = question.options().size();
+        progressLabel.setText(String.format("Question %d of %d", step.number(), step.total()));
+        questionLabel.setText("<html><div style='text-align:center;'>" +
+                "<b>" + question.text() + "</b></div></html>");
+        while (optionButtons.size() < options)
+            addOptionButton();
+        for (int i = 0; i < optionButtons.size(); i++) {
+            JButton btn = optionButtons.get(i);
+            boolean used = i < options;
+            if (used) {
+                btn.setText(question.options().get(i));
+                btn.setEnabled(true);
+            }
+            btn.setVisible(used);
+            optionGaps.get(i).setVisible(used);
+        }
+        feedbackLabel.setText(" ");
+        nextBtn.setVisible(false);
+    }
+
+    private void addOptionButton() {
+        int choice = optionButtons.size();
+        JButton btn = new JButton();
+        btn.setFont(OPTION_FONT);
+        btn.setFocusPainted(false);
+        btn.setBackground(OPTION_BACKGROUND);
+        btn.setForeground(Color.WHITE);
+        btn.setAlignmentX(Component.CENTER_ALIGNMENT);
+        btn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        btn.setBorder(OPTION_BORDER);
+        btn.addActionListener(e -> answer(choice));
+        Component gap = Box.createVerticalStrut(8);
+        optionBox.add(gap);
+        optionBox.add(btn);
+        optionGaps.add(gap);
+        optionButtons.add(btn);
     }
 
-    private void handleAnswer(int choice, ZeroGravityLessonApp app) {
+    void answer(int choice) {
         for (JButton btn : optionButtons)
             btn.setEnabled(false);
-        if (choice == correct[currentQuestion]) {
+        if (engine.answer(session, choice)) {
             feedbackLabel.setText("✅ Correct!");
-            score++;
         } else {
             feedbackLabel.setText("❌ Oops! That's not right.");
         }
         nextBtn.setVisible(true);
     }
+
+    void next() {
+        step = engine.next(session); // saves the score once the quiz is over
+        if (step != null)
+            bindQuestion();
+        else
+            app.showScreen(ScreenNames.RESULT);
+    }
+
+    QuestionBank.Question getQuestion() {
+        return step.question();
+    }
+
+    // A rebuilt panel would start the quiz over
+    @Override
+    public boolean inProgress() {
+        return engine.stage(session) == SessionEngine.Stage.QUIZ;
+    }
 }
 
 /**
@@ -887,28 +6263,657 @@ class ResultPanel extends StarCometBackgroundPanel {
     }
 
     private void updateResult(ZeroGravityLessonApp app) {
-        int score = app.getScore();
+        int score = app.getScore(), total = app.getTotal();
         String message;
         String imgPath;
-        if (score == 3) {
-            message = "<html><center>You scored 3/3!<br>Excellent!<br>You earned the <b>Zero-G Expert</b> badge! 🚀</center></html>";
+        // Medals by share of right answers: all, two thirds, one third (3/3, 2/3, 1/3 on the usual quiz)
+        if (score == total && total > 0) {
+            message = "<html><center>You scored " + score + "/" + total + "!<br>Excellent!<br>You earned the <b>Zero-G Expert</b> badge! 🚀</center></html>";
             imgPath = "gold.png";
-        } else if (score == 2) {
-            message = "<html><center>You scored 2/3.<br>Great job!<br>You earned the <b>Silver Medal</b>!</center></html>";
+        } else if (score * 3 >= total * 2 && score > 0) {
+            message = "<html><center>You scored " + score + "/" + total + ".<br>Great job!<br>You earned the <b>Silver Medal</b>!</center></html>";
             imgPath = "silver.png";
-        } else if (score == 1) {
-            message = "<html><center>You scored 1/3.<br>Good try!<br>You earned the <b>Bronze Medal</b>!</center></html>";
+        } else if (score * 3 >= total && score > 0) {
+            message = "<html><center>You scored " + score + "/" + total + ".<br>Good try!<br>You earned the <b>Bronze Medal</b>!</center></html>";
             imgPath = "bronze.png";
         } else {
-            message = "<html><center>You scored 0/3.<br>Try again to earn a medal!</center></html>";
+            message = "<html><center>You scored " + score + "/" + total + ".<br>Try again to earn a medal!</center></html>";
             imgPath = "fail.png";
         }
         resultLabel.setText(message);
 
-        // Load and scale medal image
-        ImageIcon icon = new ImageIcon(imgPath);
-        Image img = icon.getImage().getScaledInstance(130, 130, Image.SCALE_SMOOTH);
-        medalLabel.setIcon(new ImageIcon(img));
+        // Medal image, decoded and scaled once
+        medalLabel.setIcon(AssetCache.shared().icon(imgPath, 130, 130));
         revalidate();
     }
-}
\ No newline at end of file
+}
+/**
+ * Headless 2D physics for the sandbox: bodies that attract each other, fall
+ * under a selectable gravity, bounce off the walls and collide. Mutual
+ * attraction uses a Barnes-Hut quadtree (O(n log n)); collisions use a
+ * uniform spatial hash. Forces and integration are split across a
+ * fork-join pool once there are enough bodies; every body's result only
+ * depends on the tree, so a run is bit-for-bit the same whatever the pool.
+ * Positions are in pixels, time in seconds.
+ * 
+ * @param width  World width.
+ * @param height World height.
+ * @param pool   Pool for the parallel phases.
+ */
+class PhysicsWorld {
+    /** Background gravity; 50 px stand in for one metre. */
+    enum GravityMode {
+        EARTH(9.81f * 50), MOON(1.62f * 50), ORBIT(0);
+
+        final float pull; // px/s^2, downwards
+
+        GravityMode(float pull) {
+            this.pull = pull;
+        }
+    }
+
+    static final int PARALLEL_THRESHOLD = Integer.getInteger("sandbox.parallelThreshold", 1024);
+    private static final int CHUNK = 512;
+    private static final float THETA = 0.7f; // Barnes-Hut opening angle
+    private static final float SOFTENING = 4f; // px, keeps close encounters finite
+    private static final float G = 1500f; // mutual attraction, px^3 / (mass s^2)
+    private static final float RESTITUTION = 0.6f, WALL_RESTITUTION = 0.5f;
+    private static final float MIN_HALF = 0.25f; // quadtree cells stop splitting below this
+
+    private final ForkJoinPool pool;
+    private float width, height;
+    private GravityMode mode = GravityMode.ORBIT;
+
+    // Bodies, structure of arrays
+    private int count = 0;
+    private float[] x = new float[256], y = new float[256], vx = new float[256], vy = new float[256];
+    private float[] ax = new float[256], ay = new float[256], mass = new float[256], radius = new float[256];
+    private float maxRadius = 1;
+
+    // Quadtree nodes, rebuilt every step into reused arrays
+    private int nodes = 0;
+    private float[] nCx = new float[1024], nCy = new float[1024], nHalf = new float[1024];
+    private float[] nMass = new float[1024], nMx = new float[1024], nMy = new float[1024];
+    private int[] nChild = new int[1024], nBody = new int[1024], nCount = new int[1024];
+    // What the force walk reads, packed per node: centre of mass x, y, mass, and the
+    // squared distance beyond which the node counts as one point ((size / theta)^2)
+    private float[] walk = new float[4096];
+
+    // Spatial hash (counting sort of bodies into cells)
+    private int[] cellOf = new int[256], cellStart = new int[0], cellItems = new int[256];
+
+    private long steps = 0, collisions = 0;
+
+    public PhysicsWorld(float width, float height, ForkJoinPool pool) {
+        this.width = width;
+        this.height = height;
+        this.pool = pool;
+    }
+
+    public PhysicsWorld(float width, float height) {
+        this(width, height, ForkJoinPool.commonPool());
+    }
+
+    /** Adds a body; its mass goes with its area. @return Its index. */
+    public int addBody(float px, float py, float pvx, float pvy, float r) {
+        if (count == x.length) {
+            int n = count * 2;
+            x = Arrays.copyOf(x, n);
+            y = Arrays.copyOf(y, n);
+            vx = Arrays.copyOf(vx, n);
+            vy = Arrays.copyOf(vy, n);
+            ax = Arrays.copyOf(ax, n);
+            ay = Arrays.copyOf(ay, n);
+            mass = Arrays.copyOf(mass, n);
+            radius = Arrays.copyOf(radius, n);
+        }
+        x[count] = px;
+        y[count] = py;
+        vx[count] = pvx;
+        vy[count] = pvy;
+        radius[count] = r;
+        mass[count] = r * r;
+        maxRadius = Math.max(maxRadius, r);
+        return count++;
+    }
+
+    /** Scatters n bodies at random (from a seed, so runs can be repeated). */
+    public void addRandomBodies(int n, float minRadius, float maxRadius, long seed) {
+        Random rand = new Random(seed);
+        for (int i = 0; i < n; i++)
+            addBody(rand.nextFloat() * width, rand.nextFloat() * height, (rand.nextFloat() - 0.5f) * 40,
+                    (rand.nextFloat() - 0.5f) * 40, minRadius + rand.nextFloat() * (maxRadius - minRadius));
+    }
+
+    public void clear() {
+        count = 0;
+        maxRadius = 1;
+    }
+
+    public void resize(float width, float height) {
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+    }
+
+    public void setGravityMode(GravityMode mode) {
+        this.mode = mode;
+    }
+
+    public GravityMode getGravityMode() {
+        return mode;
+    }
+
+    /** Advances the world by dt seconds. */
+    public void step(float dt) {
+        steps++;
+        if (count == 0)
+            return;
+        buildTree();
+        if (count < PARALLEL_THRESHOLD)
+            forcesAndMove(0, count, dt);
+        else
+            pool.invoke(new Chunk(0, count, dt));
+        collide();
+    }
+
+    // Phase 1: quadtree over all bodies, with mass and mass-weighted position per node
+    private void buildTree() {
+        float minX = x[0], maxX = x[0], minY = y[0], maxY = y[0];
+        for (int i = 1; i < count; i++) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        nodes = 0;
+        newNode((minX + maxX) / 2, (minY + maxY) / 2, Math.max(maxX - minX, maxY - minY) / 2 + 1);
+        for (int i = 0; i < count; i++)
+            insert(i);
+        if (walk.length < nodes * 4)
+            walk = new float[nCx.length * 4];
+        for (int n = 0; n < nodes; n++) {
+            float size = 2 * nHalf[n];
+            walk[4 * n] = nMass[n] > 0 ? nMx[n] / nMass[n] : 0;
+            walk[4 * n + 1] = nMass[n] > 0 ? nMy[n] / nMass[n] : 0;
+            walk[4 * n + 2] = nMass[n];
+            walk[4 * n + 3] = nChild[n] < 0 ? 0 : size * size / (THETA * THETA);
+        }
+    }
+
+    private int newNode(float cx, float cy, float half) {
+        if (nodes == nCx.length) {
+            int n = nodes * 2;
+            nCx = Arrays.copyOf(nCx, n);
+            nCy = Arrays.copyOf(nCy, n);
+            nHalf = Arrays.copyOf(nHalf, n);
+            nMass = Arrays.copyOf(nMass, n);
+            nMx = Arrays.copyOf(nMx, n);
+            nMy = Arrays.copyOf(nMy, n);
+            nChild = Arrays.copyOf(nChild, n);
+            nBody = Arrays.copyOf(nBody, n);
+            nCount = Arrays.copyOf(nCount, n);
+        }
+        int id = nodes++;
+        nCx[id] = cx;
+        nCy[id] = cy;
+        nHalf[id] = half;
+        nMass[id] = nMx[id] = nMy[id] = 0;
+        nChild[id] = -1;
+        nBody[id] = -1;
+        nCount[id] = 0;
+        return id;
+    }
+
+    private void insert(int i) {
+        float px = x[i], py = y[i], m = mass[i];
+        int n = 0;
+        while (true) {
+            int had = nCount[n]++;
+            nMass[n] += m;
+            nMx[n] += m * px;
+            nMy[n] += m * py;
+            if (had == 0) {
+                nBody[n] = i;
+                return;
+            }
+            if (nChild[n] < 0) {
+                if (nHalf[n] < MIN_HALF) {
+                    nBody[n] = -1; // bodies (nearly) on top of each other: keep them as one lump
+                    return;
+                }
+                // Split the leaf and move its body down a level
+                int b = nBody[n];
+                nBody[n] = -1;
+                float h = nHalf[n] / 2;
+                int first = newNode(nCx[n] - h, nCy[n] - h, h);
+                newNode(nCx[n] + h, nCy[n] - h, h);
+                newNode(nCx[n] - h, nCy[n] + h, h);
+                newNode(nCx[n] + h, nCy[n] + h, h);
+                nChild[n] = first;
+                int q = first + quadrant(n, x[b], y[b]);
+                nCount[q] = 1;
+                nBody[q] = b;
+                nMass[q] = mass[b];
+                nMx[q] = mass[b] * x[b];
+                nMy[q] = mass[b] * y[b];
+            }
+            n = nChild[n] + quadrant(n, px, py);
+        }
+    }
+
+    private int quadrant(int n, float px, float py) {
+        return (px >= nCx[n] ? 1 : 0) + (py >= nCy[n] ? 2 : 0);
+    }
+
+    // Phase 2: per body, attraction from the tree plus background gravity, then move
+    private void forcesAndMove(int from, int to, float dt) {
+        int[] stack = new int[256];
+        float pull = mode.pull;
+        for (int i = from; i < to; i++) {
+            stack = attract(i, stack);
+            ay[i] += pull;
+            // Semi-implicit Euler, then the walls
+            float px = x[i], py = y[i], r = radius[i];
+            float nvx = vx[i] + ax[i] * dt, nvy = vy[i] + ay[i] * dt;
+            float nx = px + nvx * dt, ny = py + nvy * dt;
+            if (nx < r) {
+                nx = r;
+                nvx = -nvx * WALL_RESTITUTION;
+            } else if (nx > width - r) {
+                nx = width - r;
+                nvx = -nvx * WALL_RESTITUTION;
+            }
+            if (ny < r) {
+                ny = r;
+                nvy = -nvy * WALL_RESTITUTION;
+            } else if (ny > height - r) {
+                ny = height - r;
+                nvy = -nvy * WALL_RESTITUTION;
+            }
+            vx[i] = nvx;
+            vy[i] = nvy;
+            // Positions are only read from the tree during this phase, so writing them is safe
+            x[i] = nx;
+            y[i] = ny;
+        }
+    }
+
+    // Walks the tree for body i and stores its attraction in ax/ay; returns the (maybe grown) stack
+    private int[] attract(int i, int[] stack) {
+        float px = x[i], py = y[i], fx = 0, fy = 0;
+        int sp = 0;
+        stack[sp++] = 0;
+        while (sp > 0) {
+            int n = stack[--sp];
+            float m = walk[4 * n + 2];
+            if (m == 0 || nBody[n] == i)
+                continue;
+            float dx = walk[4 * n] - px, dy = walk[4 * n + 1] - py;
+            float d2 = dx * dx + dy * dy + SOFTENING * SOFTENING;
+            if (d2 > walk[4 * n + 3]) { // leaves have 0 here, so they always count as a point
+                float inv = (float) (1 / Math.sqrt(d2));
+                float f = G * m * inv * inv * inv;
+                fx += f * dx;
+                fy += f * dy;
+            } else {
+                if (sp + 4 > stack.length)
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                int c = nChild[n];
+                stack[sp++] = c;
+                stack[sp++] = c + 1;
+                stack[sp++] = c + 2;
+                stack[sp++] = c + 3;
+            }
+        }
+        ax[i] = fx;
+        ay[i] = fy;
+        return stack;
+    }
+
+    // Phase 3: bucket bodies into cells two radii wide, then test each cell against itself and
+    // the four neighbours after it, resolving overlaps in a fixed order
+    private void collide() {
+        float cell = 2 * maxRadius;
+        int cols = Math.max(1, (int) (width / cell) + 1), rows = Math.max(1, (int) (height / cell) + 1);
+        int cells = cols * rows;
+        if (cellStart.length < cells + 1)
+            cellStart = new int[cells + 1];
+        else
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        if (cellOf.length < count) {
+            cellOf = new int[x.length];
+            cellItems = new int[x.length];
+        }
+        for (int i = 0; i < count; i++) {
+            int cx = Math.min(cols - 1, Math.max(0, (int) (x[i] / cell)));
+            int cy = Math.min(rows - 1, Math.max(0, (int) (y[i] / cell)));
+            cellOf[i] = cy * cols + cx;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++)
+            cellStart[c + 1] += cellStart[c];
+        for (int i = 0; i < count; i++)
+            cellItems[cellStart[cellOf[i]]++] = i;
+        // Filling moved each cellStart[c] to the end of cell c; shift back so it is the start again
+        for (int c = cells; c > 0; c--)
+            cellStart[c] = cellStart[c - 1];
+        cellStart[0] = 0;
+
+        for (int cy = 0; cy < rows; cy++) {
+            for (int cx = 0; cx < cols; cx++) {
+                int c = cy * cols + cx;
+                for (int a = cellStart[c]; a < cellStart[c + 1]; a++) {
+                    int i = cellItems[a];
+                    for (int b = a + 1; b < cellStart[c + 1]; b++)
+                        resolve(i, cellItems[b]);
+                    if (cx + 1 < cols)
+                        resolveAgainstCell(i, c + 1);
+                    if (cy + 1 < rows) {
+                        if (cx > 0)
+                            resolveAgainstCell(i, c + cols - 1);
+                        resolveAgainstCell(i, c + cols);
+                        if (cx + 1 < cols)
+                            resolveAgainstCell(i, c + cols + 1);
+                    }
+                }
+            }
+        }
+        // Pushing bodies apart can shove one in a pile through a wall; put it back
+        for (int i = 0; i < count; i++) {
+            float r = radius[i];
+            x[i] = Math.max(r, Math.min(x[i], width - r));
+            y[i] = Math.max(r, Math.min(y[i], height - r));
+        }
+    }
+
+    private void resolveAgainstCell(int i, int c) {
+        for (int b = cellStart[c]; b < cellStart[c + 1]; b++)
+            resolve(i, cellItems[b]);
+    }
+
+    private void resolve(int i, int j) {
+        float dx = x[j] - x[i], dy = y[j] - y[i];
+        float min = radius[i] + radius[j];
+        float d2 = dx * dx + dy * dy;
+        if (d2 >= min * min)
+            return;
+        collisions++;
+        float d = (float) Math.sqrt(d2);
+        float nx, ny;
+        if (d > 1e-6f) {
+            nx = dx / d;
+            ny = dy / d;
+        } else {
+            nx = 1; // exactly on top of each other: push apart sideways
+            ny = 0;
+        }
+        float mi = mass[i], mj = mass[j], total = mi + mj;
+        // Move apart in proportion to the other body's mass
+        float overlap = min - d;
+        x[i] -= nx * overlap * mj / total;
+        y[i] -= ny * overlap * mj / total;
+        x[j] += nx * overlap * mi / total;
+        y[j] += ny * overlap * mi / total;
+        // Bounce if they are moving towards each other
+        float approach = (vx[j] - vx[i]) * nx + (vy[j] - vy[i]) * ny;
+        if (approach >= 0)
+            return;
+        float impulse = -(1 + RESTITUTION) * approach / total;
+        vx[i] -= impulse * mj * nx;
+        vy[i] -= impulse * mj * ny;
+        vx[j] += impulse * mi * nx;
+        vy[j] += impulse * mi * ny;
+    }
+
+    public int getBodyCount() {
+        return count;
+    }
+
+    public float getX(int i) {
+        return x[i];
+    }
+
+    public float getY(int i) {
+        return y[i];
+    }
+
+    public float getRadius(int i) {
+        return radius[i];
+    }
+
+    /** @return {steps run, collisions resolved, tree nodes in the last step}. */
+    public long[] getCounts() {
+        return new long[] { steps, collisions, nodes };
+    }
+
+    /** @return A hash of every body's position and velocity bits, to compare runs. */
+    public long stateHash() {
+        long h = 1125899906842597L;
+        for (int i = 0; i < count; i++) {
+            h = 31 * h + Float.floatToIntBits(x[i]);
+            h = 31 * h + Float.floatToIntBits(y[i]);
+            h = 31 * h + Float.floatToIntBits(vx[i]);
+            h = 31 * h + Float.floatToIntBits(vy[i]);
+        }
+        return h;
+    }
+
+    /** Attraction on body i summed over every other body directly (for checking the tree). */
+    float[] exactAttraction(int i) {
+        float fx = 0, fy = 0;
+        for (int j = 0; j < count; j++) {
+            if (j == i)
+                continue;
+            float dx = x[j] - x[i], dy = y[j] - y[i];
+            float d2 = dx * dx + dy * dy + SOFTENING * SOFTENING;
+            float inv = (float) (1 / Math.sqrt(d2));
+            float f = G * mass[j] * inv * inv * inv;
+            fx += f * dx;
+            fy += f * dy;
+        }
+        return new float[] { fx, fy };
+    }
+
+    /** Attraction on body i from the tree, at the current positions (for checking the tree). */
+    float[] treeAttraction(int i) {
+        buildTree();
+        attract(i, new int[256]);
+        return new float[] { ax[i], ay[i] };
+    }
+
+    /** Splits forces-and-move across the pool in halves until a chunk is small enough. */
+    private class Chunk extends RecursiveAction {
+        private final int from, to;
+        private final float dt;
+
+        Chunk(int from, int to, float dt) {
+            this.from = from;
+            this.to = to;
+            this.dt = dt;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                forcesAndMove(from, to, dt);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Chunk(from, mid, dt), new Chunk(mid, to, dt));
+        }
+    }
+}
+
+/**
+ * SandboxPanel lets kids drop bodies into a box and watch them attract
+ * each other, float and bump together under Earth, Moon or orbit gravity.
+ * Click to drop a body, drag to throw one. Physics runs in PhysicsWorld
+ * with fixed 1/60 s steps; the panel draws at about 60 fps from its own
+ * AnimationClock, and only while it is showing.
+ * 
+ * @param app Main app for navigation.
+ */
+class SandboxPanel extends JPanel {
+    private static final float STEP = 1 / 60f;
+    private static final long STEP_NANOS = (long) (STEP * 1e9);
+    private static final int MAX_STEPS_PER_FRAME = 4; // past this, let the sandbox run slow instead of spiralling
+    private static final int MAX_BODIES = Integer.getInteger("sandbox.maxBodies", 20000);
+    private static final Color[] BODY_COLORS = { new Color(255, 226, 87), new Color(120, 200, 255),
+            new Color(255, 140, 120), new Color(170, 255, 170), new Color(220, 170, 255) };
+
+    private final PhysicsWorld world = new PhysicsWorld(1000, 620);
+    private final AnimationClock clock = new AnimationClock(16);
+    private final Runnable tick = this::tick;
+    private final Random rand = new Random();
+    private final LatencyHistogram stepTimes = new LatencyHistogram();
+    private final JPanel arena;
+    private final JLabel statsLabel;
+    private final Map<PhysicsWorld.GravityMode, JButton> modeButtons = new LinkedHashMap<>();
+
+    private long lastTickNanos = 0, accumulatedNanos = 0, lastStatsNanos = 0;
+    private int framesSinceStats = 0;
+    private Point dragStart, dragNow;
+
+    public SandboxPanel(ZeroGravityLessonApp app) {
+        setLayout(new BorderLayout());
+        setBackground(Color.BLACK);
+
+        JPanel topBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        topBar.setOpaque(false);
+        topBar.add(UIUtils.createBackButton(app, ScreenNames.LESSON));
+        addModeButton(topBar, "🌍 Earth", PhysicsWorld.GravityMode.EARTH);
+        addModeButton(topBar, "🌙 Moon", PhysicsWorld.GravityMode.MOON);
+        addModeButton(topBar, "🛰 Orbit", PhysicsWorld.GravityMode.ORBIT);
+        topBar.add(makeButton("+200", e -> addBodies(200)));
+        topBar.add(makeButton("Clear", e -> world.clear()));
+        statsLabel = new JLabel(" ");
+        statsLabel.setFont(new Font("Comic Sans MS", Font.PLAIN, 14));
+        statsLabel.setForeground(Color.LIGHT_GRAY);
+        topBar.add(statsLabel);
+        add(topBar, BorderLayout.NORTH);
+        selectMode(PhysicsWorld.GravityMode.ORBIT);
+
+        arena = new JPanel() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                paintBodies((Graphics2D) g);
+            }
+        };
+        arena.setBackground(Color.BLACK);
+        arena.setCursor(new Cursor(Cursor.CROSSHAIR_CURSOR));
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStart = dragNow = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                dragNow = e.getPoint();
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (dragStart == null)
+                    return;
+                // Throw speed follows the drag: three times its length per second
+                float vx = (e.getX() - dragStart.x) * 3, vy = (e.getY() - dragStart.y) * 3;
+                if (world.getBodyCount() < MAX_BODIES)
+                    world.addBody(dragStart.x, dragStart.y, vx, vy, 6 + rand.nextFloat() * 6);
+                dragStart = dragNow = null;
+            }
+        };
+        arena.addMouseListener(mouse);
+        arena.addMouseMotionListener(mouse);
+        arena.addComponentListener(new ComponentAdapter() {
+            public void componentResized(ComponentEvent evt) {
+                world.resize(arena.getWidth(), arena.getHeight());
+            }
+        });
+        add(arena, BorderLayout.CENTER);
+
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                if (isShowing()) {
+                    lastTickNanos = 0;
+                    clock.subscribe(tick);
+                } else {
+                    clock.unsubscribe(tick);
+                }
+            }
+        });
+        addBodies(60);
+    }
+
+    private JButton makeButton(String text, ActionListener action) {
+        JButton button = new JButton(text);
+        button.setFont(new Font("Comic Sans MS", Font.BOLD, 16));
+        button.setBackground(new Color(60, 60, 60));
+        button.setForeground(Color.WHITE);
+        button.setFocusPainted(false);
+        button.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        button.addActionListener(action);
+        return button;
+    }
+
+    private void addModeButton(JPanel bar, String text, PhysicsWorld.GravityMode mode) {
+        JButton button = makeButton(text, e -> selectMode(mode));
+        modeButtons.put(mode, button);
+        bar.add(button);
+    }
+
+    private void selectMode(PhysicsWorld.GravityMode mode) {
+        world.setGravityMode(mode);
+        modeButtons.forEach((m, b) -> b.setBackground(m == mode ? new Color(45, 136, 255) : new Color(60, 60, 60)));
+    }
+
+    private void addBodies(int n) {
+        world.addRandomBodies(Math.min(n, MAX_BODIES - world.getBodyCount()), 2, 6, rand.nextLong());
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        accumulatedNanos += lastTickNanos == 0 ? STEP_NANOS : now - lastTickNanos;
+        lastTickNanos = now;
+        int steps = 0;
+        while (accumulatedNanos >= STEP_NANOS && steps < MAX_STEPS_PER_FRAME) {
+            long start = System.nanoTime();
+            world.step(STEP);
+            stepTimes.recordNanos(System.nanoTime() - start);
+            accumulatedNanos -= STEP_NANOS;
+            steps++;
+        }
+        if (steps == MAX_STEPS_PER_FRAME)
+            accumulatedNanos = 0;
+        arena.repaint();
+
+        framesSinceStats++;
+        if (now - lastStatsNanos >= 500_000_000L) {
+            double fps = framesSinceStats * 1e9 / (now - lastStatsNanos);
+            statsLabel.setText(String.format("Bodies: %d   Step p50: %.1f ms   %.0f fps", world.getBodyCount(),
+                    stepTimes.percentileMillis(50), fps));
+            lastStatsNanos = now;
+            framesSinceStats = 0;
+        }
+    }
+
+    private void paintBodies(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        for (int i = 0, n = world.getBodyCount(); i < n; i++) {
+            float r = world.getRadius(i);
+            g.setColor(BODY_COLORS[(int) r % BODY_COLORS.length]);
+            g.fillOval(Math.round(world.getX(i) - r), Math.round(world.getY(i) - r), Math.round(2 * r),
+                    Math.round(2 * r));
+        }
+        if (dragStart != null && dragNow != null) {
+            g.setColor(Color.WHITE);
+            g.drawLine(dragStart.x, dragStart.y, dragNow.x, dragNow.y);
+        }
+    }
+
+    /** @return Physics step times so far. */
+    public LatencyHistogram getStepTimes() {
+        return stepTimes;
+    }
+}
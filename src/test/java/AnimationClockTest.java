@@ -0,0 +1,132 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.Callable;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+/** One timer for every animation: it runs while anyone is subscribed, and each tick reaches them all. */
+class AnimationClockTest {
+    @Test
+    void theTimerRunsFromTheFirstSubscriberToTheLast() throws Exception {
+        AnimationClock clock = new AnimationClock(5);
+        Runnable a = () -> {
+        }, b = () -> {
+        };
+        onEdt(() -> {
+            assertFalse(clock.isRunning());
+            clock.subscribe(a);
+            clock.subscribe(a); // once is enough
+            assertEquals(1, clock.getSubscriberCount());
+            assertTrue(clock.isRunning());
+            clock.subscribe(b);
+            clock.unsubscribe(a);
+            assertTrue(clock.isRunning(), "b still subscribed");
+            clock.unsubscribe(a); // not subscribed any more: nothing happens
+            assertEquals(1, clock.getSubscriberCount());
+            clock.unsubscribe(b);
+            assertEquals(0, clock.getSubscriberCount());
+            assertFalse(clock.isRunning());
+            return null;
+        });
+        long ticks = onEdt(clock::getTickCount);
+        Thread.sleep(100);
+        assertEquals(ticks, (long) onEdt(clock::getTickCount), "no ticks once stopped");
+    }
+
+    @Test
+    void oneTickReachesEverySubscriber() throws Exception {
+        AnimationClock clock = new AnimationClock(5);
+        int[] runs = new int[100];
+        Runnable[] tasks = new Runnable[runs.length];
+        onEdt(() -> {
+            for (int i = 0; i < tasks.length; i++) {
+                int n = i;
+                tasks[i] = () -> runs[n]++;
+                clock.subscribe(tasks[i]);
+            }
+            return null;
+        });
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (onEdt(clock::getTickCount) < 5) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+        long ticks = onEdt(() -> {
+            for (Runnable task : tasks)
+                clock.unsubscribe(task);
+            return clock.getTickCount();
+        });
+        for (int i = 0; i < runs.length; i++)
+            assertEquals(ticks, runs[i], "subscriber " + i);
+    }
+
+    @Test
+    void aTaskMayUnsubscribeItselfMidTick() throws Exception {
+        AnimationClock clock = new AnimationClock(5);
+        int[] runs = new int[2];
+        Runnable[] once = new Runnable[1];
+        Runnable always = () -> runs[1]++;
+        once[0] = () -> {
+            runs[0]++;
+            clock.unsubscribe(once[0]);
+        };
+        onEdt(() -> {
+            clock.subscribe(once[0]);
+            clock.subscribe(always);
+            return null;
+        });
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (onEdt(clock::getTickCount) < 3) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+        long ticks = onEdt(() -> {
+            clock.unsubscribe(always);
+            return clock.getTickCount();
+        });
+        assertEquals(1, runs[0]);
+        assertEquals(ticks, runs[1], "the others still ran on the tick it left in");
+    }
+
+    @Test
+    void aHiddenPanelUnsubscribes() throws Exception {
+        AnimationClock clock = AnimationClock.shared();
+        onEdt(() -> {
+            StarCometBackgroundPanel panel = new StarCometBackgroundPanel(10, 1, 400, 300);
+            assertEquals(0, clock.getSubscriberCount(), "not showing yet");
+            panel.addNotify(); // a lightweight peer, so it shows without a window
+            assertEquals(1, clock.getSubscriberCount());
+            assertTrue(clock.isRunning());
+            panel.setVisible(false);
+            assertEquals(0, clock.getSubscriberCount());
+            assertFalse(clock.isRunning());
+            panel.setVisible(true);
+            assertEquals(1, clock.getSubscriberCount(), "back on screen");
+            panel.removeNotify();
+            assertEquals(0, clock.getSubscriberCount());
+            assertFalse(clock.isRunning());
+            return null;
+        });
+    }
+
+    private static <T> T onEdt(Callable<T> task) throws Exception {
+        Object[] result = new Object[1];
+        Exception[] error = new Exception[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result[0] = task.call();
+            } catch (Exception e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null)
+            throw error[0];
+        @SuppressWarnings("unchecked")
+        T t = (T) result[0];
+        return t;
+    }
+}
@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class AssetCacheTest {
+    private static String wide, tiny;
+
+    @BeforeAll
+    static void writeImages() throws Exception {
+        Path dir = Files.createTempDirectory("assets");
+        wide = png(dir.resolve("wide.png").toFile(), 3000, 1500, Color.RED);
+        tiny = png(dir.resolve("tiny.png").toFile(), 40, 20, Color.BLUE);
+    }
+
+    @Test
+    void loadsFromTheClasspath() {
+        // Tests run in target/test-run, so only the classpath has the lesson images
+        AssetCache cache = new AssetCache();
+        BufferedImage medal = cache.get("bronze.png", 64, 64);
+        assertNotNull(medal);
+        assertEquals(64, medal.getWidth());
+        assertEquals(64, medal.getHeight());
+        assertNotNull(cache.sourceSize("bronze.png"));
+    }
+
+    @Test
+    void decodesEachSizeOnce() {
+        AssetCache cache = new AssetCache();
+        BufferedImage first = cache.get(wide, 300, 150);
+        assertSame(first, cache.get(wide, 300, 150));
+        assertArrayEquals(new long[] { 1, 1, 0 }, cache.getCounts(), "{hits, decodes, evicted}");
+        cache.get(wide, 60, 30);
+        assertEquals(2, cache.getCounts()[1], "another size is another decode");
+        assertEquals((300 * 150 + 60 * 30) * 4L, cache.getFootprintBytes());
+    }
+
+    @Test
+    void aMissingSizeFollowsTheAspectRatio() {
+        AssetCache cache = new AssetCache();
+        assertEquals(new Dimension(3000, 1500), cache.sourceSize(wide));
+        BufferedImage image = cache.get(wide, 100, 0);
+        assertEquals(50, image.getHeight());
+        image = cache.get(wide, 0, 30);
+        assertEquals(60, image.getWidth());
+        image = cache.get(tiny, 0, 0);
+        assertEquals(40, image.getWidth(), "both missing: the original size");
+    }
+
+    @Test
+    void fittedImagesAreNeverEnlarged() {
+        AssetCache cache = new AssetCache();
+        assertEquals(40, cache.getFitted(tiny, 400).getWidth());
+        assertEquals(400, cache.getFitted(wide, 400).getWidth());
+    }
+
+    @Test
+    void subsampledDecodeKeepsTheContent() {
+        BufferedImage image = new AssetCache().get(wide, 100, 50);
+        assertEquals(Color.RED.getRGB(), image.getRGB(50, 25));
+    }
+
+    @Test
+    void missingImagesGiveNull() {
+        AssetCache cache = new AssetCache();
+        assertNull(cache.get("no-such-image.png", 10, 10));
+        assertNull(cache.get("no-such-image.png", 10, 0));
+        assertNull(cache.sourceSize("no-such-image.png"));
+        assertNull(cache.icon("no-such-image.png", 10, 10));
+    }
+
+    @Test
+    void concurrentRequestsShareOneDecode() throws Exception {
+        AssetCache cache = new AssetCache();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<CompletableFuture<BufferedImage>> loads = new ArrayList<>();
+            for (int i = 0; i < 16; i++)
+                loads.add(CompletableFuture.supplyAsync(() -> cache.get(wide, 200, 100), pool));
+            BufferedImage first = loads.get(0).get();
+            for (CompletableFuture<BufferedImage> load : loads)
+                assertSame(first, load.get());
+            assertEquals(1, cache.getCounts()[1]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void scaleHitsTheExactTargetSize() {
+        BufferedImage source = new BufferedImage(1000, 10, BufferedImage.TYPE_INT_RGB);
+        BufferedImage scaled = AssetCache.scale(source, 7, 40); // down in steps one way, up the other
+        assertEquals(7, scaled.getWidth());
+        assertEquals(40, scaled.getHeight());
+    }
+
+    private static String png(File file, int w, int h, Color color) throws Exception {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, w, h);
+        g.dispose();
+        ImageIO.write(image, "png", file);
+        return file.getAbsolutePath();
+    }
+}
@@ -0,0 +1,213 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The chat history log on disk: restoring the newest messages, cutting off
+ * what a crash leaves at the end, rolling over to new segments and the
+ * sparse index that lets a restore skip the rest of a segment.
+ */
+class ChatHistoryLogTest {
+    private static final long BIG = 4 << 20; // one segment for everything
+    private static final int RECORD_HEADER = 8; // length and CRC
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void restoresTheLastMessagesAfterAReopen() throws IOException {
+        ChatHistoryLog log = new ChatHistoryLog(dir, BIG);
+        write(log, 0, 300);
+        assertEquals(texts(290, 300), texts(log.lastMessages(10).join()), "before closing");
+        log.close();
+
+        ChatHistoryLog reopened = new ChatHistoryLog(dir, BIG);
+        List<ChatMessage> last = reopened.lastMessages(10).join();
+        assertEquals(texts(290, 300), texts(last));
+        assertEquals(299, last.get(9).time);
+        assertEquals("Avatar", last.get(9).speaker);
+        assertEquals(300, reopened.lastMessages(1000).join().size(), "asked for more than there are");
+        assertEquals(List.of(), reopened.lastMessages(0).join());
+        write(reopened, 300, 305);
+        assertEquals(texts(295, 305), texts(reopened.lastMessages(10).join()), "appends go after the old ones");
+        reopened.close();
+    }
+
+    @Test
+    void aTornRecordAtTheEndIsCutOff() throws IOException {
+        ChatHistoryLog log = new ChatHistoryLog(dir, BIG);
+        write(log, 0, 100);
+        log.close();
+        Path segment = onlySegment();
+        long intact = Files.size(segment);
+        try (RandomAccessFile raf = new RandomAccessFile(segment.toFile(), "rw")) {
+            raf.seek(intact);
+            raf.writeInt(40); // a header promising 40 bytes, and only some of them
+            raf.writeInt(0);
+            raf.write(new byte[13]);
+        }
+
+        ChatHistoryLog reopened = new ChatHistoryLog(dir, BIG);
+        assertEquals(texts(95, 100), texts(reopened.lastMessages(5).join()));
+        assertEquals(intact, Files.size(segment), "torn bytes truncated");
+        write(reopened, 100, 101);
+        reopened.close();
+        ChatHistoryLog again = new ChatHistoryLog(dir, BIG);
+        assertEquals(texts(98, 101), texts(again.lastMessages(3).join()),
+                "the next record starts where the torn one did");
+        again.close();
+    }
+
+    @Test
+    void aRecordFailingItsChecksumEndsTheLog() throws IOException {
+        ChatHistoryLog log = new ChatHistoryLog(dir, BIG);
+        write(log, 0, 100);
+        log.close();
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 0x55; // last byte of the last message's text
+        Files.write(segment, bytes);
+
+        ChatHistoryLog reopened = new ChatHistoryLog(dir, BIG);
+        assertEquals(texts(95, 99), texts(reopened.lastMessages(4).join()));
+        assertEquals(99, reopened.lastMessages(1000).join().size());
+        reopened.close();
+    }
+
+    @Test
+    void rollsOverToNewSegmentsAndReadsAcrossThem() throws IOException {
+        ChatHistoryLog log = new ChatHistoryLog(dir, 1000);
+        write(log, 0, 200);
+        assertEquals(texts(40, 200), texts(log.lastMessages(160).join()));
+        log.close();
+        List<Path> segments = segments();
+        assertTrue(segments.size() > 3, "segments: " + segments);
+        long base = 0;
+        for (Path segment : segments) {
+            // each segment is named after its first record and starts at one
+            assertEquals(String.format("%016d.log", base), segment.getFileName().toString());
+            assertTrue(Files.size(segment) < 1000 + 64, "rolled over once past the size: " + segment);
+            assertTrue(Files.exists(Path.of(segment.toString().replace(".log", ".idx"))));
+            base += records(segment);
+        }
+        assertEquals(200, base);
+
+        ChatHistoryLog reopened = new ChatHistoryLog(dir, 1000);
+        write(reopened, 200, 260);
+        assertEquals(texts(0, 260), texts(reopened.lastMessages(1000).join()));
+        reopened.close();
+    }
+
+    @Test
+    void theSparseIndexHasAnEntryEvery64Records() throws IOException {
+        ChatHistoryLog log = new ChatHistoryLog(dir, BIG);
+        write(log, 0, 200);
+        log.close();
+        Path segment = onlySegment(), index = Path.of(segment.toString().replace(".log", ".idx"));
+        ByteBuffer entries = ByteBuffer.wrap(Files.readAllBytes(index));
+        assertEquals(4 * 24, entries.capacity(), "records 0, 64, 128 and 192");
+        for (int i = 0; i < 4; i++) {
+            assertEquals(64L * i, entries.getLong(i * 24));
+            assertEquals(offsetOf(segment, 64 * i), entries.getLong(i * 24 + 8));
+            assertEquals(64L * i, entries.getLong(i * 24 + 16), "time of the record");
+        }
+
+        // A restore starts at the indexed record nearest the ones asked for, so damage earlier in
+        // the segment goes unread
+        try (RandomAccessFile raf = new RandomAccessFile(segment.toFile(), "rw")) {
+            raf.seek(RECORD_HEADER + 20);
+            raf.write(0x55);
+        }
+        ChatHistoryLog reopened = new ChatHistoryLog(dir, BIG);
+        assertEquals(texts(190, 200), texts(reopened.lastMessages(10).join()));
+        reopened.close();
+    }
+
+    @Test
+    void indexEntriesLostInACrashAreWrittenAgain() throws IOException {
+        ChatHistoryLog log = new ChatHistoryLog(dir, BIG);
+        write(log, 0, 200);
+        log.close();
+        Path index = Path.of(onlySegment().toString().replace(".log", ".idx"));
+        byte[] full = Files.readAllBytes(index);
+        try (RandomAccessFile raf = new RandomAccessFile(index.toFile(), "rw")) {
+            raf.setLength(24 + 10); // the first entry and part of the second
+        }
+
+        ChatHistoryLog reopened = new ChatHistoryLog(dir, BIG);
+        assertEquals(texts(150, 200), texts(reopened.lastMessages(50).join()));
+        reopened.close();
+        assertEquals(ByteBuffer.wrap(full), ByteBuffer.wrap(Files.readAllBytes(index)));
+    }
+
+    @Test
+    void searchFindsQuestionsByWordAndTimeAcrossSegments() throws IOException {
+        ChatHistoryLog log = new ChatHistoryLog(dir, 500);
+        for (int t = 0; t < 120; t++) {
+            String topic = t % 3 == 0 ? "Orbits" : "black holes";
+            log.append(new ChatMessage("You", "what about " + topic + " " + t + "?", t * 1000L));
+            log.append(new ChatMessage("Avatar", "Orbits are fun", t * 1000L + 1)); // not a question
+        }
+        List<ChatMessage> found = log.searchQuestions("ORBITS", 30_000, 60_000);
+        assertTrue(segments().size() > 5, "the appends were written before the search");
+        assertEquals(List.of("what about Orbits 30?", "what about Orbits 33?", "what about Orbits 36?",
+                "what about Orbits 39?", "what about Orbits 42?", "what about Orbits 45?", "what about Orbits 48?",
+                "what about Orbits 51?", "what about Orbits 54?", "what about Orbits 57?"), texts(found));
+        assertEquals(120, log.searchQuestions("", 0, Long.MAX_VALUE).size());
+        assertEquals(List.of(), log.searchQuestions("comets", 0, Long.MAX_VALUE));
+        log.close();
+    }
+
+    // Messages from..to-1, alternating speakers; message i is at time i
+    private static void write(ChatHistoryLog log, int from, int to) {
+        for (int i = from; i < to; i++)
+            log.append(new ChatMessage(i % 2 == 0 ? "You" : "Avatar", "message " + i, i));
+    }
+
+    private static List<String> texts(int from, int to) {
+        return Stream.iterate(from, i -> i < to, i -> i + 1).map(i -> "message " + i).toList();
+    }
+
+    private static List<String> texts(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getText).toList();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> segments = segments();
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    // Walks the records by their length prefixes
+    private static long offsetOf(Path segment, int record) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segment));
+        long pos = 0;
+        for (int i = 0; i < record; i++)
+            pos += RECORD_HEADER + bytes.getInt((int) pos);
+        return pos;
+    }
+
+    private static int records(Path segment) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int n = 0;
+        for (int pos = 0; pos < bytes.capacity(); n++)
+            pos += RECORD_HEADER + bytes.getInt(pos);
+        return n;
+    }
+}
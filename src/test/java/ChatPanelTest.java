@@ -0,0 +1,239 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.swing.JList;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListModel;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/** Wikipedia questions in the chat run off the EDT, against a slow local stub. */
+class ChatPanelTest {
+    private static StubWikiServer stub;
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        // Fresh cache and history, so every question really goes to the stub
+        System.setProperty("wiki.cacheDir", Files.createTempDirectory("wiki-cache").toString());
+        System.setProperty("chat.historyDir", Files.createTempDirectory("chat-history").toString());
+        stub = new StubWikiServer();
+        WikiFetcher.setBaseUrl(stub.baseUrl());
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    void edtStaysResponsiveWhileTheAnswerLoads() throws Exception {
+        stub.delayMs = 1500;
+        WikiFetcher.setTimeouts(1000, 5000);
+        ChatPanel chat = onEdt(() -> new ChatPanel(null));
+        ask(chat, "what is a Blorptangle?");
+
+        // Keep pinging the EDT for as long as the stub sits on the request
+        LatencyHistogram edt = new LatencyHistogram();
+        long end = System.nanoTime() + 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            long start = System.nanoTime();
+            SwingUtilities.invokeAndWait(() -> {
+            });
+            edt.recordNanos(System.nanoTime() - start);
+            Thread.sleep(10);
+        }
+        assertTrue(edt.percentileMillis(100) < 200, "EDT round trips during the lookup: " + edt);
+        assertNotNull(onEdt(() -> find(chat, "thinking…")), "placeholder shown while loading");
+
+        waitFor(chat, StubWikiServer.extractFor("Blorptangle"));
+        assertEquals(null, onEdt(() -> find(chat, "thinking…")), "placeholder replaced in place");
+    }
+
+    @Test
+    void newQuestionCancelsTheStaleLookup() throws Exception {
+        stub.delayMs = 1500;
+        WikiFetcher.setTimeouts(1000, 5000);
+        ChatPanel chat = onEdt(() -> new ChatPanel(null));
+        ask(chat, "tell me about Snorkwidget");
+        ask(chat, "tell me about Quibblestar");
+
+        waitFor(chat, StubWikiServer.extractFor("Quibblestar"));
+        assertNotNull(onEdt(() -> find(chat, "(skipped, you asked something new)")));
+        assertEquals(null, onEdt(() -> find(chat, StubWikiServer.extractFor("Snorkwidget"))));
+    }
+
+    @Test
+    void slowServerRunsIntoTheReadTimeout() throws Exception {
+        stub.delayMs = 3000;
+        WikiFetcher.setTimeouts(1000, 300);
+        long start = System.nanoTime();
+        String answer = WikiFetcher.fetchSummary("Dawdlenova");
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(millis < 1500, "gave up after " + millis + " ms");
+        assertTrue(answer.startsWith("I can't reach"), answer);
+    }
+
+    @Test
+    void removingThePanelDeletesTheTranscriptSpill() throws Exception {
+        ChatPanel chat = onEdt(() -> new ChatPanel(null));
+        TranscriptModel transcript = onEdt(() -> (TranscriptModel) findComponent(chat, JList.class).getModel());
+        for (int i = 0; i < 300; i++) // past chat.transcriptSize (200)
+            transcript.append(new ChatMessage("You", "message " + i));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (transcript.getSpillFile() == null && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        File spill = transcript.getSpillFile();
+        assertNotNull(spill, "older messages spilled");
+        SwingUtilities.invokeAndWait(chat::removeNotify);
+        while (spill.exists() && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertFalse(spill.exists());
+    }
+
+    @Test
+    void aPanelAddedBackStillAnswers() throws Exception {
+        stub.delayMs = 0;
+        WikiFetcher.setTimeouts(1000, 5000);
+        ChatPanel chat = onEdt(() -> new ChatPanel(null));
+        SwingUtilities.invokeAndWait(() -> {
+            chat.addNotify();
+            chat.removeNotify(); // the screen dropped
+            chat.addNotify(); // and the same panel added again
+        });
+        ask(chat, "what is a Gloopstar?");
+        waitFor(chat, StubWikiServer.extractFor("Gloopstar"));
+        SwingUtilities.invokeAndWait(chat::removeNotify);
+    }
+
+    @Test
+    void askedListsEarlierQuestionsFromTheHistory() throws Exception {
+        stub.delayMs = 0;
+        WikiFetcher.setTimeouts(1000, 5000);
+        ChatPanel chat = onEdt(() -> new ChatPanel(null));
+        ask(chat, "what is a Wobblenaut?");
+        waitFor(chat, StubWikiServer.extractFor("Wobblenaut"));
+        ask(chat, "/asked wobblenaut");
+        String reply = waitForSearchReply(chat, 1);
+        assertTrue(reply.startsWith("1 question about \"wobblenaut\" in the last 30 days:"), reply);
+        assertTrue(reply.endsWith("  what is a Wobblenaut?"), reply);
+        ask(chat, "/asked wobblenaut");
+        assertEquals(reply, waitForSearchReply(chat, 2), "the first lookup wasn't logged as a question");
+    }
+
+    @Test
+    void scrollingToTheTopBringsBackSpilledMessages() throws Exception {
+        ChatPanel chat = onEdt(() -> new ChatPanel(null));
+        TranscriptModel transcript = onEdt(() -> (TranscriptModel) findComponent(chat, JList.class).getModel());
+        for (int i = 0; i < 300; i++) // past chat.transcriptSize (200)
+            transcript.append(new ChatMessage("You", "old message " + i));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (onEdt(() -> find(chat, "old message 299")) == null && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        JScrollBar bar = onEdt(() -> {
+            chat.addNotify(); // lightweight peers, so the panel lays out without a window
+            chat.setSize(800, 600);
+            chat.validate();
+            return findComponent(chat, JScrollPane.class).getVerticalScrollBar();
+        });
+        int first = onEdt(() -> transcript.getSize());
+        SwingUtilities.invokeAndWait(() -> bar.setValue(0));
+        while (onEdt(() -> transcript.getSize()) == first && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(first + 50, (int) onEdt(() -> transcript.getSize()), "a page of older messages");
+        assertTrue(onEdt(() -> bar.getValue()) > 0, "the view stays on the rows it showed");
+        SwingUtilities.invokeAndWait(chat::removeNotify);
+    }
+
+    // Types the question and presses Enter
+    private static void ask(ChatPanel chat, String question) throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            JTextField input = findComponent(chat, JTextField.class);
+            input.setText(question);
+            input.postActionEvent();
+        });
+    }
+
+    private static void waitFor(ChatPanel chat, String text) throws Exception {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (onEdt(() -> find(chat, text)) == null) {
+            assertTrue(System.nanoTime() < deadline, "no \"" + text + "\" in the transcript");
+            Thread.sleep(20);
+        }
+    }
+
+    // The transcript message with this text, or null
+    private static ChatMessage find(ChatPanel chat, String text) {
+        @SuppressWarnings("unchecked")
+        ListModel<ChatMessage> model = findComponent(chat, JList.class).getModel();
+        for (int i = 0; i < model.getSize(); i++)
+            if (model.getElementAt(i).getText().equals(text))
+                return model.getElementAt(i);
+        return null;
+    }
+
+    // The nth answer to "/asked" in the transcript, once it is there
+    private static String waitForSearchReply(ChatPanel chat, int n) throws Exception {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (true) {
+            List<String> replies = onEdt(() -> {
+                ListModel<?> model = findComponent(chat, JList.class).getModel();
+                List<String> found = new ArrayList<>();
+                for (int i = 0; i < model.getSize(); i++) {
+                    ChatMessage m = (ChatMessage) model.getElementAt(i);
+                    if (m.speaker.equals("Avatar") && m.getText().matches("(?s)(No|\\d+) questions? about .*"))
+                        found.add(m.getText());
+                }
+                return found;
+            });
+            if (replies.size() >= n)
+                return replies.get(n - 1);
+            assertTrue(System.nanoTime() < deadline, "no answer to /asked");
+            Thread.sleep(20);
+        }
+    }
+
+    private static <T> T findComponent(Container root, Class<T> type) {
+        for (Component child : root.getComponents()) {
+            if (type.isInstance(child))
+                return type.cast(child);
+            if (child instanceof Container c) {
+                T found = findComponent(c, type);
+                if (found != null)
+                    return found;
+            }
+        }
+        return null;
+    }
+
+    private static <T> T onEdt(Callable<T> task) throws Exception {
+        Object[] result = new Object[1];
+        Exception[] error = new Exception[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result[0] = task.call();
+            } catch (Exception e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null)
+            throw error[0];
+        @SuppressWarnings("unchecked")
+        T t = (T) result[0];
+        return t;
+    }
+}
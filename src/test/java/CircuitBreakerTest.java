@@ -0,0 +1,39 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+    @Test
+    void opensAfterConsecutiveFailuresAndProbesAfterTheCoolDown() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(3, 100);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess(); // not consecutive any more
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(150);
+        assertTrue(breaker.allowRequest(), "one probe after the cool-down");
+        assertFalse(breaker.allowRequest(), "only one probe at a time");
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void failedProbeReopensAtOnce() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 100);
+        breaker.recordFailure();
+        Thread.sleep(150);
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+}
@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Match latency on a 100-character message as the intent count grows from
+ * 10 to 100k. The same ten intents match the message at every size, so the
+ * numbers show the cost of a bigger automaton, not of more answers.
+ */
+@Tag("benchmark")
+class IntentMatcherBenchmark {
+    private static final String MESSAGE =
+            "can you tell me why the astronauts on the space station float around and how they sleep at night?!";
+    private static final String[] MATCHING = { "astronauts", "space station", "float", "sleep", "night",
+            "how they sleep", "space", "station", "the space", "around" };
+
+    @Test
+    void matchLatencyStaysFlatAsIntentsGrow() {
+        Random random = new Random(7);
+        double first = 0, last = 0;
+        for (int count : new int[] { 10, 1_000, 10_000, 100_000 }) {
+            IntentMatcher matcher = new IntentMatcher(intents(count, random));
+            assertEquals("answer 5", matcher.match(MESSAGE).answer(), "longest keyword of the top priority");
+            int rounds = 200_000;
+            for (int i = 0; i < rounds; i++) // warm up
+                matcher.match(MESSAGE);
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++)
+                matcher.match(MESSAGE);
+            double micros = (System.nanoTime() - start) / 1e3 / rounds;
+            System.out.printf("%,8d intents: %.2f us per match%n", count, micros);
+            if (count == 10)
+                first = micros;
+            last = micros;
+        }
+        // One pass over the text whatever the count; only cache misses grow
+        assertTrue(last < first * 5, "100k intents: " + last + " us against " + first + " us for 10");
+    }
+
+    // The ten matching intents, then made-up keywords of 1-3 words that never occur in the message
+    private static List<String> intents(int count, Random random) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < MATCHING.length; i++)
+            lines.add((i == 3 || i == 5 ? 9 : 5) + " | " + MATCHING[i] + " | answer " + i);
+        for (int i = lines.size(); i < count; i++) {
+            StringBuilder keyword = new StringBuilder();
+            int parts = 1 + random.nextInt(3);
+            for (int p = 0; p < parts; p++) {
+                if (p > 0)
+                    keyword.append(' ');
+                keyword.append("zq").append(Long.toString(random.nextLong() & Long.MAX_VALUE, 36), 0, 5);
+            }
+            lines.add(random.nextInt(10) + " | " + keyword + " | answer " + i);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class IntentMatcherTest {
+    private final IntentMatcher matcher = new IntentMatcher(List.of(
+            "# comment lines and blanks are skipped",
+            "",
+            "1 | hello, hi | greeting",
+            "5 | zero gravity, weightless | zero-g",
+            "5 | why study zero gravity | why-study",
+            "5 | moon, orbit, earth | moon-orbit",
+            "5 | moon | moon",
+            "9 | emergency | urgent",
+            "3 | she, he, hers | pronoun"));
+
+    @Test
+    void keywordsOnlyMatchWholeWords() {
+        assertNull(matcher.match("this is a thing"), "\"hi\" inside \"this\"");
+        assertEquals("greeting", answer("Hi there!"));
+        assertEquals("greeting", answer("well, HELLO."));
+    }
+
+    @Test
+    void higherPriorityWins() {
+        assertEquals("urgent", answer("hello, this is an emergency about zero gravity"));
+    }
+
+    @Test
+    void longerKeywordBreaksPriorityTies() {
+        assertEquals("why-study", answer("why study zero gravity at all?"));
+        assertEquals("zero-g", answer("is zero gravity fun?"));
+    }
+
+    @Test
+    void moreMatchedKeywordsBreakLengthTies() {
+        assertEquals("moon-orbit", answer("does the moon orbit the earth"));
+        assertEquals("moon", answer("the moon"), "first intent keeps a plain tie");
+    }
+
+    @Test
+    void overlappingKeywordsAreAllFound() {
+        // Inside "hers" the automaton also passes "he"; only whole words count
+        assertNull(matcher.match("ushers"));
+        assertEquals("pronoun", answer("is it hers"));
+        assertEquals("pronoun", answer("she said"));
+    }
+
+    @Test
+    void badLinesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new IntentMatcher(List.of("5 | no answer")));
+    }
+
+    @Test
+    void sharedMatcherLoadsTheCuratedIntents() {
+        IntentMatcher shared = IntentMatcher.shared();
+        assertTrue(shared.intentCount() > 30, "intents: " + shared.intentCount());
+        assertEquals(shared, IntentMatcher.shared());
+        assertTrue(shared.match("how do astronauts sleep in space?").answer().contains("sleeping bags"));
+    }
+
+    private String answer(String text) {
+        IntentMatcher.Intent intent = matcher.match(text);
+        return intent == null ? null : intent.answer();
+    }
+}
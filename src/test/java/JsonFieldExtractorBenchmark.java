@@ -0,0 +1,78 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Streaming extractor against the old read-everything-then-indexOf parse,
+ * on a large summary payload (-Dbench.payloadKb, default 437).
+ */
+@Tag("benchmark")
+class JsonFieldExtractorBenchmark {
+    private interface Parser {
+        String extract(InputStream in) throws IOException;
+    }
+
+    @Test
+    void streamingBeatsIndexOfOnLargePayloads() throws IOException {
+        byte[] payload = payload(Integer.getInteger("bench.payloadKb", 437) * 1024);
+        Parser streaming = in -> JsonFieldExtractor.extract(in, "title", "extract", "thumbnail.source", "type")[1];
+        assertEquals(indexOf(new ByteArrayInputStream(payload)), streaming.extract(new ByteArrayInputStream(payload)));
+
+        double[] old = measure("indexOf", JsonFieldExtractorBenchmark::indexOf, payload);
+        double[] now = measure("streaming", streaming, payload);
+        // Most of what is left is the extract itself, built up in a StringBuilder
+        assertTrue(now[1] < old[1] * 0.75, "streaming should allocate well under the old parse");
+    }
+
+    // {MB/s, bytes allocated per parse}
+    private static double[] measure(String name, Parser parser, byte[] payload) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        int ops = 300;
+        for (int i = 0; i < ops; i++) // warm up
+            parser.extract(new ByteArrayInputStream(payload));
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++)
+            parser.extract(new ByteArrayInputStream(payload));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double bytes = (threads.getThreadAllocatedBytes(thread) - allocated) / (double) ops;
+        double mbPerSecond = payload.length * (double) ops / seconds / 1e6;
+        System.out.printf("%-10s %7.1f MB/s  %6.2f MB allocated per parse%n", name, mbPerSecond, bytes / 1e6);
+        return new double[] { mbPerSecond, bytes };
+    }
+
+    // What WikiFetcher did before the streaming extractor
+    private static String indexOf(InputStream in) throws IOException {
+        BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while ((line = br.readLine()) != null)
+            sb.append(line);
+        String json = sb.toString();
+        int idx = json.indexOf("\"extract\":\"");
+        int end = json.indexOf("\",", idx + 11);
+        return json.substring(idx + 11, end != -1 ? end : json.length()).replace("\\n", "\n").replace("\\\"", "\"");
+    }
+
+    // A summary whose extract is most of the payload, with the metadata after it
+    private static byte[] payload(int bytes) {
+        StringBuilder extract = new StringBuilder();
+        while (extract.length() < bytes)
+            extract.append("A black hole is a region of spacetime where gravity is so strong that nothing can escape. ");
+        String json = "{\"type\":\"standard\",\"title\":\"Black hole\",\"extract\":\"" + extract
+                + "\",\"thumbnail\":{\"source\":\"https://upload.wikimedia.org/bh.png\",\"width\":320},"
+                + "\"content_urls\":{\"desktop\":{\"page\":\"https://en.wikipedia.org/wiki/Black_hole\"}}}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
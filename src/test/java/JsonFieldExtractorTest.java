@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class JsonFieldExtractorTest {
+    private static final String[] FIELDS = { "title", "extract", "thumbnail.source", "type" };
+
+    @Test
+    void readsNestedFieldsInAnyOrder() throws IOException {
+        String json = "{\"type\":\"standard\",\"thumbnail\":{\"width\":320,\"source\":\"https://x/y.png\"},"
+                + "\"title\":\"Black hole\",\"extract\":\"A region of spacetime.\"}";
+        assertArrayEquals(new String[] { "Black hole", "A region of spacetime.", "https://x/y.png", "standard" },
+                extract(json, FIELDS));
+    }
+
+    @Test
+    void decodesEveryEscape() throws IOException {
+        // "," inside the text used to end the old indexOf-based extract early
+        String json = "{\"extract\":\"Say \\\"hi\\\", then\\nwave \\u00e9\\u00E8 \\ud83d\\ude80 a\\/b \\\\ \\t.\"}";
+        assertEquals("Say \"hi\", then\nwave éè 🚀 a/b \\ \t.", extract(json, "extract")[0]);
+    }
+
+    @Test
+    void ignoresSameNamesInOtherObjectsAndArrays() throws IOException {
+        String json = "{\"titles\":{\"title\":\"wrong\"},\"related\":[{\"extract\":\"wrong\"}],"
+                + "\"other\":{\"source\":\"wrong\"},\"thumbnail\":{\"source\":\"right\"},\"extract\":\"right\"}";
+        String[] v = extract(json, "title", "extract", "thumbnail.source");
+        assertNull(v[0]);
+        assertEquals("right", v[1]);
+        assertEquals("right", v[2]);
+    }
+
+    @Test
+    void literalsAndMissingFields() throws IOException {
+        String[] v = extract("{ \"pageid\" : 42 , \"fresh\":true, \"coords\":null }", "pageid", "fresh", "coords", "x");
+        assertArrayEquals(new String[] { "42", "true", "null", null }, v);
+    }
+
+    @Test
+    void stopsReadingOnceEveryFieldIsFound() throws IOException {
+        StringBuilder json = new StringBuilder("{\"title\":\"T\",\"extract\":\"E\",\"thumbnail\":{\"source\":\"S\"},"
+                + "\"type\":\"standard\",\"content_urls\":\"");
+        json.append("x".repeat(1 << 20)).append("\"}");
+        CountingStream in = new CountingStream(json.toString());
+        assertArrayEquals(new String[] { "T", "E", "S", "standard" }, JsonFieldExtractor.extract(in, FIELDS));
+        assertTrue(in.read < 64 * 1024, "read " + in.read + " of " + json.length() + " bytes");
+    }
+
+    @Test
+    void truncatedDocumentFails() {
+        assertThrows(EOFException.class, () -> extract("{\"title\":\"Black ho", FIELDS));
+    }
+
+    private static String[] extract(String json, String... paths) throws IOException {
+        return JsonFieldExtractor.extract(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), paths);
+    }
+
+    private static final class CountingStream extends InputStream {
+        private final InputStream in;
+        long read;
+
+        CountingStream(String s) {
+            in = new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0)
+                read++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0)
+                read += n;
+            return n;
+        }
+    }
+}
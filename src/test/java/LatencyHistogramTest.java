@@ -0,0 +1,21 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    @Test
+    void percentilesAreWithinABucketOfTheTruth() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++)
+            h.recordNanos(ms * 1_000_000L);
+        assertEquals(1000, h.count());
+        assertEquals(500, h.percentileMillis(50), 500 * 0.125);
+        assertEquals(950, h.percentileMillis(95), 950 * 0.125);
+        assertEquals(1000, h.percentileMillis(100), 0.001); // capped at the max seen
+    }
+
+    @Test
+    void emptyHistogramReportsZero() {
+        assertEquals(0, new LatencyHistogram().percentileMillis(99));
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Builds an index over -Dbench.articles (default 200,000) made-up articles
+ * of 40 words each, drawn from a 50,000-word vocabulary with a Zipf-like
+ * skew so a few words are in most articles, as in real text. The build
+ * spills runs every -Dbench.buildBudget (1,000,000) postings. Then times
+ * chat-style questions against the mapped index: two words from an
+ * article's title and one common word, and bestAnswer must find that
+ * article. The median must stay within a millisecond and p99 within
+ * -Dbench.maxP99Ms (20).
+ */
+@Tag("benchmark")
+class OfflineEncyclopediaBenchmark {
+    private static final int VOCABULARY = 50_000, WORDS = 40;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void questionsAreAnsweredInMilliseconds() throws IOException {
+        int articles = Integer.getInteger("bench.articles", 200_000);
+        Path dump = dir.resolve("dump.tsv"), file = dir.resolve("encyclopedia.idx");
+        Random random = new Random(11);
+        try (BufferedWriter out = Files.newBufferedWriter(dump)) {
+            for (int i = 0; i < articles; i++) {
+                out.write(title(i));
+                out.write('\t');
+                for (int w = 0; w < WORDS; w++)
+                    out.write((w > 0 ? " " : "") + word(common(random)));
+                out.write('\n');
+            }
+        }
+
+        System.setProperty("offline.buildBudget", Integer.getInteger("bench.buildBudget", 1_000_000).toString());
+        long start = System.nanoTime();
+        try {
+            OfflineEncyclopedia.build(dump, file);
+        } finally {
+            System.clearProperty("offline.buildBudget");
+        }
+        long buildMs = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        OfflineEncyclopedia index = new OfflineEncyclopedia(file);
+        double openMs = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%,d articles, dump %.1f MB, index %.1f MB: built in %,d ms, opened in %.2f ms%n",
+                index.size(), Files.size(dump) / 1e6, Files.size(file) / 1e6, buildMs, openMs);
+        assertEquals(articles, index.size());
+
+        int questions = 20_000;
+        for (int i = 0; i < questions; i++) // warm up
+            index.bestAnswer(question(random.nextInt(articles), random));
+        LatencyHistogram times = new LatencyHistogram();
+        int found = 0;
+        for (int i = 0; i < questions; i++) {
+            int article = random.nextInt(articles);
+            String question = question(article, random);
+            long t = System.nanoTime();
+            OfflineEncyclopedia.Hit hit = index.bestAnswer(question);
+            times.recordNanos(System.nanoTime() - t);
+            if (hit != null && hit.title().equals(title(article)))
+                found++;
+        }
+        double p50 = times.percentileMillis(50), p99 = times.percentileMillis(99);
+        System.out.printf("bestAnswer: p50 %.3f ms  p95 %.3f ms  p99 %.3f ms  max %.3f ms; %,d of %,d found%n", p50,
+                times.percentileMillis(95), p99, times.percentileMillis(100), found, questions);
+
+        assertEquals(questions, found, "the article the question was about");
+        assertTrue(p50 < 1, "median " + p50 + " ms");
+        assertTrue(p99 < Integer.getInteger("bench.maxP99Ms", 20), "p99 " + p99 + " ms");
+    }
+
+    // Two rare words of its own, so each article has one best answer
+    private static String title(int i) {
+        return word(VOCABULARY + 2 * i) + " " + word(VOCABULARY + 2 * i + 1);
+    }
+
+    private static String question(int article, Random random) {
+        return "what is " + title(article) + " " + word(common(random)) + "?";
+    }
+
+    // Word ranks skewed towards the front: rank 0 is in most articles
+    private static int common(Random random) {
+        return (int) Math.pow(VOCABULARY, random.nextDouble()) - 1;
+    }
+
+    private static String word(int n) {
+        return "w" + Integer.toString(n, 36);
+    }
+}
@@ -0,0 +1,143 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Building, reopening and ranking the offline index, and when the chat asks it. */
+class OfflineEncyclopediaTest {
+    private static final List<String> ARTICLES = List.of(
+            "Moon\tThe Moon is Earth's only natural satellite.",
+            "Orbit\tAn orbit is the curved path of an object around a star, planet or moon.",
+            "Tides\tTides are caused by the Moon and the Sun.",
+            "Apollo 11\tApollo 11 was the spaceflight that first landed people on the Moon. It launched on a "
+                    + "Saturn V rocket from Florida, and the crew spent about a day on the surface before "
+                    + "returning safely home.",
+            "Black hole\tA black hole is a region of spacetime where gravity is so strong that nothing can escape.",
+            "Comet\tA comet is an icy small body that releases gases when passing close to the Sun.",
+            "no tab, so not an article",
+            "Blorptangle\tA Blorptangle is a shape only found in the offline encyclopedia.");
+
+    private static StubWikiServer stub;
+
+    @TempDir
+    static Path dir;
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        Path dump = dir.resolve("dump.tsv"), index = dir.resolve("shared.idx");
+        Files.write(dump, ARTICLES);
+        OfflineEncyclopedia.build(dump, index);
+        System.setProperty("offline.index", index.toString());
+        System.setProperty("wiki.cacheDir", Files.createTempDirectory(dir, "wiki-cache").toString());
+        stub = new StubWikiServer();
+        WikiFetcher.setBaseUrl(stub.baseUrl());
+        WikiFetcher.setTimeouts(1000, 2000);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        WikiFetcher.setAnswerPolicy(WikiFetcher.AnswerPolicy.NETWORK_FIRST);
+        stub.close();
+    }
+
+    @Test
+    void spilledRunsMergeIntoTheSameIndex() throws IOException {
+        Path dump = dir.resolve("dump.tsv"), whole = dir.resolve("whole.idx"), spilled = dir.resolve("spilled.idx");
+        OfflineEncyclopedia.build(dump, whole);
+        System.setProperty("offline.buildBudget", "5"); // a run every article or two
+        try {
+            OfflineEncyclopedia.build(dump, spilled);
+        } finally {
+            System.clearProperty("offline.buildBudget");
+        }
+        assertEquals(-1, Files.mismatch(whole, spilled), "postings of every run merged back in doc order");
+        OfflineEncyclopedia index = new OfflineEncyclopedia(spilled);
+        assertEquals(7, index.size(), "the line without a tab is skipped");
+        assertEquals(List.of("Moon", "Tides", "Orbit", "Apollo 11"), titles(index.search("moon", 10)));
+    }
+
+    @Test
+    void theIndexReopensFromItsFile() throws IOException {
+        Path file = dir.resolve("reopened.idx");
+        OfflineEncyclopedia.build(dir.resolve("dump.tsv"), file);
+        OfflineEncyclopedia first = new OfflineEncyclopedia(file), second = new OfflineEncyclopedia(file);
+        assertEquals(first.search("sun moon gravity", 10), second.search("sun moon gravity", 10));
+        OfflineEncyclopedia.Hit hit = second.bestAnswer("what is a black hole?");
+        assertEquals("Black hole", hit.title());
+        assertEquals("A black hole is a region of spacetime where gravity is so strong that nothing can escape.",
+                hit.summary());
+
+        Files.writeString(dir.resolve("not-an-index"), "Zero Gravity - Score: 3\n".repeat(10));
+        assertThrows(IOException.class, () -> new OfflineEncyclopedia(dir.resolve("not-an-index")));
+    }
+
+    @Test
+    void bm25RanksTitlesAndShortArticlesFirst() throws IOException {
+        OfflineEncyclopedia index = OfflineEncyclopedia.shared();
+        // Moon has it in the title; the others once each, shortest first
+        List<OfflineEncyclopedia.Hit> moon = index.search("the moon", 10);
+        assertEquals(List.of("Moon", "Tides", "Orbit", "Apollo 11"), titles(moon));
+        for (int i = 1; i < moon.size(); i++)
+            assertTrue(moon.get(i - 1).score() > moon.get(i).score(), moon.toString());
+        assertEquals(List.of("Moon", "Tides"), titles(index.search("moon", 2)));
+
+        // An article with both words beats one with either alone
+        List<OfflineEncyclopedia.Hit> both = index.search("sun moon", 10);
+        assertEquals("Tides", both.get(0).title());
+        assertEquals(2, both.get(0).matchedTerms());
+        assertEquals(List.of(), index.search("zorblat", 10));
+    }
+
+    @Test
+    void bestAnswerNeedsHalfTheQuestionsWords() {
+        OfflineEncyclopedia index = OfflineEncyclopedia.shared();
+        assertEquals("Moon", index.bestAnswer("What is the Moon?").title());
+        assertEquals("Moon", index.bestAnswer("moon pizza").title(), "one word of two");
+        assertNull(index.bestAnswer("moon pizza volcano"), "one word of three");
+        assertNull(index.bestAnswer("what is the"), "only stop words");
+        assertNull(index.bestAnswer("zorblat"));
+    }
+
+    @Test
+    void localFirstAnswersWithoutTheNetwork() {
+        WikiFetcher.setAnswerPolicy(WikiFetcher.AnswerPolicy.LOCAL_FIRST);
+        int before = stub.requests();
+        assertEquals("A Blorptangle is a shape only found in the offline encyclopedia.",
+                WikiFetcher.fetchSummary("what is a Blorptangle?"));
+        assertEquals(before, stub.requests());
+        assertEquals(StubWikiServer.extractFor("Snorkwidget"), WikiFetcher.fetchSummary("Snorkwidget"),
+                "not in the index: asks Wikipedia");
+        assertEquals(before + 1, stub.requests());
+    }
+
+    @Test
+    void networkFirstFallsBackToTheIndex() {
+        WikiFetcher.setAnswerPolicy(WikiFetcher.AnswerPolicy.NETWORK_FIRST);
+        assertEquals(StubWikiServer.extractFor("Comet"), WikiFetcher.fetchSummary("tell me about the Comet"));
+        stub.status = 404;
+        try {
+            assertEquals("Tides are caused by the Moon and the Sun.", WikiFetcher.fetchSummary("tides"),
+                    "no such article online");
+            stub.status = 500;
+            assertEquals("An orbit is the curved path of an object around a star, planet or moon.",
+                    WikiFetcher.fetchSummary("orbit"), "Wikipedia unreachable");
+            assertTrue(WikiFetcher.fetchSummary("Quibblestar").startsWith("I can't reach"), "in neither");
+        } finally {
+            stub.status = 200;
+        }
+    }
+
+    private static List<String> titles(List<OfflineEncyclopedia.Hit> hits) {
+        return hits.stream().map(OfflineEncyclopedia.Hit::title).toList();
+    }
+}
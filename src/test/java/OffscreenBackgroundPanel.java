@@ -0,0 +1,73 @@
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * A StarCometBackgroundPanel whose repaints land in an image standing in
+ * for the screen: region repaints paint just that region, a full repaint
+ * request paints everything once the tick is over. With {@code fullFrames}
+ * set, every tick paints the whole panel instead, the way it was before
+ * dirty tracking. Run it on the EDT.
+ */
+class OffscreenBackgroundPanel extends StarCometBackgroundPanel {
+    final BufferedImage screen;
+    final boolean fullFrames;
+    private boolean fullRequested;
+    private long now = 0;
+
+    OffscreenBackgroundPanel(int stars, int comets, int width, int height, boolean fullFrames) {
+        super(stars, comets, width, height);
+        this.fullFrames = fullFrames;
+        setSize(width, height);
+        screen = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /** One animation tick, 40 ms after the last, and whatever it repaints. */
+    void tick() {
+        fullRequested = false;
+        advance(now += 40_000_000L);
+        if (fullRequested || fullFrames)
+            paintRegion(new Rectangle(0, 0, getWidth(), getHeight()));
+    }
+
+    /** @return A full repaint of the panel as it is now. */
+    BufferedImage expected() {
+        BufferedImage image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        paint(g);
+        g.dispose();
+        return image;
+    }
+
+    /** Lays out the children, as validate() would in a window. */
+    void layOut() {
+        layOut(this);
+    }
+
+    private static void layOut(Container container) {
+        container.doLayout();
+        for (Component child : container.getComponents())
+            if (child instanceof Container c)
+                layOut(c);
+    }
+
+    @Override
+    public void paintImmediately(Rectangle r) {
+        if (!fullFrames)
+            paintRegion(r);
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        fullRequested = true; // also called from the JPanel constructor, before our fields exist
+    }
+
+    private void paintRegion(Rectangle r) {
+        Graphics2D g = screen.createGraphics();
+        g.clip(r);
+        paint(g);
+        g.dispose();
+    }
+}
@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Update cost of a drifting, respawning particle field over particle counts
+ * (10k to 200k) and pool sizes (1 core up to every core on the machine).
+ * Below ParticleField.PARALLEL_THRESHOLD the update runs on the caller, so
+ * only the larger counts spread over the pool.
+ */
+@Tag("benchmark")
+class ParticleFieldBenchmark {
+    private static final int[] COUNTS = { 10_000, 50_000, 100_000, 200_000 };
+
+    @Test
+    void updateScalesWithParticlesAndCores() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        TreeSet<Integer> poolSizes = new TreeSet<>();
+        for (int p = 1; p <= cores && p <= 8; p *= 2)
+            poolSizes.add(p);
+        poolSizes.add(cores);
+
+        System.out.printf("%9s", "particles");
+        for (int p : poolSizes)
+            System.out.printf(" %8s", p + (p == 1 ? " core" : " cores"));
+        System.out.println("   (ns per particle per update)");
+        double[][] nanos = new double[COUNTS.length][];
+        for (int c = 0; c < COUNTS.length; c++) {
+            nanos[c] = new double[poolSizes.size()];
+            System.out.printf("%,9d", COUNTS[c]);
+            int column = 0;
+            for (int p : poolSizes) {
+                nanos[c][column] = measure(COUNTS[c], p);
+                System.out.printf(" %8.2f", nanos[c][column++]);
+            }
+            System.out.println();
+        }
+
+        double small = nanos[0][0], large = nanos[COUNTS.length - 1][0];
+        assertTrue(large < small * 3, "one core: " + large + " ns/particle at 200k against " + small + " at 10k");
+        if (cores > 1) {
+            double best = nanos[COUNTS.length - 1][poolSizes.size() - 1];
+            assertTrue(best < large / 1.5, cores + " cores: " + best + " ns/particle against " + large + " on one");
+        } else {
+            System.out.println("(one core here, so no parallel speed-up to check)");
+        }
+    }
+
+    private static double measure(int count, int cores) {
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        try {
+            ParticleField field = new ParticleField(count, 1920, 1080, 1.5f, 400, pool);
+            int updates = Math.max(20, 20_000_000 / count);
+            for (int i = 0; i < updates; i++) // warm up
+                field.update(1920, 1080);
+            long start = System.nanoTime();
+            for (int i = 0; i < updates; i++)
+                field.update(1920, 1080);
+            return (double) (System.nanoTime() - start) / updates / count;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
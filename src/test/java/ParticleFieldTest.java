@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class ParticleFieldTest {
+    @Test
+    void rescaleMovesParticlesInPlace() {
+        ParticleField field = new ParticleField(1000, 800, 600, 2, 0);
+        float[] x = field.x, y = field.y, oldX = x.clone(), oldY = y.clone();
+        field.rescale(800, 600, 400, 1200);
+        assertSame(x, field.x, "no new arrays");
+        assertSame(y, field.y);
+        for (int i = 0; i < field.count; i++) {
+            assertEquals(oldX[i] / 2, field.x[i], 1e-3);
+            assertEquals(oldY[i] * 2, field.y[i], 1e-3);
+        }
+    }
+
+    @Test
+    void driftingParticlesWrapAroundTheEdgesAndRespawn() {
+        ParticleField field = new ParticleField(2000, 300, 200, 8, 20);
+        for (int tick = 0; tick < 500; tick++) {
+            field.update(300, 200);
+            for (int i = 0; i < field.count; i++) {
+                assertTrue(field.x[i] >= 0 && field.x[i] < 300, "x = " + field.x[i]);
+                assertTrue(field.y[i] >= 0 && field.y[i] < 200, "y = " + field.y[i]);
+                assertTrue(field.life[i] > 0 && field.life[i] <= 21, "life = " + field.life[i]);
+                assertTrue(field.brightness[i] >= 0.55f && field.brightness[i] <= 1f);
+            }
+        }
+    }
+
+    @Test
+    void onlyActiveParticlesAreUpdated() {
+        ParticleField field = new ParticleField(100, 800, 600, 3, 0);
+        field.setActive(40);
+        float[] x = field.x.clone(), brightness = field.brightness.clone();
+        field.update(800, 600);
+        for (int i = 40; i < 100; i++) {
+            assertEquals(x[i], field.x[i]);
+            assertEquals(brightness[i], field.brightness[i]);
+        }
+        field.setActive(500);
+        assertEquals(100, field.active, "clamped to the count");
+        field.setActive(-1);
+        assertEquals(0, field.active);
+    }
+
+    @Test
+    void parallelUpdateStepsEveryParticleExactlyOnce() {
+        int count = ParticleField.PARALLEL_THRESHOLD * 4 + 123; // several uneven chunks
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParticleField field = new ParticleField(count, 800, 600, 0, 0, pool);
+            float[] brightness = field.brightness.clone(), delta = field.dBrightness.clone();
+            field.update(800, 600);
+            for (int i = 0; i < count; i++) {
+                float b = brightness[i] + delta[i];
+                float expected = b > 1f ? 1f : b < 0.55f ? 0.55f : b;
+                assertEquals(expected, field.brightness[i], 0f, "particle " + i);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void rasterizePlotsEachParticleAsASquare() {
+        ParticleField field = new ParticleField(1, 10, 10, 0, 0);
+        field.x[0] = 8;
+        field.y[0] = 3;
+        field.size[0] = 3; // runs off the right edge
+        field.brightness[0] = 1f;
+        int[] pixels = new int[100];
+        field.rasterize(pixels, 10, 10, 0xffffff);
+        int lit = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            if (pixels[i] != 0) {
+                lit++;
+                assertEquals(0xe6e6e6, pixels[i]); // white at alpha 230
+                assertTrue(i % 10 >= 8 && i / 10 >= 3 && i / 10 < 6, "pixel " + i);
+            }
+        }
+        assertEquals(6, lit, "clipped at the edge");
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class PhysicsWorldTest {
+    private static final float DT = 1 / 60f;
+
+    @Test
+    void parallelStepsEndBitForBitWhereSerialStepsDo() {
+        ForkJoinPool single = new ForkJoinPool(1), four = new ForkJoinPool(4);
+        try {
+            int n = PhysicsWorld.PARALLEL_THRESHOLD * 3; // well into the parallel path
+            PhysicsWorld serial = world(n, single), again = world(n, single), parallel = world(n, four);
+            for (int i = 0; i < 60; i++) {
+                serial.step(DT);
+                again.step(DT);
+                parallel.step(DT);
+            }
+            assertEquals(serial.stateHash(), again.stateHash(), "same seed, same run");
+            assertEquals(serial.stateHash(), parallel.stateHash(), "pool size changes nothing");
+            assertTrue(serial.getCounts()[1] > 0, "the run had collisions to resolve");
+        } finally {
+            single.shutdown();
+            four.shutdown();
+        }
+    }
+
+    @Test
+    void treeAttractionStaysCloseToTheExactSum() {
+        PhysicsWorld world = world(2000, ForkJoinPool.commonPool());
+        double[] errors = new double[50];
+        for (int k = 0; k < errors.length; k++) {
+            int i = k * world.getBodyCount() / errors.length;
+            float[] exact = world.exactAttraction(i), tree = world.treeAttraction(i);
+            errors[k] = Math.hypot(tree[0] - exact[0], tree[1] - exact[1]) / Math.hypot(exact[0], exact[1]);
+        }
+        Arrays.sort(errors);
+        assertTrue(errors[errors.length / 2] < 0.05, "median error " + errors[errors.length / 2]);
+    }
+
+    @Test
+    void aLoneBodyFallsWithTheSelectedGravity() {
+        for (PhysicsWorld.GravityMode mode : PhysicsWorld.GravityMode.values()) {
+            PhysicsWorld world = new PhysicsWorld(1000, 620);
+            world.setGravityMode(mode);
+            world.addBody(500, 100, 0, 0, 5);
+            for (int i = 0; i < 30; i++)
+                world.step(DT);
+            // Semi-implicit Euler: after n steps the drop is pull * dt^2 * n(n+1)/2
+            assertEquals(100 + mode.pull * DT * DT * 30 * 31 / 2, world.getY(0), 0.01, mode.name());
+            assertEquals(500, world.getX(0), 0);
+        }
+    }
+
+    @Test
+    void wallsKeepEveryBodyInTheBox() {
+        PhysicsWorld world = world(500, ForkJoinPool.commonPool());
+        world.setGravityMode(PhysicsWorld.GravityMode.EARTH);
+        for (int step = 0; step < 600; step++) {
+            world.step(DT);
+            for (int i = 0; i < world.getBodyCount(); i++) {
+                float r = world.getRadius(i);
+                assertTrue(world.getX(i) >= r && world.getX(i) <= 1000 - r, "x = " + world.getX(i));
+                assertTrue(world.getY(i) >= r && world.getY(i) <= 620 - r, "y = " + world.getY(i));
+            }
+        }
+    }
+
+    @Test
+    void headOnCollisionBouncesBothBodiesBack() {
+        PhysicsWorld world = new PhysicsWorld(1000, 620);
+        world.addBody(400, 300, 100, 0, 10);
+        world.addBody(440, 300, -100, 0, 10);
+        for (int i = 0; i < 30; i++)
+            world.step(DT);
+        assertTrue(world.getCounts()[1] > 0, "they met");
+        assertTrue(world.getX(1) - world.getX(0) > 20, "apart again: " + world.getX(0) + ", " + world.getX(1));
+        assertEquals(840, world.getX(0) + world.getX(1), 0.01, "equal masses push equally");
+        assertEquals(300, world.getY(0), 0);
+        assertEquals(300, world.getY(1), 0);
+    }
+
+    @Test
+    void clearEmptiesTheWorld() {
+        PhysicsWorld world = world(100, ForkJoinPool.commonPool());
+        world.clear();
+        world.step(DT);
+        assertEquals(0, world.getBodyCount());
+        assertEquals(1, world.getCounts()[0]);
+    }
+
+    private static PhysicsWorld world(int n, ForkJoinPool pool) {
+        PhysicsWorld world = new PhysicsWorld(1000, 620, pool);
+        world.addRandomBodies(n, 1, 2, 42);
+        return world;
+    }
+}
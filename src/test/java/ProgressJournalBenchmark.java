@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * saveProgress calls and the end-to-end durable rate of ProgressManager's
+ * journal against the open-append-close FileWriter it replaced, over
+ * -Dbench.results (default 20,000) results. Recovery is checked in
+ * ProgressManagerTest.
+ */
+@Tag("benchmark")
+class ProgressJournalBenchmark {
+    @TempDir
+    Path dir;
+
+    @Test
+    void journalKeepsCallersOffTheDisk() throws IOException {
+        int n = Integer.getInteger("bench.results", 20_000);
+
+        // The writer this replaced: open, append one line, close, on the caller's thread
+        File legacy = dir.resolve("legacy.txt").toFile();
+        LatencyHistogram legacyCalls = new LatencyHistogram();
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            long t = System.nanoTime();
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(legacy, true))) {
+                writer.write("Zero Gravity - Score: " + i % 4 + "\n");
+            }
+            legacyCalls.recordNanos(System.nanoTime() - t);
+        }
+        report("FileWriter per call, no fsync", n, legacyCalls, System.nanoTime() - start);
+
+        Path progress = dir.resolve("progress.txt");
+        ProgressManager manager = new ProgressManager(progress.toString());
+        manager.flush().join(); // recovered and ready
+        LatencyHistogram calls = new LatencyHistogram();
+        start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            long t = System.nanoTime();
+            manager.saveProgress("Zero Gravity", i % 4);
+            calls.recordNanos(System.nanoTime() - t);
+        }
+        manager.flush().join();
+        report("journal, fsync per batch", n, calls, System.nanoTime() - start);
+        long[] counts = manager.getCounts();
+        System.out.printf("  %d batches, %.0f results per fsync%n", counts[1], (double) counts[0] / counts[1]);
+        manager.close();
+
+        assertEquals(n, Files.readAllLines(progress).size());
+        assertTrue(counts[1] < n / 10, counts[1] + " fsyncs for " + n + " results");
+        assertTrue(calls.percentileMillis(50) < legacyCalls.percentileMillis(50),
+                "caller p50 " + calls.percentileMillis(50) + " ms against " + legacyCalls.percentileMillis(50));
+    }
+
+    private static void report(String name, int n, LatencyHistogram calls, long nanos) {
+        System.out.printf("%-30s caller p50 %6.1f us  p99 %7.1f us  all written after %6.0f ms (%,.0f results/s)%n", name,
+                calls.percentileMillis(50) * 1000, calls.percentileMillis(99) * 1000, nanos / 1e6, n / (nanos / 1e9));
+    }
+}
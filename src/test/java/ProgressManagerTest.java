@@ -0,0 +1,191 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Recovery of the progress journal. The crash tests lay out the files the
+ * way a crash at some point of a fold would leave them: a real manager
+ * journals the results, and its journal is copied before it folds; a
+ * checkpoint record and part of the folded lines are added by hand where
+ * the crash came mid-fold. Reopened, the progress file must hold every
+ * surviving result exactly once, in order.
+ */
+class ProgressManagerTest {
+    private static final int RESULTS = 200;
+    private static final String EARLIER = "Earlier - Score: 1\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void closeFoldsEveryResultIntoTheProgressFile() throws IOException {
+        Path txt = dir.resolve("progress.txt");
+        ProgressManager manager = new ProgressManager(txt.toString());
+        for (int i = 0; i < RESULTS; i++)
+            manager.saveProgress("Zero Gravity", i % 4);
+        manager.flush().join();
+        assertEquals(RESULTS, manager.getCounts()[0]);
+        manager.close();
+        List<String> lines = Files.readAllLines(txt);
+        assertEquals(RESULTS, lines.size());
+        for (int i = 0; i < RESULTS; i++)
+            assertTrue(lines.get(i).startsWith("Zero Gravity - Score: " + i % 4 + " @ "), lines.get(i));
+        assertEquals(0, Files.size(Path.of(txt + ".journal")));
+    }
+
+    @Test
+    void progressFilesFromBeforeTimesWereRecordedStillLoad() throws IOException {
+        Path txt = dir.resolve("progress.txt");
+        String old = "Zero Gravity - Score: 2\nZero Gravity - Score: 3\n";
+        Files.writeString(txt, old);
+        ProgressManager manager = new ProgressManager(txt.toString());
+        assertEquals(2, manager.getStats().attempts("Zero Gravity"));
+        assertEquals(3, manager.getStats().best("Zero Gravity"));
+        manager.saveProgress("Zero Gravity", 1);
+        manager.close();
+        String now = Files.readString(txt);
+        assertTrue(now.startsWith(old), "old lines kept as they were");
+        assertTrue(now.substring(old.length()).matches("Zero Gravity - Score: 1 @ \\d+\n"), now);
+    }
+
+    @Test
+    void aProgressFileTakesOneLearnersResults() {
+        ProgressManager manager = new ProgressManager(dir.resolve("progress.txt").toString());
+        manager.saveProgress("ada", "Zero Gravity", 3);
+        manager.saveProgress("ada", "Zero Gravity", 2);
+        assertThrows(IllegalArgumentException.class, () -> manager.saveProgress("grace", "Zero Gravity", 1));
+        assertEquals(2, manager.getStats().attempts("Zero Gravity"));
+        manager.close();
+    }
+
+    @Test
+    void statsStillLoadWhenRecoveryFails() throws IOException {
+        Path txt = dir.resolve("progress.txt");
+        Files.writeString(txt, "Zero Gravity - Score: 2\nZero Gravity - Score: 3 @ 5000\n");
+        Files.createDirectory(Path.of(txt + ".journal")); // the journal can't be opened
+        ProgressManager manager = new ProgressManager(txt.toString());
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertEquals(2, manager.getStats().attempts("Zero Gravity"));
+            assertEquals(3, manager.getStats().latest("Zero Gravity"));
+        });
+    }
+
+    @Test
+    void savesFailOnceTheWriterHasStopped() throws IOException {
+        Path txt = dir.resolve("progress.txt");
+        Files.createDirectory(Path.of(txt + ".journal"));
+        ProgressManager broken = new ProgressManager(txt.toString());
+        assertThrows(CompletionException.class, () -> broken.flush().join());
+        assertThrows(IllegalStateException.class, () -> broken.saveProgress("Zero Gravity", 2));
+        assertThrows(IllegalStateException.class, () -> broken.saveProgress("ada", "Zero Gravity", 2));
+        assertEquals(0, broken.getStats().attempts("Zero Gravity"), "nothing counted that wasn't saved");
+
+        ProgressManager closed = new ProgressManager(dir.resolve("closed.txt").toString());
+        closed.saveProgress("Zero Gravity", 1);
+        closed.close();
+        assertThrows(IllegalStateException.class, () -> closed.saveProgress("Zero Gravity", 2));
+        assertThrows(CompletionException.class, () -> closed.flush().join());
+        assertEquals(List.of("Zero Gravity"), Files.readAllLines(dir.resolve("closed.txt")).stream()
+                .map(line -> line.substring(0, line.indexOf(" - "))).toList());
+    }
+
+    @Test
+    void crashBeforeAFold() throws IOException {
+        Crash crash = crash();
+        assertEquals(crash.folded, reopen(EARLIER, crash.journal));
+    }
+
+    @Test
+    void tornRecordAtTheEnd() throws IOException {
+        Crash crash = crash();
+        byte[] torn = Arrays.copyOf(crash.journal, crash.journal.length + 13);
+        System.arraycopy(crash.journal, 0, torn, crash.journal.length, 13); // a header and a bit
+        assertEquals(crash.folded, reopen(EARLIER, torn));
+    }
+
+    @Test
+    void corruptLastRecord() throws IOException {
+        Crash crash = crash();
+        byte[] corrupt = crash.journal.clone();
+        corrupt[corrupt.length - 1] ^= 0x55;
+        String lost = crash.folded.substring(0, crash.folded.lastIndexOf('\n', crash.folded.length() - 2) + 1);
+        assertEquals(lost, reopen(EARLIER, corrupt));
+    }
+
+    @Test
+    void crashHalfwayThroughWritingAFold() throws IOException {
+        Crash crash = crash();
+        int half = EARLIER.length() + (crash.folded.length() - EARLIER.length()) / 2;
+        assertTrue(crash.folded.charAt(half - 1) != '\n', "cut mid-line");
+        assertEquals(crash.folded, reopen(crash.folded.substring(0, half), checkpointed(crash.journal)));
+    }
+
+    @Test
+    void crashBeforeTheJournalReset() throws IOException {
+        Crash crash = crash();
+        assertEquals(crash.folded, reopen(crash.folded, checkpointed(crash.journal)));
+    }
+
+    @Test
+    void aCheckpointWithNoResultsAfterItStillRollsBack() throws IOException {
+        assertEquals(EARLIER, reopen(EARLIER + "Half a li", checkpointed(new byte[0])));
+    }
+
+    // The journal of RESULTS results as it was before their fold, and the progress file once folded
+    private record Crash(byte[] journal, String folded) {
+    }
+
+    private Crash crash() throws IOException {
+        Path scratch = Files.createTempDirectory(dir, "before-crash"), txt = scratch.resolve("progress.txt");
+        Files.writeString(txt, EARLIER);
+        ProgressManager manager = new ProgressManager(txt.toString());
+        for (int i = 0; i < RESULTS; i++)
+            manager.saveProgress("Crash test", i);
+        manager.flush().join();
+        byte[] journal = Files.readAllBytes(Path.of(txt + ".journal")); // what a crash now would leave
+        manager.close();
+        String folded = Files.readString(txt);
+        assertEquals(1 + RESULTS, folded.lines().count());
+        return new Crash(journal, folded);
+    }
+
+    // The journal with the checkpoint a fold of EARLIER's file writes before it starts
+    private static byte[] checkpointed(byte[] journal) {
+        byte[] payload = ByteBuffer.allocate(9).put((byte) 2).putLong(EARLIER.length()).array();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        byte[] record = ByteBuffer.allocate(8 + payload.length).putInt(payload.length).putInt((int) crc.getValue())
+                .put(payload).array();
+        byte[] out = Arrays.copyOf(journal, journal.length + record.length);
+        System.arraycopy(record, 0, out, journal.length, record.length);
+        return out;
+    }
+
+    // Opens a manager on these files, lets it recover and fold, and returns the progress file
+    private String reopen(String progress, byte[] journal) throws IOException {
+        Path txt = dir.resolve("progress.txt"), journalFile = Path.of(txt + ".journal");
+        Files.writeString(txt, progress);
+        Files.write(journalFile, journal);
+        ProgressManager manager = new ProgressManager(txt.toString());
+        manager.compact().join();
+        manager.close();
+        assertArrayEquals(new byte[0], Files.readAllBytes(journalFile), "journal emptied");
+        return new String(Files.readAllBytes(txt), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Loading and querying ProgressStats over a progress file of
+ * -Dbench.lines (default 2,000,000) results across five lessons. The file
+ * is loaded three ways: line by line with BufferedReader and split (the
+ * obvious way), mapped and parsed on one worker, and mapped and parsed on
+ * the common pool. All three must agree. Then the queries are timed.
+ */
+@Tag("benchmark")
+class ProgressStatsBenchmark {
+    private static final String[] LESSONS = { "Zero Gravity", "Orbits", "The Moon", "Rockets", "Space Food" };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mappedParallelLoadAndConstantTimeQueries() throws IOException {
+        int n = Integer.getInteger("bench.lines", 2_000_000);
+        Path file = dir.resolve("progress.txt");
+        long t0 = 1_700_000_000_000L;
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            Random random = new Random(1);
+            for (int i = 0; i < n; i++)
+                out.write(LESSONS[random.nextInt(LESSONS.length)] + " - Score: " + random.nextInt(4) + " @ "
+                        + (t0 + i * 60_000L) + "\n");
+        }
+        long length = Files.size(file);
+        System.out.printf("%,d lines, %.1f MB, %d cores%n", n, length / 1e6,
+                Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        Map<String, int[]> naive = new HashMap<>(); // lesson -> {attempts, best, latest}
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            for (String line; (line = in.readLine()) != null;) {
+                String[] parts = line.split(" - Score: | @ ");
+                int score = Integer.parseInt(parts[1]);
+                int[] a = naive.computeIfAbsent(parts[0], k -> new int[] { 0, -1, -1 });
+                a[0]++;
+                a[1] = Math.max(a[1], score);
+                a[2] = score;
+            }
+        }
+        double naiveMs = (System.nanoTime() - start) / 1e6;
+        System.out.printf("BufferedReader + split     %6.0f ms%n", naiveMs);
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        double mappedMs = 0;
+        try {
+            for (ForkJoinPool pool : new ForkJoinPool[] { single, ForkJoinPool.commonPool() }) {
+                ProgressStats.parse(file, length, pool); // warm up
+                start = System.nanoTime();
+                int lessons = ProgressStats.parse(file, length, pool).size();
+                double ms = (System.nanoTime() - start) / 1e6;
+                System.out.printf("mapped, %d worker(s)         %6.0f ms%n", pool.getParallelism(), ms);
+                assertEquals(naive.size(), lessons);
+                if (pool == single)
+                    mappedMs = ms;
+            }
+        } finally {
+            single.shutdown();
+        }
+
+        ProgressStats stats = new ProgressStats();
+        stats.loadAsync(file, length, List.of());
+        stats.whenLoaded().join();
+        for (String lesson : LESSONS) {
+            int[] a = naive.get(lesson);
+            assertEquals(a[0], stats.attempts(lesson), lesson);
+            assertEquals(a[1], stats.best(lesson), lesson);
+            assertEquals(a[2], stats.latest(lesson), lesson);
+            assertEquals(a[0], Arrays.stream(stats.distribution(lesson)).sum(), lesson);
+        }
+        long day = 24 * 60 * 60 * 1000L;
+        assertEquals(stats.history("Orbits", t0, t0 + day).size(), stats.history("Orbits", t0, t0 + day / 2).size()
+                + stats.history("Orbits", t0 + day / 2, t0 + day).size());
+
+        int queries = 1_000_000;
+        long sink = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++)
+            sink += stats.best(LESSONS[i % 5]) + stats.attempts(LESSONS[i % 5]) + stats.latest(LESSONS[i % 5]);
+        double aggregateNs = (System.nanoTime() - start) / (3.0 * queries);
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            long from = t0 + (long) (i % 1000) * n * 60L; // windows across the whole history
+            sink += stats.history(LESSONS[i % 5], from, from + 60 * 60 * 1000L).size();
+        }
+        double historyNs = (System.nanoTime() - start) / (double) queries;
+        stats.record(new ProgressManager.Result(t0 + (long) n * 60_000L, "Orbits", 3));
+        assertEquals(3, stats.latest("Orbits"));
+        assertEquals(naive.get("Orbits")[0] + 1, stats.attempts("Orbits"));
+        System.out.printf("best/latest/attempts %.0f ns, one-hour history window %.0f ns (%d)%n", aggregateNs,
+                historyNs, sink % 10);
+
+        assertTrue(mappedMs < naiveMs, "mapped on one worker " + mappedMs + " ms against " + naiveMs);
+        assertTrue(aggregateNs < 1_000, aggregateNs + " ns per aggregate query");
+        assertTrue(historyNs < 10_000, historyNs + " ns per history window");
+    }
+}
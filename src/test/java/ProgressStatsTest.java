@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProgressStatsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void chunkedParseCountsEveryLineOnce() throws IOException {
+        Path file = dir.resolve("progress.txt");
+        int n = 120_000; // about 4 MB, so several 1 MB chunks with lines across their edges
+        int[] attempts = new int[3], latest = new int[3];
+        String[] lessons = { "Zero Gravity", "Orbits", "Ünïcode lesson" };
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            Random random = new Random(3);
+            for (int i = 0; i < n; i++) {
+                int l = random.nextInt(3), score = random.nextInt(4);
+                out.write(lessons[l] + " - Score: " + score + " @ " + (1_000_000L + i) + "\n");
+                attempts[l]++;
+                latest[l] = score;
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(3, ProgressStats.parse(file, Files.size(file), pool).size());
+        } finally {
+            pool.shutdown();
+        }
+        ProgressStats stats = load(file, List.of());
+        for (int l = 0; l < 3; l++) {
+            assertEquals(attempts[l], stats.attempts(lessons[l]), lessons[l]);
+            assertEquals(latest[l], stats.latest(lessons[l]), lessons[l]);
+            assertEquals(3, stats.best(lessons[l]));
+        }
+    }
+
+    @Test
+    void oldLinesWithoutTimesAndJournaledResultsBothCount() throws IOException {
+        Path file = dir.resolve("progress.txt");
+        Files.writeString(file, "Zero Gravity - Score: 2\nZero Gravity - Score: 1\nnot a result\n"
+                + "Zero Gravity - Score: 3 @ 5000\n");
+        ProgressStats stats = load(file, List.of(new ProgressManager.Result(6000, "Zero Gravity", 0)));
+        assertEquals(4, stats.attempts("Zero Gravity"));
+        assertEquals(3, stats.best("Zero Gravity"));
+        assertEquals(0, stats.latest("Zero Gravity"), "the journal comes after the file");
+        assertArrayEquals(new int[] { 1, 1, 1, 1 }, stats.distribution("Zero Gravity"));
+        assertEquals(List.of(new ProgressStats.Attempt(0, 2), new ProgressStats.Attempt(0, 1)),
+                stats.history("Zero Gravity", 0, 1));
+    }
+
+    @Test
+    void historyStaysInTimeOrderWhenTheClockGoesBack() throws IOException {
+        ProgressStats stats = load(dir.resolve("missing.txt"), List.of());
+        for (long t : new long[] { 100, 300, 200, 400, 50 })
+            stats.record(new ProgressManager.Result(t, "Orbits", (int) (t / 100)));
+        assertEquals(List.of(new ProgressStats.Attempt(100, 1), new ProgressStats.Attempt(200, 2),
+                new ProgressStats.Attempt(300, 3)), stats.history("Orbits", 100, 400));
+        assertEquals(5, stats.history("Orbits", 0, Long.MAX_VALUE).size());
+        assertEquals(0, stats.latest("Orbits"), "latest is the last recorded, not the last in time");
+        assertEquals(-1, stats.best("Never taken"));
+        assertEquals(0, stats.attempts("Never taken"));
+    }
+
+    @Test
+    void resultsRecordedWhileLoadingAreKept() throws IOException {
+        Path file = dir.resolve("progress.txt");
+        Files.writeString(file, "Orbits - Score: 1 @ 10\n");
+        ProgressStats stats = new ProgressStats();
+        stats.record(new ProgressManager.Result(20, "Orbits", 2)); // before the load even starts
+        stats.loadAsync(file, Files.size(file), List.of());
+        assertEquals(2, stats.attempts("Orbits"));
+        assertEquals(2, stats.latest("Orbits"));
+    }
+
+    private static ProgressStats load(Path file, List<ProgressManager.Result> journaled) throws IOException {
+        ProgressStats stats = new ProgressStats();
+        stats.loadAsync(file, Files.exists(file) ? Files.size(file) : 0, journaled);
+        stats.whenLoaded().join();
+        return stats;
+    }
+}
@@ -0,0 +1,56 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class QualityGovernorTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void overBudgetLowersOneLevelPerWindowDownToTheMinimum() {
+        QualityGovernor governor = new QualityGovernor(8, 1, 4, 4);
+        for (int i = 0; i < 24; i++)
+            governor.recordFrame(12 * MS);
+        assertEquals(4, governor.getLevelIndex(), "one frame short of a window decides nothing");
+        governor.recordFrame(12 * MS);
+        assertEquals(3, governor.getLevelIndex());
+        assertEquals(AnimationClock.shared().getPeriod(), governor.getLevel().frameMs(), "frame rate applied");
+        for (int i = 0; i < 5; i++)
+            window(governor, 12 * MS);
+        assertEquals(1, governor.getLevelIndex(), "stops at the minimum");
+        assertEquals(12.0, governor.getAverageFrameMillis(), 1e-9);
+        assertArrayEquals(new long[] { 3, 0 }, governor.getChangeCounts());
+    }
+
+    @Test
+    void raisesOnlyAfterSeveralCalmWindowsUpToTheMaximum() {
+        QualityGovernor governor = new QualityGovernor(8, 0, 3, 0);
+        for (int i = 0; i < 3; i++)
+            window(governor, 2 * MS);
+        assertEquals(0, governor.getLevelIndex(), "three calm windows are not enough");
+        window(governor, 6 * MS); // under budget but without headroom: the count starts over
+        for (int i = 0; i < 3; i++)
+            window(governor, 2 * MS);
+        assertEquals(0, governor.getLevelIndex());
+        window(governor, 2 * MS);
+        assertEquals(1, governor.getLevelIndex());
+        for (int i = 0; i < 40; i++)
+            window(governor, 2 * MS);
+        assertEquals(3, governor.getLevelIndex(), "stops at the maximum");
+        assertArrayEquals(new long[] { 0, 3 }, governor.getChangeCounts());
+    }
+
+    @Test
+    void limitsAreClampedToTheKnownLevels() {
+        QualityGovernor governor = new QualityGovernor(8, -3, 99, 99);
+        assertEquals(QualityGovernor.LEVELS.length - 1, governor.getLevelIndex());
+        assertEquals(2, new QualityGovernor(8, 2, 4, 0).getLevelIndex(), "starts no lower than the minimum");
+        assertEquals(3, new QualityGovernor(8, 3, 1, 0).getLevelIndex(), "max below min means min");
+    }
+
+    // One window's worth of frames, each taking nanos
+    private static void window(QualityGovernor governor, long nanos) {
+        for (int i = 0; i < 25; i++)
+            governor.recordFrame(nanos);
+    }
+}
@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * QuestionBank and ReviewScheduler over generated banks of 1,000 to
+ * 100,000 questions (4 topics, difficulties 1-5), each written to a temp
+ * file and mapped. A simulated learner answers 200,000 questions from one
+ * topic, 5 s apart, 70% of them right. It reports the file size, the heap
+ * held by the bank and scheduler, the time per selection (next plus
+ * answer) and the time to read a question; then what a fresh scheduler
+ * costs against the biggest bank, which is what every new learner pays.
+ */
+@Tag("benchmark")
+class QuestionBankBenchmark {
+    private static final int SELECTIONS = 200_000;
+    private static final int[] SIZES = { 1_000, 10_000, 50_000, 100_000 };
+    private static final String[] TOPICS = { "moon", "orbits", "rockets", QuestionBank.DEFAULT_TOPIC };
+
+    @Test
+    void selectionStaysCheapAsTheBankGrows() throws IOException {
+        run(100, false); // warm up
+        double[] select = new double[SIZES.length];
+        for (int s = 0; s < SIZES.length; s++)
+            select[s] = run(SIZES[s], true);
+        double small = select[0], large = select[SIZES.length - 1];
+        assertTrue(large < small * 4 + 500, large + " ns/selection at 100k against " + small + " at 1k");
+    }
+
+    @Test
+    void aNewLearnerCostsLittleWhateverTheBankSize() throws IOException {
+        int n = SIZES[SIZES.length - 1], learners = 1000;
+        Path file = write(n);
+        try {
+            QuestionBank bank = new QuestionBank(file);
+            ReviewScheduler[] schedulers = new ReviewScheduler[learners];
+            long base = usedHeap();
+            for (int i = 0; i < learners; i++)
+                schedulers[i] = new ReviewScheduler(bank, QuestionBank.DEFAULT_TOPIC);
+            double each = (double) (usedHeap() - base) / learners;
+            for (int i = 0; i < learners; i++) { // a short quiz each
+                for (int q = 0; q < 10; q++)
+                    schedulers[i].answer(schedulers[i].next(q * 5_000L), q % 3 != 0, q * 5_000L);
+            }
+            double afterQuiz = (double) (usedHeap() - base) / learners;
+            System.out.printf("fresh scheduler over %,d questions: %,6.0f bytes; after 10 answers %,6.0f bytes%n", n,
+                    each, afterQuiz);
+            assertEquals(10, schedulers[learners - 1].getSeenCount());
+            assertTrue(each < 2048, each + " bytes for a new learner"); // a dense array per question would be 2 MB
+            assertTrue(afterQuiz < 4096, afterQuiz + " bytes after a quiz");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // ns per selection
+    private static double run(int n, boolean report) throws IOException {
+        Path file = write(n);
+        try {
+            QuestionBank.Question sample = generate(n).get(n / 2);
+            long base = usedHeap();
+            QuestionBank bank = new QuestionBank(file);
+            assertEquals(sample, bank.get(n / 2));
+            ReviewScheduler scheduler = new ReviewScheduler(bank, QuestionBank.DEFAULT_TOPIC);
+
+            Random random = new Random(7);
+            long now = System.currentTimeMillis(), selectNanos = 0, readNanos = 0;
+            for (int i = 0; i < SELECTIONS; i++, now += 5_000) {
+                long start = System.nanoTime();
+                int id = scheduler.next(now);
+                scheduler.answer(id, random.nextInt(10) < 7, now);
+                long mid = System.nanoTime();
+                QuestionBank.Question q = bank.get(id);
+                readNanos += System.nanoTime() - mid;
+                selectNanos += mid - start;
+                assertEquals(QuestionBank.DEFAULT_TOPIC, q.topic(), "question " + id);
+            }
+            long heap = usedHeap() - base;
+            if (report)
+                System.out.printf("n=%7d  file %5.1f MB  heap held %6.1f KB  select %4.0f ns  read %5.0f ns"
+                        + "  seen %,6d  reviews queued %,6d%n", n, Files.size(file) / 1e6, heap / 1024.0,
+                        (double) selectNanos / SELECTIONS, (double) readNanos / SELECTIONS,
+                        scheduler.getSeenCount(), scheduler.getReviewCount());
+            assertEquals(n, bank.size()); // keeps the bank reachable until measured
+            return (double) selectNanos / SELECTIONS;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Path write(int n) throws IOException {
+        Path file = Files.createTempFile("questions", ".bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            QuestionBank.write(generate(n), out);
+        }
+        return file;
+    }
+
+    private static List<QuestionBank.Question> generate(int n) {
+        Random random = new Random(42);
+        List<QuestionBank.Question> questions = new ArrayList<>(n);
+        for (int id = 0; id < n; id++) {
+            List<String> options = new ArrayList<>();
+            for (int o = 0; o < 4; o++)
+                options.add("Answer " + (o + 1) + " to question " + id);
+            questions.add(new QuestionBank.Question(id, TOPICS[random.nextInt(TOPICS.length)], 1 + random.nextInt(5),
+                    "Question " + id + ": what happens to a floating drop of water?", options, random.nextInt(4)));
+        }
+        return questions;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
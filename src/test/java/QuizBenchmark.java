@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Moving between quiz questions, headless: a QuizPanel over -Dbench.questions
+ * (default 500) generated questions with 2 to 6 options. For each question
+ * it answers, moves on, lays the panel out and paints it offscreen, timing
+ * each transition and counting the bytes the EDT allocates for it.
+ */
+@Tag("benchmark")
+class QuizBenchmark {
+    @Test
+    void transitionTimeAndAllocation() throws Exception {
+        int n = Integer.getInteger("bench.questions", 500);
+        QuestionBank bank = QuestionBank.of(questions(n, new Random(42)));
+        SwingUtilities.invokeAndWait(() -> run(bank, n));
+    }
+
+    static List<QuestionBank.Question> questions(int n, Random random) {
+        List<QuestionBank.Question> questions = new ArrayList<>();
+        for (int q = 0; q < n; q++) {
+            String[] options = new String[2 + random.nextInt(5)];
+            for (int o = 0; o < options.length; o++)
+                options[o] = "Option " + (o + 1) + " of question " + q;
+            questions.add(new QuestionBank.Question(q, QuestionBank.DEFAULT_TOPIC, 1,
+                    "Question " + q + ": which of these is right?", List.of(options), random.nextInt(options.length)));
+        }
+        return questions;
+    }
+
+    private static void run(QuestionBank bank, int n) {
+        SessionEngine engine = new SessionEngine(bank, QuestionBank.DEFAULT_TOPIC, QuizPanel.LESSON_NAME, n, (learner, lesson, score) -> {
+        });
+        long session = engine.open("benchmark");
+        QuizPanel quiz = new QuizPanel(null, engine, session);
+        quiz.setSize(1000, 700);
+        BufferedImage frame = new BufferedImage(1000, 700, BufferedImage.TYPE_INT_RGB);
+        render(quiz, frame);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        LatencyHistogram times = new LatencyHistogram();
+        long bytes = 0;
+        int expected = 0;
+        for (int q = 0; q < n - 1; q++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            // Every other answer is wrong
+            QuestionBank.Question question = quiz.getQuestion();
+            int choice = q % 2 == 0 ? question.correct() : (question.correct() + 1) % question.options().size();
+            expected += choice == question.correct() ? 1 : 0;
+            quiz.answer(choice);
+            quiz.next();
+            render(quiz, frame);
+            times.recordNanos(System.nanoTime() - start);
+            bytes += threads.getThreadAllocatedBytes(thread) - allocated;
+        }
+        System.out.printf("%d transitions: %s, %.1f KB allocated each%n", times.count(), times,
+                bytes / 1024.0 / Math.max(1, times.count()));
+        // Finish through the engine, since the panel would switch to the (absent) app's result screen
+        expected += quiz.getQuestion().correct() == 0 ? 1 : 0;
+        quiz.answer(0);
+        assertNull(engine.next(session), "quiz over");
+        assertEquals(expected, engine.outcome(session).score());
+    }
+
+    // What validate() and a repaint would do, without a window
+    private static void render(JComponent panel, BufferedImage frame) {
+        layout(panel);
+        Graphics2D g = frame.createGraphics();
+        panel.paint(g);
+        g.dispose();
+    }
+
+    private static void layout(Container container) {
+        container.doLayout();
+        for (Component child : container.getComponents())
+            if (child instanceof Container c)
+                layout(c);
+    }
+}
@@ -0,0 +1,72 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.JButton;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+/** Each question is bound into the same components; option buttons are only ever added. */
+class QuizPanelTest {
+    @Test
+    void questionsAreBoundIntoTheSameButtons() throws Exception {
+        QuestionBank bank = QuestionBank.of(QuizBenchmark.questions(40, new Random(7)));
+        SwingUtilities.invokeAndWait(() -> {
+            SessionEngine engine = new SessionEngine(bank, QuestionBank.DEFAULT_TOPIC, QuizPanel.LESSON_NAME, 40, (l, lesson, s) -> {
+            });
+            long session = engine.open("test");
+            QuizPanel quiz = new QuizPanel(null, engine, session);
+            List<JButton> before = optionButtons(quiz);
+            int most = 0, expected = 0;
+            for (int q = 0; q < 40; q++) {
+                QuestionBank.Question question = quiz.getQuestion();
+                int options = question.options().size();
+                most = Math.max(most, options);
+                List<JButton> buttons = optionButtons(quiz);
+                assertEquals(most, buttons.size(), "one button per option of the longest question so far");
+                for (int i = 0; i < before.size(); i++)
+                    assertSame(before.get(i), buttons.get(i), "kept, not rebuilt");
+                for (int i = 0; i < buttons.size(); i++) {
+                    assertEquals(i < options, buttons.get(i).isVisible());
+                    if (i < options)
+                        assertEquals(question.options().get(i), buttons.get(i).getText());
+                }
+                int choice = q % 3 == 0 ? question.correct() : (question.correct() + 1) % options;
+                expected += choice == question.correct() ? 1 : 0;
+                quiz.answer(choice);
+                for (JButton b : buttons)
+                    assertFalse(b.isEnabled(), "answered once");
+                if (q < 39)
+                    quiz.next();
+                before = buttons;
+            }
+            assertNull(engine.next(session));
+            assertEquals(expected, engine.outcome(session).score());
+        });
+    }
+
+    // The option buttons, in order; every one has had an option bound into it, hidden or not
+    private static List<JButton> optionButtons(Container root) {
+        List<JButton> buttons = new ArrayList<>();
+        collect(root, buttons);
+        buttons.removeIf(b -> !b.getText().startsWith("Option "));
+        return buttons;
+    }
+
+    private static void collect(Container container, List<JButton> buttons) {
+        for (Component child : container.getComponents()) {
+            if (child instanceof JButton b)
+                buttons.add(b);
+            else if (child instanceof Container c)
+                collect(c, buttons);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class ReviewSchedulerTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L, RELEARN = 60_000;
+
+    @Test
+    void rightAnswersSpaceOutAfterSm2AndAWrongOneStartsOver() {
+        ReviewScheduler scheduler = new ReviewScheduler(bank(1, 1), QuestionBank.DEFAULT_TOPIC);
+        long now = 1_000_000;
+        int id = scheduler.next(now);
+        scheduler.answer(id, true, now);
+        assertEquals(now + DAY, scheduler.getDue(id));
+        assertEquals(id, scheduler.next(now += DAY));
+        scheduler.answer(id, true, now);
+        assertEquals(now + 6 * DAY, scheduler.getDue(id));
+        assertEquals(id, scheduler.next(now += 6 * DAY));
+        scheduler.answer(id, true, now);
+        assertEquals(now + 15 * DAY, scheduler.getDue(id), "6 days times an easiness of 2.5");
+        assertEquals(id, scheduler.next(now += 15 * DAY));
+        scheduler.answer(id, false, now);
+        assertEquals(now + RELEARN, scheduler.getDue(id));
+        assertEquals(id, scheduler.next(now += RELEARN));
+        scheduler.answer(id, true, now);
+        assertEquals(now + DAY, scheduler.getDue(id), "back to the first interval");
+    }
+
+    @Test
+    void overdueReviewsComeBeforeNewQuestionsSoonestFirst() {
+        ReviewScheduler scheduler = new ReviewScheduler(bank(50, 1), QuestionBank.DEFAULT_TOPIC);
+        int[] missed = new int[3];
+        for (int i = 0; i < 3; i++) {
+            missed[i] = scheduler.next(i * 1000L);
+            scheduler.answer(missed[i], false, i * 1000L);
+        }
+        assertEquals(3, scheduler.getReviewCount());
+        int fresh = scheduler.next(10_000); // nothing due yet
+        assertEquals(4, scheduler.getSeenCount());
+        scheduler.answer(fresh, true, 10_000);
+        long later = 10 * RELEARN;
+        for (int i = 0; i < 3; i++) {
+            int id = scheduler.next(later);
+            assertEquals(missed[i], id, "review " + i);
+            scheduler.answer(id, true, later);
+        }
+        scheduler.next(later);
+        assertEquals(5, scheduler.getSeenCount(), "then new questions again");
+    }
+
+    @Test
+    void difficultyFollowsTheLastFourAnswers() {
+        QuestionBank bank = bank(20, 3);
+        ReviewScheduler scheduler = new ReviewScheduler(bank, QuestionBank.DEFAULT_TOPIC);
+        assertEquals(1, scheduler.getDifficulty());
+        long now = 0;
+        for (int i = 0; i < 4; i++, now += 1000)
+            scheduler.answer(scheduler.next(now), true, now);
+        assertEquals(2, scheduler.getDifficulty(), "up after four right");
+        int id = scheduler.next(now);
+        assertEquals(2, bank.get(id).difficulty());
+        scheduler.answer(id, true, now);
+        for (int i = 0; i < 3; i++, now += 1000)
+            scheduler.answer(scheduler.next(now), i == 0, now);
+        assertEquals(1, scheduler.getDifficulty(), "down after half wrong");
+        for (int i = 0; i < 4; i++, now += 1000)
+            scheduler.answer(scheduler.next(now), i != 0, now);
+        assertEquals(1, scheduler.getDifficulty(), "three of four right stays put");
+    }
+
+    @Test
+    void onlySeenQuestionsHoldState() {
+        ReviewScheduler scheduler = new ReviewScheduler(bank(1000, 5), QuestionBank.DEFAULT_TOPIC);
+        assertEquals(0, scheduler.getSeenCount());
+        Set<Integer> asked = new HashSet<>();
+        long now = 0;
+        for (int i = 0; i < 300; i++, now += 1000) { // well past the first array and table sizes
+            int id = scheduler.next(now);
+            assertTrue(asked.add(id), "asked twice: " + id);
+            scheduler.answer(id, true, now);
+            assertEquals(now + DAY, scheduler.getDue(id));
+        }
+        assertEquals(300, scheduler.getSeenCount());
+        assertEquals(300, scheduler.getReviewCount());
+        for (int id : asked)
+            assertTrue(scheduler.getDue(id) > 0, "still found after growing: " + id);
+        for (int id = 0; id < 1000; id++)
+            if (!asked.contains(id))
+                assertEquals(-1, scheduler.getDue(id));
+    }
+
+    @Test
+    void onlyQuestionsHandedOutCanBeAnsweredOrPutBack() {
+        ReviewScheduler scheduler = new ReviewScheduler(bank(10, 1), QuestionBank.DEFAULT_TOPIC);
+        int id = scheduler.next(0);
+        assertThrows(IllegalArgumentException.class, () -> scheduler.answer(id + 1, true, 0));
+        assertThrows(IllegalArgumentException.class, () -> scheduler.putBack(id + 1));
+        scheduler.answer(id, true, 0);
+        assertThrows(IllegalArgumentException.class, () -> scheduler.answer(id, true, 0), "answered already");
+        assertThrows(IllegalArgumentException.class, () -> scheduler.putBack(id));
+    }
+
+    @Test
+    void questionsOutInOneQuizAreNotHandedToAnother() {
+        ReviewScheduler scheduler = new ReviewScheduler(bank(3, 1), QuestionBank.DEFAULT_TOPIC);
+        int a = scheduler.next(0), b = scheduler.next(0);
+        assertTrue(a != b);
+        scheduler.answer(b, true, 0);
+        scheduler.putBack(a);
+        assertEquals(2, scheduler.getReviewCount(), "both back in the rotation");
+        assertEquals(a, scheduler.next(0), "put back unchanged, so still due");
+        int c = scheduler.next(0);
+        assertEquals(3, scheduler.getSeenCount(), "a new one, since b isn't due");
+        assertEquals(b, scheduler.next(0), "nothing new left: b early");
+        assertEquals(0, scheduler.getReviewCount());
+        assertEquals(a, scheduler.next(0), "all three out: share the one due soonest");
+        assertTrue(c != a);
+        scheduler.answer(a, false, 0);
+        assertEquals(0, scheduler.getReviewCount(), "still out in the other quiz");
+        scheduler.answer(a, true, 0);
+        assertEquals(1, scheduler.getReviewCount());
+        assertThrows(IllegalArgumentException.class, () -> scheduler.answer(a, true, 0));
+    }
+
+    @Test
+    void anEmptyTopicHasNothingToAsk() {
+        ReviewScheduler scheduler = new ReviewScheduler(bank(10, 1), "no such topic");
+        assertEquals(-1, scheduler.next(0));
+        assertEquals(0, scheduler.getDifficulty());
+    }
+
+    // n questions on the default topic, difficulties 1 to levels in turn
+    private static QuestionBank bank(int n, int levels) {
+        List<QuestionBank.Question> questions = new ArrayList<>();
+        for (int id = 0; id < n; id++)
+            questions.add(new QuestionBank.Question(id, QuestionBank.DEFAULT_TOPIC, 1 + id % levels,
+                    "Question " + id, List.of("Yes", "No"), 0));
+        return QuestionBank.of(questions);
+    }
+}
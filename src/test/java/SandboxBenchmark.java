@@ -0,0 +1,58 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Step time of PhysicsWorld for each body count (-Dbench.bodies, default
+ * 1000,2000,5000,10000; dust-sized bodies in a 1000x620 box, orbit
+ * gravity), with one worker and with the common pool. Both runs have to
+ * end in exactly the same state, and 2000 bodies have to fit in a 60 fps
+ * frame.
+ */
+@Tag("benchmark")
+class SandboxBenchmark {
+    private static final int STEPS = 200;
+
+    @Test
+    void stepTimeByBodyCount() {
+        int[] sizes = Arrays.stream(System.getProperty("bench.bodies", "1000,2000,5000,10000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        ForkJoinPool single = new ForkJoinPool(1);
+        System.out.printf("cores=%d, %d steps of 1/60 s, orbit gravity%n", Runtime.getRuntime().availableProcessors(),
+                STEPS);
+        try {
+            for (int n : sizes) {
+                PhysicsWorld serial = world(n, single);
+                PhysicsWorld parallel = world(n, ForkJoinPool.commonPool());
+                double serialMs = time(serial), parallelMs = time(parallel);
+                System.out.printf("n=%6d  1 worker %7.2f ms/step  pool(%d) %7.2f ms/step%n", n, serialMs,
+                        ForkJoinPool.commonPool().getParallelism(), parallelMs);
+                assertEquals(serial.stateHash(), parallel.stateHash(), n + " bodies: runs differ");
+                if (n == 2000)
+                    assertTrue(parallelMs < 1000 / 60.0, "2000 bodies take " + parallelMs + " ms/step");
+            }
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    private static PhysicsWorld world(int n, ForkJoinPool pool) {
+        PhysicsWorld world = new PhysicsWorld(1000, 620, pool);
+        world.addRandomBodies(n, 1, 2, 42); // dust-sized, so 10k bodies don't fill the box
+        return world;
+    }
+
+    private static double time(PhysicsWorld world) {
+        for (int i = 0; i < 20; i++)
+            world.step(1 / 60f); // warm up
+        long start = System.nanoTime();
+        for (int i = 0; i < STEPS; i++)
+            world.step(1 / 60f);
+        return (System.nanoTime() - start) / 1e6 / STEPS;
+    }
+}
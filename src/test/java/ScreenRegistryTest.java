@@ -0,0 +1,200 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.CardLayout;
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.BooleanSupplier;
+
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Screens are built on demand, behind the splash while their images decode. */
+class ScreenRegistryTest {
+    private JPanel cards;
+    private SplashPanel splash;
+    private ScreenRegistry screens;
+    private final List<String> shown = new ArrayList<>();
+    private static int size = 100; // a new image size per test, so the shared AssetCache never has it yet
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int s = size++;
+        SwingUtilities.invokeAndWait(() -> {
+            cards = new JPanel(new CardLayout());
+            splash = new SplashPanel(null);
+            screens = new ScreenRegistry(cards, splash);
+            screens.register("plain", List.of(), () -> named("plain"));
+            screens.register("medals", List.of(new AssetCache.Key("gold.png", s, s),
+                    new AssetCache.Key("silver.png", s, s)), () -> named("medals"));
+            screens.register("broken", List.of(new AssetCache.Key("no-such-image.png", 10, 10)),
+                    () -> named("broken"));
+            screens.setOnShown(shown::add);
+        });
+    }
+
+    @Test
+    void aScreenWithoutImagesIsBuiltAndShownAtOnce() throws Exception {
+        onEdt(() -> {
+            screens.show("plain");
+            return null;
+        });
+        assertEquals("plain", onEdt(this::showing));
+        assertEquals(List.of("plain"), shown);
+        assertArrayEquals(new int[] { 1, 0, 0 }, onEdt(screens::getCounts));
+    }
+
+    @Test
+    void theSplashCoversTheWaitForImages() throws Exception {
+        String first = onEdt(() -> {
+            screens.show("medals");
+            return showing();
+        });
+        assertEquals("splash", first);
+        waitFor(() -> "medals".equals(onEdtQuietly(this::showing)));
+        assertEquals(List.of("medals"), shown);
+    }
+
+    @Test
+    void aMissingImageDoesNotStopTheScreen() throws Exception {
+        onEdt(() -> {
+            screens.show("broken");
+            return null;
+        });
+        waitFor(() -> "broken".equals(onEdtQuietly(this::showing)));
+    }
+
+    @Test
+    void aLaterRequestWinsOverOneStillLoading() throws Exception {
+        onEdt(() -> {
+            screens.show("medals");
+            screens.show("plain"); // before the images are in
+            return null;
+        });
+        Thread.sleep(500);
+        assertEquals("plain", onEdt(this::showing));
+        assertEquals(List.of("plain"), shown);
+        assertFalse(onEdt(() -> screens.isBuilt("medals")), "not built for nothing");
+    }
+
+    @Test
+    void theLikelyNextScreenIsPrebuilt() throws Exception {
+        onEdt(() -> {
+            screens.setLikelyNext("plain", "medals");
+            screens.show("plain");
+            return null;
+        });
+        waitFor(() -> onEdtQuietly(() -> screens.isBuilt("medals")));
+        assertArrayEquals(new int[] { 2, 1, 0 }, onEdt(screens::getCounts));
+        assertEquals("plain", onEdt(this::showing), "prebuilt, not shown");
+    }
+
+    @Test
+    void evictionKeepsOnlyTheScreenShowing() throws Exception {
+        onEdt(() -> {
+            screens.show("plain");
+            screens.show("broken");
+            return null;
+        });
+        waitFor(() -> "broken".equals(onEdtQuietly(this::showing)));
+        assertEquals(1, onEdt(screens::evictInactive));
+        assertTrue(onEdt(() -> screens.isBuilt("broken")));
+        assertFalse(onEdt(() -> screens.isBuilt("plain")));
+        onEdt(() -> {
+            screens.show("plain"); // simply built again
+            return null;
+        });
+        assertEquals("plain", onEdt(this::showing));
+    }
+
+    @Test
+    void aScreenInProgressIsNotEvicted() throws Exception {
+        boolean[] busy = { true };
+        onEdt(() -> {
+            screens.register("quiz", List.of(), () -> new Quiz(busy));
+            screens.show("quiz");
+            screens.show("plain");
+            return null;
+        });
+        assertEquals(0, onEdt(screens::evictInactive), "mid-quiz");
+        assertTrue(onEdt(() -> screens.isBuilt("quiz")));
+        busy[0] = false;
+        assertEquals(1, onEdt(screens::evictInactive), "finished");
+        assertFalse(onEdt(() -> screens.isBuilt("quiz")));
+    }
+
+    @Test
+    void unknownScreensAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> screens.show("nowhere"));
+    }
+
+    private static final class Quiz extends JPanel implements ScreenRegistry.InProgress {
+        private final boolean[] busy;
+
+        Quiz(boolean[] busy) {
+            this.busy = busy;
+            setName("quiz");
+        }
+
+        @Override
+        public boolean inProgress() {
+            return busy[0];
+        }
+    }
+
+    private static JPanel named(String name) {
+        JPanel panel = new JPanel();
+        panel.setName(name);
+        return panel;
+    }
+
+    // The visible card
+    private String showing() {
+        for (Component card : cards.getComponents()) {
+            if (card.isVisible())
+                return card == splash ? "splash" : card.getName();
+        }
+        return null;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws Exception {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(20);
+        }
+    }
+
+    private static <T> T onEdtQuietly(Callable<T> task) {
+        try {
+            return onEdt(task);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> T onEdt(Callable<T> task) throws Exception {
+        Object[] result = new Object[1];
+        Exception[] error = new Exception[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result[0] = task.call();
+            } catch (Exception e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null)
+            throw error[0];
+        @SuppressWarnings("unchecked")
+        T t = (T) result[0];
+        return t;
+    }
+}
@@ -0,0 +1,138 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SessionEngineTest {
+    private static final long MINUTE = 60_000;
+    private static final String LESSON = "Orbits";
+
+    @Test
+    void aQuizRunsFromLessonToResult() {
+        List<String> saved = new ArrayList<>();
+        SessionEngine engine = new SessionEngine(bank(10), QuestionBank.DEFAULT_TOPIC, LESSON, 3,
+                (learner, lesson, score) -> saved.add(learner + " " + score));
+        long id = engine.open("ada");
+        assertEquals(SessionEngine.Stage.LESSON, engine.stage(id));
+        SessionEngine.Step step = engine.startQuiz(id);
+        for (int n = 1; n <= 3; n++) {
+            assertEquals(n, step.number());
+            engine.answer(id, n == 2 ? 1 : step.question().correct());
+            step = engine.next(id);
+        }
+        assertNull(step);
+        assertEquals(SessionEngine.Stage.RESULT, engine.stage(id));
+        assertEquals(new SessionEngine.Outcome(2, 3), engine.outcome(id));
+        assertEquals(List.of("ada 2"), saved);
+        engine.close(id);
+        assertEquals(SessionEngine.Stage.CLOSED, engine.stage(id));
+    }
+
+    @Test
+    void sessionsOfOneLearnerEachAnswerTheirOwnQuestion() {
+        List<String> saved = new ArrayList<>();
+        SessionEngine engine = new SessionEngine(bank(10), QuestionBank.DEFAULT_TOPIC, LESSON, 3,
+                (learner, lesson, score) -> saved.add(learner + " " + score));
+        long phone = engine.open("ada"), laptop = engine.open("ada");
+        SessionEngine.Step a = engine.startQuiz(phone), b = engine.startQuiz(laptop);
+        for (int n = 1; n <= 3; n++) {
+            assertNotEquals(a.question().id(), b.question().id(), "question " + n);
+            engine.answer(laptop, b.question().correct()); // out of order with the other session
+            engine.answer(phone, 1);
+            assertThrows(IllegalStateException.class, () -> engine.answer(phone, 0));
+            a = engine.next(phone);
+            b = engine.next(laptop);
+        }
+        assertEquals(new SessionEngine.Outcome(0, 3), engine.outcome(phone));
+        assertEquals(new SessionEngine.Outcome(3, 3), engine.outcome(laptop));
+        assertEquals(List.of("ada 0", "ada 3"), saved);
+    }
+
+    @Test
+    void aResultTheSinkRejectsLeavesTheQuizToFinishAgain() {
+        List<String> saved = new ArrayList<>();
+        boolean[] down = { true };
+        SessionEngine engine = new SessionEngine(bank(10), QuestionBank.DEFAULT_TOPIC, LESSON, 1,
+                (learner, lesson, score) -> {
+                    if (down[0])
+                        throw new IllegalStateException("Progress writer has stopped");
+                    saved.add(learner + " " + lesson + " " + score);
+                });
+        long id = engine.open("ada");
+        engine.answer(id, engine.startQuiz(id).question().correct());
+        assertThrows(IllegalStateException.class, () -> engine.next(id));
+        assertEquals(SessionEngine.Stage.QUIZ, engine.stage(id), "not finished while unsaved");
+        assertNull(engine.outcome(id));
+        assertEquals(0, engine.getCounts()[1]);
+        down[0] = false;
+        assertNull(engine.next(id));
+        assertEquals(SessionEngine.Stage.RESULT, engine.stage(id));
+        assertEquals(new SessionEngine.Outcome(1, 1), engine.outcome(id));
+        assertEquals(List.of("ada Orbits 1"), saved);
+        assertEquals(1, engine.getCounts()[1]);
+    }
+
+    @Test
+    void sessionsOutnumberingTheQuestionsShareThem() {
+        SessionEngine engine = new SessionEngine(bank(1), QuestionBank.DEFAULT_TOPIC, LESSON, 1, (l, lesson, s) -> {
+        });
+        long[] ids = { engine.open("ada"), engine.open("ada"), engine.open("ada") };
+        for (long id : ids)
+            assertEquals(0, engine.startQuiz(id).question().id());
+        for (long id : ids) {
+            assertTrue(engine.answer(id, 0));
+            assertNull(engine.next(id));
+        }
+    }
+
+    @Test
+    void aQuestionLeftUnansweredGoesBackToTheSchedule() {
+        SessionEngine engine = new SessionEngine(bank(2), QuestionBank.DEFAULT_TOPIC, LESSON, 1, (l, lesson, s) -> {
+        });
+        long first = engine.open("ada");
+        int question = engine.startQuiz(first).question().id();
+        assertEquals(question, engine.startQuiz(first).question().id(), "started over: asked again");
+        engine.close(first);
+        long second = engine.open("ada");
+        assertEquals(question, engine.startQuiz(second).question().id(), "closed unanswered: asked again");
+        engine.answer(second, 0);
+        assertNotEquals(question, engine.startQuiz(second).question().id());
+    }
+
+    @Test
+    void idleLearnersLoseTheirScheduleAndActiveOnesKeepIt() {
+        SessionEngine engine = new SessionEngine(bank(10), QuestionBank.DEFAULT_TOPIC, LESSON, 3, (l, lesson, s) -> {
+        });
+        long ada = engine.open("ada"), grace = engine.open("grace"), grace2 = engine.open("grace");
+        assertEquals(2, engine.getCounts()[2], "one schedule per learner");
+        engine.close(ada);
+        engine.close(grace);
+        long now = System.currentTimeMillis();
+        assertEquals(0, engine.evictIdle(now + 29 * MINUTE), "not idle long enough");
+        assertEquals(1, engine.evictIdle(now + 31 * MINUTE), "ada only; grace still has a session open");
+        assertEquals(1, engine.getCounts()[2]);
+        assertNotNull(engine.startQuiz(grace2));
+        engine.close(grace2);
+        assertEquals(1, engine.evictIdle(System.currentTimeMillis() + 31 * MINUTE));
+        assertEquals(0, engine.getCounts()[2]);
+
+        long back = engine.open("ada"); // starts over with a fresh schedule
+        assertEquals(1, engine.getCounts()[2]);
+        assertNotNull(engine.startQuiz(back));
+    }
+
+    private static QuestionBank bank(int n) {
+        List<QuestionBank.Question> questions = new ArrayList<>();
+        for (int id = 0; id < n; id++)
+            questions.add(new QuestionBank.Question(id, QuestionBank.DEFAULT_TOPIC, 1, "Question " + id,
+                    List.of("Yes", "No"), 0));
+        return QuestionBank.of(questions);
+    }
+}
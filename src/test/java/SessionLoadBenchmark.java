@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Load on SessionEngine: -Dbench.students (default 2,000) virtual threads
+ * for -Dbench.seconds (10), sharing -Dbench.learners (500) learner names,
+ * so each learner has several sessions open at once on one schedule. Each
+ * student loops: open a session, take the quiz (answering 70% right), read
+ * the result and close, with no think time. Each learner's results go to
+ * their own ProgressManager journal. It reports sessions per second and
+ * latency percentiles for each step and for whole sessions. No session may
+ * fail, and every finished quiz must reach its learner's progress stats.
+ */
+@Tag("benchmark")
+class SessionLoadBenchmark {
+    private static final String LESSON = "Zero Gravity";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void thousandsOfSessionsSharingLearners() throws Exception {
+        int students = Integer.getInteger("bench.students", 2_000);
+        int seconds = Integer.getInteger("bench.seconds", 10);
+        int learners = Integer.getInteger("bench.learners", 500);
+        ConcurrentHashMap<String, ProgressManager> progress = new ConcurrentHashMap<>();
+        SessionEngine engine = new SessionEngine(QuestionBank.shared(), QuestionBank.DEFAULT_TOPIC, LESSON,
+                Integer.getInteger("quiz.length", 3), (learner, lesson, score) -> progress
+                        .computeIfAbsent(learner, k -> new ProgressManager(dir.resolve(k + ".txt").toString()))
+                        .saveProgress(learner, lesson, score));
+
+        LatencyHistogram sessionTimes = new LatencyHistogram(), openTimes = new LatencyHistogram(),
+                askTimes = new LatencyHistogram(), answerTimes = new LatencyHistogram();
+        AtomicLong failures = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < students; i++) {
+                String learner = "student-" + i % learners;
+                threads.execute(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            long t0 = System.nanoTime();
+                            long id = engine.open(learner);
+                            long t1 = System.nanoTime();
+                            openTimes.recordNanos(t1 - t0);
+                            SessionEngine.Step step = engine.startQuiz(id);
+                            askTimes.recordNanos(System.nanoTime() - t1);
+                            while (step != null) {
+                                QuestionBank.Question q = step.question();
+                                int choice = random.nextInt(10) < 7 ? q.correct()
+                                        : (q.correct() + 1) % q.options().size();
+                                long t = System.nanoTime();
+                                engine.answer(id, choice);
+                                long u = System.nanoTime();
+                                answerTimes.recordNanos(u - t);
+                                // Virtual threads aren't time-sliced: let the other students in, so
+                                // a learner's sessions overlap mid-quiz even on one core
+                                Thread.yield();
+                                u = System.nanoTime();
+                                step = engine.next(id);
+                                askTimes.recordNanos(System.nanoTime() - u);
+                            }
+                            if (engine.outcome(id) == null)
+                                failures.incrementAndGet();
+                            engine.close(id);
+                            sessionTimes.recordNanos(System.nanoTime() - t0);
+                        } catch (RuntimeException e) {
+                            if (failures.getAndIncrement() == 0)
+                                e.printStackTrace();
+                        }
+                    }
+                });
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long saved = 0;
+        for (ProgressManager p : progress.values()) {
+            p.flush().join();
+            saved += p.getStats().attempts(LESSON);
+        }
+        long[] counts = engine.getCounts();
+        System.out.printf("%,d students (%,d learners) for %.1f s on %d cores: %,d sessions, %,.0f sessions/s%n",
+                students, learners, elapsed, Runtime.getRuntime().availableProcessors(), sessionTimes.count(),
+                sessionTimes.count() / elapsed);
+        print("whole session", sessionTimes);
+        print("open", openTimes);
+        print("question", askTimes);
+        print("answer", answerTimes);
+        System.out.printf("  %,d quizzes saved for %,d learners, %d failures%n", saved, progress.size(),
+                failures.get());
+        progress.values().forEach(ProgressManager::close);
+
+        assertEquals(0, failures.get(), "failed sessions");
+        assertTrue(sessionTimes.count() > 0);
+        assertEquals(counts[1], saved, "finished quizzes against those in the progress stats");
+        assertEquals(0, counts[0], "sessions left open");
+        assertEquals(Math.min(students, learners), progress.size(), "learners with results");
+    }
+
+    // In microseconds, since a step takes well under a millisecond
+    private static void print(String name, LatencyHistogram times) {
+        System.out.printf("  %-14s n=%,-10d p50 %7.1f us  p95 %7.1f us  p99 %7.1f us  p99.9 %9.1f us%n", name,
+                times.count(), times.percentileMillis(50) * 1000, times.percentileMillis(95) * 1000,
+                times.percentileMillis(99) * 1000, times.percentileMillis(99.9) * 1000);
+    }
+}
@@ -0,0 +1,200 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Frame time and allocation of the animated background (90 stars, 3 comets,
+ * 800x600) against the renderer it replaced, which made a new Color and a
+ * fillOval for every star and every tail dot, every frame; and what
+ * repainting only the changed regions saves over a full repaint per tick,
+ * with a lesson's label and buttons on top.
+ */
+@Tag("benchmark")
+class StarCometBackgroundPanelBenchmark {
+    private static final int W = 800, H = 600, FRAMES = 3000, WARMUP = 1000;
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void spriteRendererAllocatesNothingPerFrame() throws Exception {
+        double[][] result = new double[2][];
+        SwingUtilities.invokeAndWait(() -> {
+            result[0] = measureOldRenderer();
+            result[1] = measurePanel();
+        });
+        double[] before = result[0], after = result[1];
+        System.out.printf("fillOval + new Color: %7.1f us/frame, %,8.0f bytes/frame%n", before[0], before[1]);
+        System.out.printf("cached sprites:       %7.1f us/frame, %,8.0f bytes/frame%n", after[0], after[1]);
+        assertTrue(after[1] < before[1] / 100, after[1] + " bytes/frame against " + before[1]);
+        assertTrue(after[0] < before[0], after[0] + " us/frame against " + before[0]);
+    }
+
+    @Test
+    void regionRepaintsPaintLessOfTheBackgroundAndItsChildren() throws Exception {
+        double[][] result = new double[2][];
+        SwingUtilities.invokeAndWait(() -> {
+            result[0] = measureRepaints(true);
+            result[1] = measureRepaints(false);
+        });
+        double[] full = result[0], regions = result[1];
+        System.out.printf("full repaints:   %,9.0f px/tick, children %6.1f us/tick, total %6.1f us/tick%n", full[0],
+                full[1], full[2]);
+        System.out.printf("region repaints: %,9.0f px/tick, children %6.1f us/tick, total %6.1f us/tick%n", regions[0],
+                regions[1], regions[2]);
+        assertTrue(regions[0] < full[0] / 3, regions[0] + " px/tick against " + full[0]);
+        assertTrue(regions[1] < full[1] / 2, regions[1] + " us/tick in children against " + full[1]);
+    }
+
+    // {pixels painted, us painting children, us in all} per tick, at 1000x700 with a lesson on top
+    private static double[] measureRepaints(boolean fullFrames) {
+        OffscreenBackgroundPanel panel = new OffscreenBackgroundPanel(90, 3, 1000, 700, fullFrames);
+        panel.setLayout(new BorderLayout());
+        JLabel lesson = new JLabel("<html><h1>Zero Gravity</h1><p>Astronauts float because they and the station "
+                + "are falling around the Earth together. Gravity is still about 90% as strong up there.</p>"
+                + "<ul><li>Orbit</li><li>Free fall</li><li>Microgravity</li></ul></html>");
+        lesson.setFont(new Font("Comic Sans MS", Font.PLAIN, 22));
+        lesson.setForeground(Color.WHITE);
+        panel.add(lesson, BorderLayout.CENTER);
+        JPanel buttons = new JPanel();
+        buttons.setOpaque(false);
+        for (String text : new String[] { "Back", "Quiz", "Ask", "Next" })
+            buttons.add(new JButton(text));
+        panel.add(buttons, BorderLayout.SOUTH);
+        panel.layOut();
+        double[] result = null;
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            int ticks = round == 0 ? WARMUP : FRAMES;
+            long pixels = panel.getPaintedPixels(), children = panel.getChildPaintNanos(), start = System.nanoTime();
+            for (int i = 0; i < ticks; i++)
+                panel.tick();
+            result = new double[] { (double) (panel.getPaintedPixels() - pixels) / ticks,
+                    (panel.getChildPaintNanos() - children) / 1e3 / ticks, (System.nanoTime() - start) / 1e3 / ticks };
+        }
+        return result;
+    }
+
+    // {us per frame, bytes per frame}
+    private static double[] measurePanel() {
+        StarCometBackgroundPanel panel = new StarCometBackgroundPanel(90, 3, W, H);
+        panel.setSize(W, H);
+        BufferedImage frame = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = frame.createGraphics();
+        long now = 0;
+        double[] result = null;
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long nanos = 0, bytes = allocated();
+            for (int i = 0; i < (round == 0 ? WARMUP : FRAMES); i++) {
+                panel.advance(now += 40_000_000L);
+                long start = System.nanoTime();
+                panel.paintComponent(g);
+                nanos += System.nanoTime() - start;
+            }
+            result = new double[] { nanos / 1e3 / FRAMES, (double) (allocated() - bytes) / FRAMES };
+        }
+        g.dispose();
+        return result;
+    }
+
+    private static double[] measureOldRenderer() {
+        OldRenderer old = new OldRenderer();
+        BufferedImage frame = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = frame.createGraphics();
+        double[] result = null;
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long nanos = 0, bytes = allocated();
+            for (int i = 0; i < (round == 0 ? WARMUP : FRAMES); i++) {
+                old.step();
+                long start = System.nanoTime();
+                old.paint(g);
+                nanos += System.nanoTime() - start;
+            }
+            result = new double[] { nanos / 1e3 / FRAMES, (double) (allocated() - bytes) / FRAMES };
+        }
+        g.dispose();
+        return result;
+    }
+
+    private static long allocated() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+
+    // The background as it used to be drawn
+    private static class OldRenderer {
+        final Random rand = new Random(7);
+        final float[] sx = new float[90], sy = new float[90], brightness = new float[90];
+        final int[] size = new int[90];
+        final float[] cx = new float[3], cy = new float[3], dx = new float[3], dy = new float[3];
+        final int[] length = new int[3], tailAlpha = new int[3];
+        final Color[] color = new Color[3];
+
+        OldRenderer() {
+            for (int i = 0; i < sx.length; i++) {
+                sx[i] = rand.nextInt(W);
+                sy[i] = rand.nextInt(H);
+                size[i] = 1 + rand.nextInt(3);
+                brightness[i] = rand.nextFloat();
+            }
+            for (int i = 0; i < cx.length; i++) {
+                cx[i] = rand.nextInt(W);
+                reset(i);
+            }
+        }
+
+        void reset(int i) {
+            cy[i] = rand.nextInt(H / 2);
+            double angle = Math.PI / 4 + rand.nextDouble() * Math.PI / 3;
+            float speed = 5f + rand.nextFloat() * 4f;
+            dx[i] = (float) (speed * Math.cos(angle));
+            dy[i] = (float) (speed * Math.sin(angle));
+            length[i] = 60 + rand.nextInt(50);
+            tailAlpha[i] = 60 + rand.nextInt(80);
+            color[i] = new Color(255, 255, 80 + rand.nextInt(90));
+        }
+
+        void step() {
+            for (int i = 0; i < sx.length; i++)
+                brightness[i] = Math.max(0, Math.min(1, brightness[i] + (rand.nextFloat() - 0.5f) * 0.1f));
+            for (int i = 0; i < cx.length; i++) {
+                cx[i] += dx[i];
+                cy[i] += dy[i];
+                if (cx[i] > W + 40 || cy[i] > H + 40) {
+                    cx[i] = -40;
+                    reset(i);
+                }
+            }
+        }
+
+        void paint(Graphics2D g) {
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, W, H);
+            for (int s = 0; s < sx.length; s++) {
+                int alpha = (int) (110 + 120 * brightness[s]);
+                g.setColor(new Color(255, 255, 60, alpha));
+                g.fillOval(Math.round(sx[s]), Math.round(sy[s]), size[s], size[s]);
+            }
+            for (int c = 0; c < cx.length; c++) {
+                for (int i = 0; i < length[c]; i += 2) {
+                    int alpha = Math.max(0, tailAlpha[c] - i * 2);
+                    g.setColor(new Color(color[c].getRed(), color[c].getGreen(), color[c].getBlue(), alpha));
+                    g.fillOval((int) (cx[c] - dx[c] * i / 10.0), (int) (cy[c] - dy[c] * i / 10.0), 6, 6);
+                }
+                g.setColor(Color.WHITE);
+                g.fillOval((int) cx[c] - 2, (int) cy[c] - 2, 9, 9);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+class StarCometBackgroundPanelTest {
+    @Test
+    void regionRepaintsLeaveTheSameFrameAsAFullRepaint() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            // Many comets, so plenty of them wrap around while their tails are still on screen
+            OffscreenBackgroundPanel panel = new OffscreenBackgroundPanel(90, 8, 1000, 700, false);
+            for (int tick = 0; tick < 2000; tick++) {
+                panel.tick();
+                int[] want = pixels(panel.expected()), got = pixels(panel.screen);
+                if (!Arrays.equals(want, got))
+                    assertArrayEquals(want, got, "stale pixels after tick " + tick);
+            }
+            long[] repaints = panel.getRepaintCounts();
+            assertTrue(repaints[1] > repaints[0] * 10, "mostly region repaints: " + repaints[1] + " against "
+                    + repaints[0] + " full");
+        });
+    }
+
+    @Test
+    void simulationRunsFixedStepsWhateverTheTickRate() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            StarCometBackgroundPanel panel = new StarCometBackgroundPanel(10, 1, 400, 300);
+            panel.setSize(400, 300);
+            long now = 1_000_000_000L;
+            panel.advance(now); // the first tick runs one step
+            assertEquals(1, panel.getSimulationSteps());
+            for (int i = 0; i < 10; i++)
+                panel.advance(now += 10_000_000L); // 100 ms in 10 ms ticks: two 40 ms steps, 20 ms left over
+            assertEquals(3, panel.getSimulationSteps());
+            panel.advance(now += 60_000_000L); // 80 ms with the leftover
+            assertEquals(5, panel.getSimulationSteps());
+            panel.advance(now += 5_000_000_000L); // a long stall catches up 250 ms at most
+            assertEquals(11, panel.getSimulationSteps());
+            assertEquals(13, panel.getTickCount());
+        });
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+}
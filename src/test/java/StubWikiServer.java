@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the Wikipedia summary endpoint. Answers every title
+ * with a small summary ("<title> is a thing in space."), counts requests,
+ * and injects faults: slow answers, error statuses, and bodies that stall
+ * halfway through.
+ */
+class StubWikiServer implements AutoCloseable {
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    /** Wait before answering each request, in milliseconds. */
+    volatile long delayMs = 0;
+    /** Status for every request; anything but 200 comes with an empty body. */
+    volatile int status = 200;
+    /** Retry-After header (seconds) sent with a non-200 status, if set. */
+    volatile String retryAfter = null;
+    /** How many of the next requests are slowed by slowMs on top of delayMs. */
+    final AtomicInteger slowNext = new AtomicInteger();
+    volatile long slowMs = 0;
+    /** Send the headers and half the body, then hang until the server closes. */
+    volatile boolean stallBody = false;
+
+    StubWikiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/summary/", this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    /** @return The prefix to hand to WikiFetcher.setBaseUrl. */
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/summary/";
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    static String extractFor(String title) {
+        return title + " is a thing in space.";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            String path = exchange.getRequestURI().getRawPath();
+            String title = URLDecoder.decode(path.substring(path.lastIndexOf('/') + 1), StandardCharsets.UTF_8)
+                    .replace('_', ' ');
+            sleep(delayMs + (slowNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0 ? slowMs : 0));
+            if (status != 200) {
+                if (retryAfter != null)
+                    exchange.getResponseHeaders().set("Retry-After", retryAfter);
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] body = ("{\"type\":\"standard\",\"title\":\"" + title + "\",\"extract\":\"" + extractFor(title)
+                    + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                int sent = 0;
+                if (stallBody) {
+                    sent = body.length / 2;
+                    out.write(body, 0, sent);
+                    out.flush();
+                    closed.await();
+                }
+                out.write(body, sent, body.length - sent);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed.countDown();
+        server.stop(0);
+    }
+}
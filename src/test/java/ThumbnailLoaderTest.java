@@ -0,0 +1,194 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Thumbnails against a local image server: decoding straight to the shown
+ * size, the cache's byte budget (-Dchat.imageCacheBytes, set small here so
+ * two thumbnails fit) and one download for everyone waiting on an image.
+ */
+@Timeout(30)
+class ThumbnailLoaderTest {
+    private static final int SIZE = 96, THUMBNAIL_BYTES = 96 * 72 * 4; // the 400x300 images fit to 96x72
+
+    static {
+        System.setProperty("chat.imageCacheBytes", Integer.toString(2 * THUMBNAIL_BYTES + 1000));
+    }
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static HttpServer server;
+    private static final AtomicInteger requests = new AtomicInteger();
+    private static volatile long delayMs = 0;
+    private static byte[] png;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        png = encode(halves(400, 300), "png");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            try (exchange) {
+                Thread.sleep(delayMs);
+                String path = exchange.getRequestURI().getPath();
+                byte[] body = path.startsWith("/missing") ? null
+                        : path.startsWith("/garbage") ? "not an image".getBytes() : png;
+                exchange.sendResponseHeaders(body == null ? 404 : 200, body == null ? -1 : body.length);
+                if (body != null)
+                    exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void largeImagesAreSubsampledWhileDecoding() throws IOException {
+        byte[] big = encode(halves(4000, 3000), "jpg");
+        ImageIO.read(new ByteArrayInputStream(big)); // warm up the reader
+        ThumbnailLoader.decode(new ByteArrayInputStream(big), SIZE, SIZE);
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        BufferedImage full = ImageIO.read(new ByteArrayInputStream(big));
+        long fullBytes = threads.getCurrentThreadAllocatedBytes() - before;
+        before = threads.getCurrentThreadAllocatedBytes();
+        BufferedImage thumbnail = ThumbnailLoader.decode(new ByteArrayInputStream(big), SIZE, SIZE);
+        long thumbnailBytes = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(4000, full.getWidth());
+        assertEquals(SIZE, thumbnail.getWidth(), "fits the box, aspect kept");
+        assertEquals(72, thumbnail.getHeight());
+        assertTrue(fullBytes > 30_000_000, "full decode: " + fullBytes);
+        assertTrue(thumbnailBytes < fullBytes / 20, "subsampled decode allocated " + thumbnailBytes + " bytes");
+        assertTrue(isRed(thumbnail.getRGB(10, 36)) && !isRed(thumbnail.getRGB(85, 36)), "left red, right blue");
+
+        assertNull(ThumbnailLoader.decode(new ByteArrayInputStream("not an image".getBytes()), SIZE, SIZE));
+    }
+
+    @Test
+    void theCacheStaysWithinItsBudgetDroppingTheLeastRecentlyUsed() {
+        // a and b fill the budget (pushing out whatever other tests left)
+        BufferedImage a = ThumbnailLoader.load(url("/a.png"), SIZE, SIZE).join();
+        ThumbnailLoader.load(url("/b.png"), SIZE, SIZE).join();
+        assertEquals(SIZE, a.getWidth());
+        assertEquals(2 * THUMBNAIL_BYTES, ThumbnailLoader.getCounts()[3]);
+        long[] start = ThumbnailLoader.getCounts();
+        assertSame(a, ThumbnailLoader.load(url("/a.png"), SIZE, SIZE).join(), "a is now the most recently used");
+        ThumbnailLoader.load(url("/c.png"), SIZE, SIZE).join();
+
+        long[] counts = ThumbnailLoader.getCounts();
+        assertEquals(1, counts[0] - start[0], "hits");
+        assertEquals(1, counts[1] - start[1], "downloads");
+        assertEquals(1, counts[2] - start[2], "evictions");
+        assertTrue(counts[3] <= 2 * THUMBNAIL_BYTES + 1000, "bytes held: " + counts[3]);
+        int before = requests.get();
+        assertSame(a, ThumbnailLoader.load(url("/a.png"), SIZE, SIZE).join());
+        assertEquals(before, requests.get(), "a still cached");
+        ThumbnailLoader.load(url("/b.png"), SIZE, SIZE).join();
+        assertEquals(before + 1, requests.get(), "b was evicted");
+    }
+
+    @Test
+    void concurrentRequestsShareOneDownload() {
+        delayMs = 300;
+        try {
+            int before = requests.get();
+            List<CompletableFuture<BufferedImage>> loads = new ArrayList<>();
+            for (int i = 0; i < 20; i++)
+                loads.add(ThumbnailLoader.load(url("/shared.png"), SIZE, SIZE));
+            BufferedImage first = loads.get(0).join();
+            for (CompletableFuture<BufferedImage> load : loads)
+                assertSame(first, load.join());
+            assertEquals(before + 1, requests.get());
+            ThumbnailLoader.load(url("/shared.png"), 48, 48).join();
+            assertEquals(before + 2, requests.get(), "another size is another entry");
+        } finally {
+            delayMs = 0;
+        }
+    }
+
+    @Test
+    void failedLoadsCompleteWithNullAndAreNotCached() {
+        assertNull(ThumbnailLoader.load(url("/missing.png"), SIZE, SIZE).join());
+        assertNull(ThumbnailLoader.load(url("/garbage.png"), SIZE, SIZE).join());
+        int before = requests.get();
+        assertNull(ThumbnailLoader.load(url("/missing.png"), SIZE, SIZE).join());
+        assertEquals(before + 1, requests.get(), "asked again");
+    }
+
+    @Test
+    void theRendererReusesTheMessagesIcon() throws Exception {
+        ChatMessage message = new ChatMessage("Avatar", "A comet is an icy small body.");
+        message.setImage(halves(SIZE, 72));
+        SwingUtilities.invokeAndWait(() -> {
+            ChatMessageRenderer renderer = new ChatMessageRenderer();
+            JList<ChatMessage> list = new JList<>();
+            JLabel picture = (JLabel) renderer.getComponent(0);
+            renderer.getListCellRendererComponent(list, message, 0, false, false);
+            assertSame(message.getIcon(), picture.getIcon());
+            renderer.getListCellRendererComponent(list, message, 0, false, false);
+            assertSame(message.getIcon(), picture.getIcon(), "no new icon per paint");
+            assertSame(message.getImage(), message.getIcon().getImage());
+        });
+    }
+
+    private static String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    // Left half red, right half blue
+    private static BufferedImage halves(int w, int h) {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, w / 2, h);
+        g.setColor(Color.BLUE);
+        g.fillRect(w / 2, 0, w - w / 2, h);
+        g.dispose();
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static boolean isRed(int argb) {
+        return ((argb >> 16) & 0xFF) > 200 && (argb & 0xFF) < 60;
+    }
+}
@@ -0,0 +1,34 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+    @Test
+    void allowsTheBurstThenRefillsAtTheRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(10, 5); // a token every 100 ms
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++)
+            assertTrue(bucket.tryAcquire(), "burst request " + i);
+        assertFalse(bucket.tryAcquire());
+        Thread.sleep(250);
+        int refilled = 0;
+        while (bucket.tryAcquire())
+            refilled++;
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(refilled >= 2, "refilled " + refilled);
+        assertTrue(refilled <= elapsedMs / 100, "refilled " + refilled + " in " + elapsedMs + " ms");
+    }
+
+    @Test
+    void pauseRefusesEverythingUntilItEnds() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000, 10);
+        bucket.pauseFor(200);
+        assertFalse(bucket.tryAcquire());
+        bucket.pauseFor(50); // a shorter pause doesn't cut the longer one
+        Thread.sleep(100);
+        assertFalse(bucket.tryAcquire());
+        Thread.sleep(150);
+        assertTrue(bucket.tryAcquire());
+    }
+}
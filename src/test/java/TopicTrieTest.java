@@ -0,0 +1,58 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TopicTrieTest {
+    @Test
+    void completionsComeHeaviestFirst() {
+        TopicTrie trie = new TopicTrie();
+        trie.add("Black hole", 5);
+        trie.add("Black body", 2);
+        trie.add("Blue moon", 9);
+        trie.add("Blackbird", 1);
+        trie.add("Sun", 7);
+        assertEquals(List.of("Black hole", "Black body", "Blackbird"), trie.suggest("bla", 10));
+        assertEquals(List.of("Blue moon", "Black hole"), trie.suggest("b", 2));
+        assertEquals(List.of("Black hole"), trie.suggest("  BLACK H", 3), "any case, spaces trimmed");
+        assertEquals(List.of("Sun"), trie.suggest("sun", 3), "a topic completes itself");
+        assertEquals(List.of(), trie.suggest("sunday", 3));
+        assertEquals(List.of(), trie.suggest("  ", 3));
+    }
+
+    @Test
+    void addingAKnownTopicAddsToItsWeight() {
+        TopicTrie trie = new TopicTrie();
+        trie.add("Mercury", 2);
+        trie.add("Mars", 1);
+        assertEquals(List.of("Mercury", "Mars"), trie.suggest("m", 5));
+        trie.add(" MARS ", 1);
+        trie.add("Mars", 1);
+        assertEquals(List.of("Mars", "Mercury"), trie.suggest("m", 5), "3 against 2");
+        assertEquals(2, trie.size(), "the same topic, not a new one");
+        trie.add("", 100);
+        assertEquals(2, trie.size());
+    }
+
+    @Test
+    void articlesFetchedFromWikipediaJoinTheSharedTrie() throws Exception {
+        System.setProperty("wiki.cacheDir", Files.createTempDirectory("wiki-cache").toString());
+        String keyword = IntentMatcher.shared().keywords().get(0);
+        assertTrue(TopicTrie.shared().suggest(keyword, 50).stream().anyMatch(keyword::equalsIgnoreCase),
+                "seeded with the intent keywords");
+        assertEquals(List.of(), TopicTrie.shared().suggest("zwoop", 3));
+        try (StubWikiServer stub = new StubWikiServer()) {
+            WikiFetcher.setBaseUrl(stub.baseUrl());
+            WikiFetcher.setTimeouts(1000, 5000);
+            assertEquals(StubWikiServer.extractFor("Zwoop nebula"),
+                    WikiFetcher.fetchSummary("what is a Zwoop nebula?"));
+            assertEquals(List.of("Zwoop nebula"), TopicTrie.shared().suggest("zwoop", 3));
+            stub.status = 404;
+            WikiFetcher.fetchSummary("Zwoop comet");
+            assertEquals(List.of("Zwoop nebula"), TopicTrie.shared().suggest("zwoop", 3), "no article, no topic");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Append and scroll cost of the chat transcript, rendered headless into an
+ * image, at growing message counts (up to -Dbench.messages, default 12k).
+ * The in-memory window stays at 200 rows, so the cost should not grow.
+ */
+@Tag("benchmark")
+class TranscriptBenchmark {
+    private JList<ChatMessage> list;
+    private JScrollPane scroll;
+
+    @Test
+    void appendAndScrollCostStayFlatPast10kMessages() throws Exception {
+        int total = Integer.getInteger("bench.messages", 12_000);
+        TranscriptModel model = new TranscriptModel(200);
+        SwingUtilities.invokeAndWait(() -> {
+            list = new JList<>(model);
+            list.setCellRenderer(new ChatMessageRenderer());
+            scroll = new JScrollPane(list);
+            scroll.setSize(600, 350);
+        });
+        BufferedImage frame = new BufferedImage(600, 350, BufferedImage.TYPE_INT_RGB);
+
+        double firstAppend = 0, lastAppend = 0, firstScroll = 0, lastScroll = 0;
+        int batch = 1000;
+        for (int sent = 0; sent < total; sent += batch) {
+            long appendNanos = 0, scrollNanos = 0;
+            for (int i = 0; i < batch; i++) {
+                long start = System.nanoTime();
+                model.append(new ChatMessage(i % 2 == 0 ? "You" : "Avatar", "Message " + (sent + i)
+                        + ": why do astronauts float around inside the space station when gravity is still there?"));
+                SwingUtilities.invokeAndWait(() -> { // the flush is queued ahead of this
+                    list.ensureIndexIsVisible(model.getSize() - 1);
+                    render(scroll, frame);
+                });
+                appendNanos += System.nanoTime() - start;
+                if (i % 10 == 0) {
+                    start = System.nanoTime();
+                    SwingUtilities.invokeAndWait(() -> {
+                        scroll.getViewport().setViewPosition(new Point(0, list.getHeight() / 2));
+                        render(scroll, frame);
+                    });
+                    scrollNanos += System.nanoTime() - start;
+                }
+            }
+            double append = appendNanos / 1e3 / batch, scrolled = scrollNanos / 1e3 / (batch / 10);
+            System.out.printf("%,6d messages: append %7.1f us, scroll %7.1f us%n", sent + batch, append, scrolled);
+            if (sent == 2 * batch) { // after the JIT has settled and the window is full
+                firstAppend = append;
+                firstScroll = scrolled;
+            }
+            lastAppend = append;
+            lastScroll = scrolled;
+        }
+        assertTrue(lastAppend < firstAppend * 2, "append: " + lastAppend + " us against " + firstAppend);
+        assertTrue(lastScroll < firstScroll * 2, "scroll: " + lastScroll + " us against " + firstScroll);
+    }
+
+    // What validate() and a repaint would do, without a window
+    private static void render(JScrollPane pane, BufferedImage frame) {
+        layout(pane);
+        Graphics2D g = frame.createGraphics();
+        pane.paint(g);
+        g.dispose();
+    }
+
+    private static void layout(Container container) {
+        container.doLayout();
+        for (Component child : container.getComponents())
+            if (child instanceof Container c)
+                layout(c);
+    }
+}
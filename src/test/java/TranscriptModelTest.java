@@ -0,0 +1,165 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.junit.jupiter.api.Test;
+
+class TranscriptModelTest {
+    @Test
+    void keepsTheLatestInMemoryAndSpillsTheRest() throws Exception {
+        TranscriptModel model = new TranscriptModel(5);
+        for (int i = 0; i < 12; i++)
+            model.append(new ChatMessage("You", "message " + i, i));
+        SwingUtilities.invokeAndWait(() -> {
+            assertEquals(5, model.getSize());
+            assertEquals("message 7", model.getElementAt(0).getText());
+            assertEquals("message 11", model.getElementAt(4).getText());
+        });
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (model.getSpilledCount() < 7 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(7, model.getSpilledCount());
+        for (int i = 0; i < 7; i++) {
+            ChatMessage m = model.getSpilled(i);
+            assertEquals("message " + i, m.getText());
+            assertEquals(i, m.time);
+        }
+    }
+
+    @Test
+    void closeDeletesTheSpillFileAndStopsSpilling() throws Exception {
+        TranscriptModel model = new TranscriptModel(5);
+        for (int i = 0; i < 12; i++)
+            model.append(new ChatMessage("You", "message " + i, i));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (model.getSpilledCount() < 7 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        File file = model.getSpillFile();
+        assertTrue(file.exists());
+
+        SwingUtilities.invokeAndWait(model::close);
+        while (file.exists() && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertFalse(file.exists(), "spill file deleted");
+        assertEquals(0, model.getSpilledCount());
+
+        for (int i = 12; i < 20; i++) // still usable, just without scroll-back
+            model.append(new ChatMessage("You", "message " + i, i));
+        SwingUtilities.invokeAndWait(() -> {
+            model.close(); // twice is fine
+            assertEquals(5, model.getSize());
+            assertEquals("message 19", model.getElementAt(4).getText());
+        });
+        assertNull(model.getSpillFile());
+    }
+
+    @Test
+    void spilledMessagesPageBackInAtTheTop() throws Exception {
+        TranscriptModel model = new TranscriptModel(5);
+        for (int i = 0; i < 12; i++)
+            model.append(new ChatMessage("You", "message " + i, i));
+        SwingUtilities.invokeAndWait(() -> {
+            assertTrue(model.hasOlder());
+            model.loadOlder(3); // queued behind the spill writes, so no need to wait for them
+            model.loadOlder(3); // ignored while the first page loads
+        });
+        waitForSize(model, 8);
+        SwingUtilities.invokeAndWait(() -> {
+            assertEquals("message 4", model.getElementAt(0).getText());
+            assertEquals(4, model.getElementAt(0).time);
+            assertEquals("message 7", model.getElementAt(3).getText());
+            model.loadOlder(100);
+        });
+        waitForSize(model, 12);
+        SwingUtilities.invokeAndWait(() -> {
+            assertEquals("message 0", model.getElementAt(0).getText());
+            assertFalse(model.hasOlder());
+        });
+
+        // The next append trims back to capacity, and what was paged in isn't spilled twice (the
+        // overflow is written in one go, so a duplicate would show up with it)
+        model.append(new ChatMessage("You", "message 12", 12));
+        waitForSize(model, 5);
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (model.getSpilledCount() < 8 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(8, model.getSpilledCount());
+        for (int i = 0; i < 8; i++)
+            assertEquals("message " + i, model.getSpilled(i).getText());
+        SwingUtilities.invokeAndWait(() -> model.loadOlder(2));
+        waitForSize(model, 7);
+        SwingUtilities.invokeAndWait(() -> assertEquals("message 6", model.getElementAt(0).getText()));
+    }
+
+    @Test
+    void burstOfAppendsIsOneUpdate() throws Exception {
+        TranscriptModel model = new TranscriptModel(200);
+        List<ListDataEvent> events = new ArrayList<>();
+        model.addListDataListener(new ListDataListener() {
+            public void intervalAdded(ListDataEvent e) {
+                events.add(e);
+            }
+
+            public void intervalRemoved(ListDataEvent e) {
+                events.add(e);
+            }
+
+            public void contentsChanged(ListDataEvent e) {
+                events.add(e);
+            }
+        });
+        // Hold the EDT while another thread appends, as a busy UI would
+        CountDownLatch appended = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            try {
+                appended.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 100; i++)
+            model.append(new ChatMessage("Avatar", "line " + i));
+        appended.countDown();
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        assertEquals(1, events.size(), "events: " + events);
+        assertEquals(ListDataEvent.INTERVAL_ADDED, events.get(0).getType());
+        assertEquals(0, events.get(0).getIndex0());
+        assertEquals(99, events.get(0).getIndex1());
+    }
+
+    @Test
+    void updateChangesTheTextInPlace() throws Exception {
+        TranscriptModel model = new TranscriptModel(10);
+        ChatMessage placeholder = new ChatMessage("Avatar", "thinking…");
+        model.append(placeholder);
+        SwingUtilities.invokeAndWait(() -> {
+            model.update(placeholder, "Here you go");
+            assertEquals(1, model.getSize());
+            assertTrue(model.getElementAt(0) == placeholder);
+            assertEquals("Here you go", model.getElementAt(0).getText());
+        });
+    }
+
+    private static void waitForSize(TranscriptModel model, int size) throws Exception {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        int[] now = new int[1];
+        do {
+            SwingUtilities.invokeAndWait(() -> now[0] = model.getSize());
+            if (now[0] == size)
+                return;
+            Thread.sleep(10);
+        } while (System.nanoTime() < deadline);
+        assertEquals(size, now[0], "rows");
+    }
+}
@@ -0,0 +1,47 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+class WikiCacheTest {
+    private static final WikiSummary BLACK_HOLE = new WikiSummary("Black hole", "A region of spacetime.", null, null);
+
+    @Test
+    void containsDoesNotCountAsHitOrMiss() throws Exception {
+        WikiCache cache = new WikiCache(Files.createTempDirectory("wiki-cache"), 10, 10_000, 60_000, 60_000);
+        assertFalse(cache.contains("black hole"));
+        cache.put("black hole", BLACK_HOLE);
+        assertTrue(cache.contains("black hole"));
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+
+        assertEquals("A region of spacetime.", cache.get("black hole").text());
+        assertNull(cache.get("white hole"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void containsSeesTheDiskTierButNotExpiredEntries() throws Exception {
+        Path dir = Files.createTempDirectory("wiki-cache");
+        new WikiCache(dir, 10, 10_000, 60_000, 60_000).put("black hole", BLACK_HOLE);
+        new WikiCache(dir, 10, 10_000, 100, 100).put("comet", null);
+        Thread.sleep(300); // let the disk writes land and the short entry expire
+
+        WikiCache reopened = new WikiCache(dir, 10, 10_000, 60_000, 60_000);
+        assertTrue(reopened.contains("black hole"));
+        assertFalse(reopened.contains("comet"));
+        assertEquals(0, reopened.getDiskHits() + reopened.getMisses());
+    }
+
+    @Test
+    void questionsNormalizeToOneKey() {
+        assertEquals("black hole", WikiCache.normalizeKey("What is a  Black Hole?"));
+        assertEquals(WikiCache.normalizeKey("tell me about the Moon!"), WikiCache.normalizeKey("moon"));
+    }
+}
@@ -0,0 +1,121 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Rate limiting, circuit breaking and hedging against a fault-injecting
+ * stub. The guards are static, so the tests run in order and the one that
+ * trips the breaker goes last.
+ */
+@Timeout(30)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class WikiFetcherFaultTest {
+    private static final String OFFLINE_PREFIX = "I can't reach";
+    private static StubWikiServer stub;
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        // Read once when WikiFetcher loads, which happens after this
+        System.setProperty("wiki.cacheDir", Files.createTempDirectory("wiki-cache").toString());
+        System.setProperty("wiki.cacheTtlMs", "300");
+        System.setProperty("wiki.hedge", "true");
+        System.setProperty("wiki.breakerFailures", "5");
+        System.setProperty("wiki.breakerOpenMs", "1500");
+        stub = new StubWikiServer();
+        WikiFetcher.setBaseUrl(stub.baseUrl());
+        WikiFetcher.setTimeouts(1000, 3000);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    @Order(1)
+    void slowRequestIsHedgedOncePastTheP95() {
+        for (int i = 0; i < 25; i++) // enough fast answers for a p95
+            assertEquals(StubWikiServer.extractFor("Warmup " + i), WikiFetcher.fetchSummary("Warmup " + i));
+        long[] before = WikiFetcher.getHedgeCounts();
+
+        stub.slowMs = 1500;
+        stub.slowNext.set(1);
+        long start = System.nanoTime();
+        String answer = WikiFetcher.fetchSummary("Sluggard");
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long[] after = WikiFetcher.getHedgeCounts();
+        assertEquals(StubWikiServer.extractFor("Sluggard"), answer);
+        assertEquals(1, after[0] - before[0], "hedges fired");
+        assertEquals(1, after[1] - before[1], "hedges won");
+        assertTrue(millis < 1000, "hedged answer took " + millis + " ms");
+        assertTrue(WikiFetcher.getLatency().count() >= 25);
+    }
+
+    @Test
+    @Order(2)
+    void aFirstAttemptThatFailsBeforeTheHedgeIsDueFailsAtOnce() throws InterruptedException {
+        long budgetMs = Math.max(100, Math.round(WikiFetcher.getLatency().percentileMillis(95)));
+        long[] before = WikiFetcher.getHedgeCounts();
+        int requests = stub.requests();
+        stub.status = 500;
+        try {
+            long start = System.nanoTime();
+            assertTrue(WikiFetcher.fetchSummary("Crumbled").startsWith(OFFLINE_PREFIX));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(millis < budgetMs / 2, "failed after " + millis + " ms; the hedge was due at " + budgetMs);
+        } finally {
+            stub.status = 200;
+        }
+        Thread.sleep(budgetMs + 100); // past when the hedge would have gone out
+        assertEquals(1, stub.requests() - requests, "no second attempt");
+        assertEquals(before[0], WikiFetcher.getHedgeCounts()[0], "hedges fired");
+    }
+
+    @Test
+    @Order(3)
+    void retryAfterPausesTheRateLimiter() throws InterruptedException {
+        stub.status = 429;
+        stub.retryAfter = "1";
+        assertTrue(WikiFetcher.fetchSummary("Throttled").startsWith(OFFLINE_PREFIX));
+        stub.status = 200;
+        int before = stub.requests();
+        assertTrue(WikiFetcher.fetchSummary("Patient").startsWith(OFFLINE_PREFIX), "refused while paused");
+        assertEquals(before, stub.requests(), "nothing sent while paused");
+
+        Thread.sleep(1100);
+        assertEquals(StubWikiServer.extractFor("Patient"), WikiFetcher.fetchSummary("Patient"));
+    }
+
+    @Test
+    @Order(4)
+    void breakerFailsFastAndServesStaleAnswersUntilTheProbeSucceeds() throws InterruptedException {
+        assertEquals(StubWikiServer.extractFor("Comet"), WikiFetcher.fetchSummary("Comet"));
+        Thread.sleep(400); // past the cache TTL, so only a stale copy is left
+
+        stub.status = 500;
+        for (int i = 0; i < 5; i++)
+            assertTrue(WikiFetcher.fetchSummary("Broken " + i).startsWith(OFFLINE_PREFIX));
+        assertEquals(CircuitBreaker.State.OPEN, WikiFetcher.getCircuitBreaker().getState());
+
+        int before = stub.requests();
+        long start = System.nanoTime();
+        assertTrue(WikiFetcher.fetchSummary("Broken 9").startsWith(OFFLINE_PREFIX));
+        assertEquals(StubWikiServer.extractFor("Comet"), WikiFetcher.fetchSummary("Comet"), "stale answer");
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 100, "open breaker fails fast");
+        assertEquals(before, stub.requests(), "no upstream traffic while open");
+
+        stub.status = 200;
+        Thread.sleep(1600);
+        assertEquals(StubWikiServer.extractFor("Healed"), WikiFetcher.fetchSummary("Healed"));
+        assertEquals(CircuitBreaker.State.CLOSED, WikiFetcher.getCircuitBreaker().getState());
+    }
+}
@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/** Request coalescing and deadlines, against a local stub server. */
+@Timeout(30) // a lookup that never returns fails here instead of hanging the build
+class WikiFetcherTest {
+    private static StubWikiServer stub;
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        System.setProperty("wiki.cacheDir", Files.createTempDirectory("wiki-cache").toString());
+        stub = new StubWikiServer();
+        WikiFetcher.setBaseUrl(stub.baseUrl());
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    void concurrentIdenticalQuestionsMakeOneRequest() throws Exception {
+        stub.delayMs = 300;
+        WikiFetcher.setTimeouts(1000, 5000);
+        int before = stub.requests();
+        String[] askings = { "Black hole", "what is a black hole?", "  BLACK   hole ", "Tell me about the black hole" };
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<String>> answers = new ArrayList<>();
+        try (ExecutorService askers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 50; i++) {
+                String question = askings[i % askings.length];
+                answers.add(askers.submit(() -> {
+                    go.await();
+                    return WikiFetcher.fetchSummary(question);
+                }));
+            }
+            go.countDown();
+            // The title keeps the case of whichever asker started the shared lookup
+            for (Future<String> answer : answers)
+                assertTrue(StubWikiServer.extractFor("Black hole").equalsIgnoreCase(answer.get()), answer.get());
+        }
+        assertEquals(1, stub.requests() - before);
+    }
+
+    @Test
+    void bodyThatStallsRunsIntoTheReadTimeout() throws Exception {
+        WikiFetcher.setTimeouts(1000, 1000);
+        stub.delayMs = 0;
+        stub.stallBody = true;
+        try {
+            long start = System.nanoTime();
+            String answer = WikiFetcher.fetchSummary("Stallstar");
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(millis < 2500, "gave up after " + millis + " ms");
+            assertTrue(answer.startsWith("I can't reach"), answer);
+        } finally {
+            stub.stallBody = false;
+        }
+        // The failed lookup left the in-flight map, so the next ask goes out again
+        int before = stub.requests();
+        assertEquals(StubWikiServer.extractFor("Stallstar"), WikiFetcher.fetchSummary("Stallstar"));
+        assertEquals(1, stub.requests() - before);
+    }
+
+    @Test
+    void newTimeoutsCloseTheReplacedClientOnceItsRequestsFinish() throws Exception {
+        WikiFetcher.setTimeouts(1000, 5000);
+        HttpClient old = WikiFetcher.httpClient();
+        stub.delayMs = 500;
+        try {
+            CompletableFuture<HttpResponse<String>> sent = old.sendAsync(
+                    HttpRequest.newBuilder(URI.create(stub.baseUrl() + "Slowstar")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Thread.sleep(100); // on the wire
+            WikiFetcher.setTimeouts(1000, 4000);
+            assertNotSame(old, WikiFetcher.httpClient());
+            assertEquals(200, sent.get().statusCode(), "a request already sent still finishes");
+            ExecutorService oldExecutor = (ExecutorService) old.executor().orElseThrow();
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (!oldExecutor.isTerminated() && System.nanoTime() < deadline)
+                Thread.sleep(10);
+            assertTrue(old.isTerminated());
+            assertTrue(oldExecutor.isTerminated(), "its executor too");
+        } finally {
+            stub.delayMs = 0;
+        }
+        assertEquals(StubWikiServer.extractFor("Newclientstar"), WikiFetcher.fetchSummary("Newclientstar"));
+    }
+}